@@ -0,0 +1,20 @@
+package com.statusbeat.statusbeat.exception;
+
+public class CircuitOpenException extends RuntimeException {
+    private final String endpoint;
+    private final long retryAfterMs;
+
+    public CircuitOpenException(String endpoint, long retryAfterMs) {
+        super("Circuit breaker open for " + endpoint);
+        this.endpoint = endpoint;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
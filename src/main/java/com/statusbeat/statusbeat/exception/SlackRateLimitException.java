@@ -0,0 +1,20 @@
+package com.statusbeat.statusbeat.exception;
+
+public class SlackRateLimitException extends RuntimeException {
+    private final String method;
+    private final long retryAfterMs;
+
+    public SlackRateLimitException(String method, long retryAfterMs) {
+        super("Slack rate limit in effect for " + method);
+        this.method = method;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
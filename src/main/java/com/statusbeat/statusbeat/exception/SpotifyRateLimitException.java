@@ -1,11 +1,25 @@
 package com.statusbeat.statusbeat.exception;
 
 public class SpotifyRateLimitException extends SpotifyException {
+    private final long retryAfterMs;
+
     public SpotifyRateLimitException() {
-        super("Spotify API rate limit exceeded");
+        this("Spotify API rate limit exceeded");
     }
 
     public SpotifyRateLimitException(String message) {
+        this(message, 0);
+    }
+
+    public SpotifyRateLimitException(String message, long retryAfterMs) {
         super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * How long until Spotify is expected to take requests again, or 0 if unknown.
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
     }
 }
@@ -0,0 +1,37 @@
+package com.statusbeat.statusbeat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ownership of one sync partition (bucket of users) by one node.
+ * A lease is only valid until expiresAt; the owner renews it on every heartbeat.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "partition_leases")
+public class PartitionLease {
+
+    @Id
+    private Integer bucket;
+
+    private String ownerId;
+
+    private LocalDateTime heartbeatAt;
+
+    @Indexed(expireAfter = "0s")
+    private LocalDateTime expiresAt;
+
+    @Version
+    private Long version; // Guards against two nodes taking over the same expired lease
+}
@@ -0,0 +1,44 @@
+package com.statusbeat.statusbeat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A Slack status write that was given up on, either after its last retry failed or because
+ * the retry budget was spent. Kept for a while for troubleshooting, then expired.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "status_dead_letters")
+public class StatusDeadLetter {
+
+    @Id
+    private String id;
+
+    @Indexed
+    private String userId;
+
+    private String slackUserId;
+
+    private String operation;
+
+    private int attempts;
+
+    private String reason;
+
+    private String lastError;
+
+    private LocalDateTime failedAt;
+
+    @Indexed(expireAfter = "0s")
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,33 @@
+package com.statusbeat.statusbeat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A running StatusBeat replica taking part in partitioned sync.
+ * Nodes that stop heartbeating expire and their partitions are redistributed.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sync_nodes")
+public class SyncNode {
+
+    @Id
+    private String id;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime heartbeatAt;
+
+    @Indexed(expireAfter = "0s")
+    private LocalDateTime expiresAt;
+}
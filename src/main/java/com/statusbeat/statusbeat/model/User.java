@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -15,6 +16,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "users")
+// Lets the background refresher page through tokens about to expire, ties broken by id, without a collection scan
+@CompoundIndex(name = "token_expiry", def = "{ 'spotifyTokenExpiresAt': 1, '_id': 1 }")
 public class User {
 
     @Id
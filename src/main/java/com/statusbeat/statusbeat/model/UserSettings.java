@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -18,6 +19,8 @@ import java.util.Map;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "user_settings")
+// Answers the sync candidate query (both flags set, userId only) from the index alone
+@CompoundIndex(name = "sync_candidates", def = "{ 'syncActive': 1, 'syncEnabled': 1, 'userId': 1 }")
 public class UserSettings {
 
     @Id
@@ -0,0 +1,13 @@
+package com.statusbeat.statusbeat.repository;
+
+import com.statusbeat.statusbeat.model.PartitionLease;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PartitionLeaseRepository extends MongoRepository<PartitionLease, Integer> {
+
+    List<PartitionLease> findByOwnerId(String ownerId);
+}
@@ -0,0 +1,13 @@
+package com.statusbeat.statusbeat.repository;
+
+import com.statusbeat.statusbeat.model.StatusDeadLetter;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StatusDeadLetterRepository extends MongoRepository<StatusDeadLetter, String> {
+
+    List<StatusDeadLetter> findByUserIdOrderByFailedAtDesc(String userId);
+}
@@ -0,0 +1,18 @@
+package com.statusbeat.statusbeat.repository;
+
+import com.statusbeat.statusbeat.model.SyncNode;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SyncNodeRepository extends MongoRepository<SyncNode, String> {
+
+    /**
+     * Nodes whose last heartbeat is still valid. The TTL index removes the rest eventually,
+     * but it only runs about once a minute.
+     */
+    List<SyncNode> findByExpiresAtAfter(LocalDateTime now);
+}
@@ -1,9 +1,13 @@
 package com.statusbeat.statusbeat.repository;
 
 import com.statusbeat.statusbeat.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,5 +22,35 @@ public interface UserRepository extends MongoRepository<User, String> {
 
     List<User> findByActiveTrue();
 
+    /**
+     * Active users whose token expires before {@code before} and after the (expiry, id) position
+     * {@code (afterExpiry, afterId)}. Callers page through by passing the last expiry and id they saw, sorted
+     * by expiry then id, so users sharing an expiry are never skipped at a page boundary.
+     */
+    @Query("{ 'active': true, 'tokenInvalidated': false, 'spotifyTokenExpiresAt': { '$lt': ?2 }, "
+            + "'$or': [ { 'spotifyTokenExpiresAt': { '$gt': ?0 } }, "
+            + "{ 'spotifyTokenExpiresAt': ?0, '_id': { '$gt': ?1 } } ] }")
+    List<User> findActiveWithSpotifyTokenExpiringAfter(LocalDateTime afterExpiry, String afterId,
+                                                       LocalDateTime before, Pageable pageable);
+
     boolean existsBySlackUserId(String slackUserId);
+
+    // Sync candidates: active, holding a Spotify token that has not been revoked, no manual status
+    String SYNC_CANDIDATE_FILTER = "{ '_id': { '$in': ?0 }, 'active': true, 'tokenInvalidated': false, "
+            + "'manualStatusSet': false, 'encryptedSpotifyAccessToken': { '$ne': null } }";
+
+    // What a sync reads; track titles, timestamps and audit fields stay on the server
+    String SYNC_FIELDS = "{ 'slackUserId': 1, 'slackTeamId': 1, 'encryptedSlackAccessToken': 1, 'spotifyUserId': 1, "
+            + "'encryptedSpotifyAccessToken': 1, 'encryptedSpotifyRefreshToken': 1, 'spotifyTokenExpiresAt': 1, "
+            + "'currentlyPlayingSongId': 1, 'lastSetStatusText': 1, 'manualStatusSet': 1, 'statusCleared': 1, "
+            + "'tokenInvalidated': 1, 'active': 1 }";
+
+    /**
+     * The sync candidates among ids, with only the fields a sync reads. Never save the returned users.
+     */
+    @Query(value = SYNC_CANDIDATE_FILTER, fields = SYNC_FIELDS)
+    List<User> findSyncCandidatesByIdIn(Collection<String> ids);
+
+    @Query(value = SYNC_CANDIDATE_FILTER, fields = "{ '_id': 1 }")
+    List<User> findSyncCandidateIdsByIdIn(Collection<String> ids);
 }
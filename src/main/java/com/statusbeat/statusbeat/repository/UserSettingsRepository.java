@@ -4,6 +4,8 @@ import com.statusbeat.statusbeat.model.UserSettings;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +13,8 @@ public interface UserSettingsRepository extends MongoRepository<UserSettings, St
 
     Optional<UserSettings> findByUserId(String userId);
 
+    List<UserSettings> findByUserIdIn(Collection<String> userIds);
+
     boolean existsByUserId(String userId);
 
     void deleteByUserId(String userId);
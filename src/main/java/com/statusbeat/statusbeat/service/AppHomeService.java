@@ -6,8 +6,10 @@ import com.slack.api.methods.request.views.ViewsPublishRequest;
 import com.slack.api.model.block.LayoutBlock;
 import com.slack.api.model.view.View;
 import com.statusbeat.statusbeat.constants.AppConstants;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -16,6 +18,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.slack.api.model.block.Blocks.*;
 import static com.slack.api.model.block.composition.BlockCompositions.*;
@@ -33,13 +38,17 @@ public class AppHomeService {
 
     private final UserService userService;
     private final TimezoneService timezoneService;
+    private final SlackRateDispatcher rateDispatcher;
     private final com.slack.api.Slack slack = com.slack.api.Slack.getInstance();
+    // Async publishes park a virtual thread while they wait on Slack or the rate dispatcher
+    private final ExecutorService asyncCalls = Executors.newVirtualThreadPerTaskExecutor();
 
     public void publishHomeView(String slackUserId, String slackAccessToken) {
         try {
             Optional<User> userOpt = userService.findBySlackUserId(slackUserId);
 
             View homeView;
+            String teamId = userOpt.map(User::getSlackTeamId).orElse(null);
             if (userOpt.isEmpty()) {
                 homeView = buildNotConnectedView();
             } else {
@@ -49,18 +58,28 @@ public class AppHomeService {
             }
 
             MethodsClient client = slack.methods(slackAccessToken);
-            client.viewsPublish(ViewsPublishRequest.builder()
+            ViewsPublishRequest request = ViewsPublishRequest.builder()
                     .userId(slackUserId)
                     .view(homeView)
-                    .build());
+                    .build();
+            rateDispatcher.execute("views.publish", teamId, SlackRateDispatcher.Priority.INTERACTIVE,
+                    () -> client.viewsPublish(request));
 
             log.debug("Published App Home view for user {}", slackUserId);
 
-        } catch (IOException | SlackApiException e) {
+        } catch (IOException | SlackApiException | SlackRateLimitException e) {
             log.error("Error publishing App Home view for user {}", slackUserId, e);
         }
     }
 
+    /**
+     * Asynchronous {@link #publishHomeView}, so Slack handlers can ack before the view is built and sent.
+     * Publish errors are logged, as in the blocking call; the future only fails on unexpected exceptions.
+     */
+    public CompletableFuture<Void> publishHomeViewAsync(String slackUserId, String slackAccessToken) {
+        return CompletableFuture.runAsync(() -> publishHomeView(slackUserId, slackAccessToken), asyncCalls);
+    }
+
     private View buildNotConnectedView() {
         return view(view -> view
                 .type("home")
@@ -343,4 +362,9 @@ public class AppHomeService {
         }
         return String.join(" ", settings.getRotatingEmojis());
     }
+
+    @PreDestroy
+    public void shutdown() {
+        asyncCalls.shutdown();
+    }
 }
@@ -0,0 +1,111 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.util.ExpiringMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, bounded read-through cache of Slack installations: Bolt's bot and installer records and the
+ * decrypted bot token of each workspace. Saves them a Mongo lookup and a decrypt on every incoming request.
+ *
+ * Entries are dropped whenever an installation of their workspace or user is saved or deleted on this node;
+ * the TTL bounds how long a change made on another node can go unseen. Missing installations are not cached.
+ */
+@Slf4j
+@Service
+public class InstallationCache {
+
+    public enum Kind {
+        BOT,
+        BOT_TOKEN,
+        INSTALLER
+    }
+
+    @Value("${statusbeat.installation-cache.ttl-ms:300000}")
+    private long ttlMs = 300000;
+
+    @Value("${statusbeat.installation-cache.max-size:10000}")
+    private int maxSize = 10000;
+
+    private final ExpiringMap<CacheKey, Object> entries = new ExpiringMap<>(() -> ttlMs, () -> maxSize, value -> { });
+    // Bumped on every invalidation so a load that raced with a save never caches what it read before it
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public InstallationCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("statusbeat.installation.cache.requests")
+                .tag("result", "hit")
+                .description("Installation lookups served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("statusbeat.installation.cache.requests")
+                .tag("result", "miss")
+                .description("Installation lookups that went to the database")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.installation.cache.size", entries, ExpiringMap::size)
+                .description("Installation records currently cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached record for the workspace (and user, for installers), loading it on a miss.
+     *
+     * @param userId the installing user, or null for workspace-wide records
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Kind kind, String teamId, String userId, Supplier<T> loader) {
+        if (teamId == null && userId == null) {
+            return loader.get();
+        }
+
+        CacheKey key = new CacheKey(kind, teamId, userId);
+        Object cached = entries.get(key);
+        if (cached != null) {
+            hits.increment();
+            return (T) cached;
+        }
+
+        misses.increment();
+        long generation = invalidations.get();
+        T value = loader.get();
+        if (value == null || generation != invalidations.get()) {
+            return value;
+        }
+
+        int evicted = entries.put(key, value);
+        if (evicted > 0) {
+            log.warn("Installation cache reached max size {}, evicted {} oldest entries", maxSize, evicted);
+        }
+        return value;
+    }
+
+    /**
+     * Drops every cached record of the workspace and of the user. Called whenever an installation is saved
+     * or deleted.
+     */
+    public void invalidate(String teamId, String userId) {
+        invalidations.incrementAndGet();
+        entries.removeIf(key -> (teamId != null && teamId.equals(key.teamId()))
+                || (userId != null && userId.equals(key.userId())));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${statusbeat.installation-cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        entries.evictExpired();
+    }
+
+    private record CacheKey(Kind kind, String teamId, String userId) {
+    }
+}
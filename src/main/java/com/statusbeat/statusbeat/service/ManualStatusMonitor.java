@@ -0,0 +1,267 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.model.UserSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Detects users taking over their own Slack status.
+ *
+ * Slack pushes user_change / user_status_changed events whenever a profile status changes, so the sync
+ * no longer has to fetch every user's profile each cycle. Our own status writes trigger the same events,
+ * and the event can beat the write's bookkeeping to Mongo, so each event is checked against the user's
+ * stored lastSetStatusText only after a short confirmation delay.
+ *
+ * Events can be missed (app not subscribed, delivery failures, replicas restarting), so statuses are also
+ * reconciled on a slow cadence. In team mode one paginated users.list per workspace, using the team's bot
+ * token, covers every member at once; workspaces are swept concurrently, off the scheduler thread. Users
+ * whose team has no bot installation, or whose team could not be listed, fall back to the sync fetching
+ * their own status on the same cadence. With events disabled and per-user mode the sync checks every cycle.
+ */
+@Slf4j
+@Service
+public class ManualStatusMonitor {
+
+    private static final String TEAM_MODE = "team";
+
+    @Value("${statusbeat.slack.events.enabled:true}")
+    private boolean eventsEnabled = true;
+
+    @Value("${statusbeat.slack.events.confirm-delay-ms:3000}")
+    private long confirmDelayMs = 3000;
+
+    @Value("${statusbeat.sync.manual-status-reconcile-interval-ms:600000}")
+    private long reconcileIntervalMs = 600000;
+
+    @Value("${statusbeat.sync.manual-status-reconcile-mode:team}")
+    private String reconcileMode = TEAM_MODE;
+
+    private final UserService userService;
+    private final SlackService slackService;
+    private final PollIntervalPolicy pollIntervalPolicy;
+    private final SyncPartitionService syncPartitionService;
+    private final SyncCandidateSource syncCandidateSource;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("manual-status-events").daemon(true).factory());
+    private final Map<String, Long> lastPolledAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> teamsReconciledAt = new ConcurrentHashMap<>();
+    private final Set<String> teamsSweeping = ConcurrentHashMap.newKeySet();
+    private final ExecutorService teamSweeps = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter eventsReceived;
+    private final Counter detectedByEvent;
+    private final Counter detectedByTeamSweep;
+    private final Counter teamsListed;
+    private final Counter teamsUnlisted;
+
+    public ManualStatusMonitor(UserService userService, SlackService slackService,
+                               PollIntervalPolicy pollIntervalPolicy, SyncPartitionService syncPartitionService,
+                               SyncCandidateSource syncCandidateSource, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.slackService = slackService;
+        this.pollIntervalPolicy = pollIntervalPolicy;
+        this.syncPartitionService = syncPartitionService;
+        this.syncCandidateSource = syncCandidateSource;
+        this.eventsReceived = Counter.builder("statusbeat.slack.status.events")
+                .description("Slack profile status events received")
+                .register(meterRegistry);
+        this.detectedByEvent = detectedCounter("event", meterRegistry);
+        this.detectedByTeamSweep = detectedCounter("team_sweep", meterRegistry);
+        this.teamsListed = teamSweepCounter("listed", meterRegistry);
+        this.teamsUnlisted = teamSweepCounter("unlisted", meterRegistry);
+    }
+
+    /**
+     * Handles a status change pushed by Slack. The check runs after the confirmation delay.
+     */
+    public void onStatusChanged(String slackUserId, String statusText) {
+        if (!eventsEnabled || slackUserId == null) {
+            return;
+        }
+        eventsReceived.increment();
+        slackService.observeStatus(slackUserId, statusText);
+        // A blank status is the user or Slack clearing it, never a manual status
+        if (statusText == null || statusText.isBlank()) {
+            return;
+        }
+        timer.schedule(() -> confirm(slackUserId, statusText, detectedByEvent), confirmDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Whether the sync should fetch the user's status from Slack this cycle to catch missed events.
+     * Users covered by a recent team sweep never need it. Marks the check as done when it returns true.
+     */
+    public boolean isPollCheckDue(User user) {
+        long now = System.currentTimeMillis();
+        Long teamReconciledAt = user.getSlackTeamId() != null ? teamsReconciledAt.get(user.getSlackTeamId()) : null;
+        // Allow one missed sweep before falling back, so a slow sweep doesn't trigger per-user fetches
+        if (teamReconciledAt != null && now - teamReconciledAt < 2 * reconcileIntervalMs) {
+            return false;
+        }
+        if (!eventsEnabled && !isTeamMode()) {
+            return true;
+        }
+        Long last = lastPolledAt.get(user.getId());
+        if (last != null && now - last < reconcileIntervalMs) {
+            return false;
+        }
+        lastPolledAt.put(user.getId(), now);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${statusbeat.sync.manual-status-reconcile-interval-ms:600000}",
+            initialDelayString = "${statusbeat.sync.manual-status-reconcile-interval-ms:600000}")
+    public void startTeamSweep() {
+        reconcileTeams();
+    }
+
+    /**
+     * Compares the Slack status of every syncing user owned by this node against what StatusBeat last set,
+     * listing each workspace's members page by page. Returns right away; the future completes with the
+     * number of manual statuses found.
+     *
+     * Every workspace is swept on its own virtual thread, so one waiting on its users.list budget holds up
+     * neither the other workspaces nor the scheduler. Workspaces still being swept from the last run are
+     * skipped.
+     */
+    public CompletableFuture<Integer> reconcileTeams() {
+        if (!isTeamMode()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        return CompletableFuture.supplyAsync(this::candidatesByTeam, teamSweeps).thenCompose(usersByTeam -> {
+            List<CompletableFuture<Integer>> sweeps = usersByTeam.entrySet().stream()
+                    .filter(team -> teamsSweeping.add(team.getKey()))
+                    .map(team -> CompletableFuture
+                            .supplyAsync(() -> sweepTeam(team.getKey(), team.getValue()), teamSweeps)
+                            .whenComplete((detected, e) -> teamsSweeping.remove(team.getKey())))
+                    .toList();
+            return CompletableFuture.allOf(sweeps.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                int detected = sweeps.stream().mapToInt(CompletableFuture::join).sum();
+                if (detected > 0) {
+                    log.info("Team status sweep found {} manual statuses across {} teams", detected, sweeps.size());
+                }
+                return detected;
+            });
+        });
+    }
+
+    private Map<String, List<User>> candidatesByTeam() {
+        // Candidates are already active, syncing, token-valid and without a manual status
+        try (Stream<User> candidates = syncCandidateSource.stream(syncPartitionService::owns)) {
+            return candidates
+                    .filter(user -> user.getSlackTeamId() != null)
+                    .collect(Collectors.groupingBy(User::getSlackTeamId));
+        }
+    }
+
+    private int sweepTeam(String teamId, List<User> users) {
+        Map<String, String> statuses;
+        try {
+            statuses = slackService.getTeamStatusTexts(teamId);
+        } catch (CircuitOpenException e) {
+            log.debug("{} unavailable, skipping team {} this sweep", e.getEndpoint(), teamId);
+            return 0;
+        } catch (SlackRateLimitException e) {
+            // Each workspace has its own users.list budget; the next sweep tries this one again
+            log.debug("users.list rate limited for team {}, skipping it this sweep", teamId);
+            return 0;
+        } catch (RuntimeException e) {
+            log.error("Error listing member statuses for team {}", teamId, e);
+            return 0;
+        }
+        if (statuses == null) {
+            // Members of this team keep being checked one by one by the sync
+            teamsUnlisted.increment();
+            teamsReconciledAt.remove(teamId);
+            return 0;
+        }
+        teamsListed.increment();
+        teamsReconciledAt.put(teamId, System.currentTimeMillis());
+
+        int detected = 0;
+        for (User user : users) {
+            String statusText = statuses.get(user.getSlackUserId());
+            // Cheap in-memory comparison first; only suspects are re-read and confirmed
+            if (statusText != null && slackService.isManualStatus(user, statusText)
+                    && confirm(user.getSlackUserId(), statusText, detectedByTeamSweep)) {
+                detected++;
+            }
+        }
+        return detected;
+    }
+
+    /**
+     * Re-reads the user and stops their sync if the status is still one they set themselves. The fresh
+     * read guards against statuses StatusBeat wrote after the event or listing was produced.
+     */
+    private boolean confirm(String slackUserId, String statusText, Counter detected) {
+        try {
+            User user = userService.findBySlackUserId(slackUserId).orElse(null);
+            if (user == null || !user.isActive() || user.isManualStatusSet() || user.isTokenInvalidated()) {
+                return false;
+            }
+            UserSettings settings = userService.getUserSettings(user.getId()).orElse(null);
+            if (settings == null || !settings.isSyncEnabled() || !settings.isSyncActive()) {
+                return false;
+            }
+            if (!slackService.isManualStatus(user, statusText)) {
+                return false;
+            }
+
+            log.info("User {} set their own status, stopping sync", slackUserId);
+            detected.increment();
+            userService.setManualStatusFlag(user.getId(), true);
+            userService.stopSync(user.getId());
+            pollIntervalPolicy.reset(user.getId());
+            lastPolledAt.remove(user.getId());
+            return true;
+        } catch (Exception e) {
+            log.error("Error confirming manual status for user {}", slackUserId, e);
+            return false;
+        }
+    }
+
+    private boolean isTeamMode() {
+        return TEAM_MODE.equals(reconcileMode);
+    }
+
+    private static Counter detectedCounter(String source, MeterRegistry meterRegistry) {
+        return Counter.builder("statusbeat.slack.status.manual.detected")
+                .tag("source", source)
+                .description("Manual Slack statuses detected")
+                .register(meterRegistry);
+    }
+
+    private static Counter teamSweepCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("statusbeat.slack.status.team_sweeps")
+                .tag("result", result)
+                .description("Workspaces whose member statuses were listed for reconciliation")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        teamSweeps.shutdownNow();
+    }
+}
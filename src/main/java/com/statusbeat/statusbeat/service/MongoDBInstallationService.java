@@ -29,6 +29,7 @@ public class MongoDBInstallationService implements InstallationService {
     private final BotInstallationRepository botInstallationRepository;
     private final SlackService slackService;
     private final EncryptionUtil encryptionUtil;
+    private final InstallationCache installationCache;
     private boolean historicalDataEnabled = false;
 
     @Override
@@ -77,6 +78,7 @@ public class MongoDBInstallationService implements InstallationService {
         }
 
         User savedUser = userRepository.save(user);
+        installationCache.invalidate(installer.getTeamId(), installer.getInstallerUserId());
         log.info("=== USER SAVED TO MONGODB === ID: {}, SlackUserId: {}",
                 savedUser.getId(), savedUser.getSlackUserId());
 
@@ -85,6 +87,7 @@ public class MongoDBInstallationService implements InstallationService {
             // Fetch user's timezone from Slack
             Integer timezoneOffset = slackService.getUserTimezoneOffset(
                     installer.getInstallerUserAccessToken(),
+                    installer.getTeamId(),
                     installer.getInstallerUserId()
             );
 
@@ -146,6 +149,7 @@ public class MongoDBInstallationService implements InstallationService {
         }
 
         botInstallationRepository.save(botInstallation);
+        installationCache.invalidate(bot.getTeamId(), null);
         log.info("=== BOT TOKEN SAVED === TeamId: {}", bot.getTeamId());
     }
 
@@ -153,6 +157,7 @@ public class MongoDBInstallationService implements InstallationService {
     public void deleteBot(Bot bot) throws Exception {
         if (bot != null && bot.getTeamId() != null) {
             botInstallationRepository.deleteByTeamId(bot.getTeamId());
+            installationCache.invalidate(bot.getTeamId(), null);
         }
     }
 
@@ -162,10 +167,17 @@ public class MongoDBInstallationService implements InstallationService {
             userRepository.findBySlackTeamId(installer.getEnterpriseId())
                     .ifPresent(userRepository::delete);
         }
+        if (installer != null) {
+            installationCache.invalidate(installer.getTeamId(), installer.getInstallerUserId());
+        }
     }
 
     @Override
     public Bot findBot(String enterpriseId, String teamId) {
+        return installationCache.get(InstallationCache.Kind.BOT, teamId, null, () -> loadBot(enterpriseId, teamId));
+    }
+
+    private Bot loadBot(String enterpriseId, String teamId) {
         log.debug("Finding bot for enterpriseId: {}, teamId: {}", enterpriseId, teamId);
 
         Optional<BotInstallation> botOpt = botInstallationRepository.findByTeamId(teamId);
@@ -196,6 +208,11 @@ public class MongoDBInstallationService implements InstallationService {
 
     @Override
     public Installer findInstaller(String enterpriseId, String teamId, String userId) {
+        return installationCache.get(InstallationCache.Kind.INSTALLER, teamId, userId,
+                () -> loadInstaller(enterpriseId, teamId, userId));
+    }
+
+    private Installer loadInstaller(String enterpriseId, String teamId, String userId) {
         log.debug("Finding installer for enterpriseId: {}, teamId: {}, userId: {}",
             enterpriseId, teamId, userId);
 
@@ -1,27 +1,54 @@
 package com.statusbeat.statusbeat.service;
 
 import com.statusbeat.statusbeat.constants.AppConstants;
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
+import com.statusbeat.statusbeat.exception.SpotifyRateLimitException;
 import com.statusbeat.statusbeat.model.CurrentlyPlayingTrackInfo;
 import com.statusbeat.statusbeat.model.SyncContentType;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
+import com.statusbeat.statusbeat.util.Batches;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MusicSyncService {
 
+    private static final long STOP_POLLING = -1;
+
     private final UserService userService;
     private final SpotifyService spotifyService;
     private final SlackService slackService;
     private final TimezoneService timezoneService;
+    private final SyncExecutor syncExecutor;
+    private final PollScheduler pollScheduler;
+    private final PollIntervalPolicy pollIntervalPolicy;
+    private final SyncPartitionService syncPartitionService;
+    private final SyncPipeline syncPipeline;
+    private final SlackStatusRetryQueue slackStatusRetryQueue;
+    private final ManualStatusMonitor manualStatusMonitor;
+    private final SyncStateWriter syncStateWriter;
+    private final SyncCandidateSource syncCandidateSource;
 
     @Value("${statusbeat.sync.polling-interval:10000}")
     private long pollingIntervalMs;
@@ -29,57 +56,249 @@ public class MusicSyncService {
     @Value("${statusbeat.sync.expiration-overhead-ms:120000}")
     private long expirationOverheadMs;
 
-    @Scheduled(fixedDelayString = "${statusbeat.sync.polling-interval}")
-    public void syncMusicStatus() {
-        log.debug("Starting music status sync cycle");
+    @Value("${statusbeat.sync.candidate-batch-size:500}")
+    private int candidateBatchSize = 500;
+
+    private Stages stages;
+
+    /**
+     * Starts the pipeline stages. Their workers idle until the first user is submitted.
+     */
+    @PostConstruct
+    public void startPipeline() {
+        BiConsumer<SyncJob, Throwable> fail = (job, e) -> job.result.completeExceptionally(e);
+        stages = new Stages(
+                syncPipeline.createStage(SyncPipeline.Stage.FETCH, this::fetch, fail),
+                syncPipeline.createStage(SyncPipeline.Stage.DIFF, this::diff, fail),
+                syncPipeline.createStage(SyncPipeline.Stage.PUBLISH, this::publish, fail),
+                syncPipeline.createStage(SyncPipeline.Stage.PERSIST, this::persist, fail));
+    }
 
-        List<User> activeUsers = userService.findAllActiveUsers();
-        log.debug("Found {} active users to sync", activeUsers.size());
+    /**
+     * Polls every user whose next-poll deadline has fired. Runs on a short tick; users without
+     * a due deadline cost nothing.
+     */
+    @Scheduled(fixedDelayString = "${statusbeat.sync.tick-ms:500}")
+    public void pollDueUsers() {
+        List<String> dueUserIds = pollScheduler.pollDue();
+        if (dueUserIds.isEmpty()) {
+            return;
+        }
+
+        // Users who can no longer sync (or whose partition moved to another node) drop out here; they are
+        // scheduled again by startSync, a reconnect, or their new owner
+        List<User> candidates = userService.findSyncCandidates(dueUserIds);
+        if (candidates.size() < dueUserIds.size()) {
+            Set<String> candidateIds = candidates.stream().map(User::getId).collect(Collectors.toSet());
+            dueUserIds.stream().filter(userId -> !candidateIds.contains(userId)).forEach(pollIntervalPolicy::reset);
+        }
+        List<User> dueUsers = ownedUsers(candidates);
+        log.debug("{} users due for sync ({} owned by this node)", dueUserIds.size(), dueUsers.size());
+
+        // Users still publishing when the cycle returns are rescheduled by the pipeline as they finish
+        if (runCycle(dueUsers).isEmpty()) {
+            // Another cycle holds the executor; try these users again on the next tick
+            dueUsers.forEach(user -> pollScheduler.schedule(user.getId(), 0));
+            return;
+        }
+        syncStateWriter.flush();
+    }
 
-        for (User user : activeUsers) {
-            try {
-                syncUserMusicStatus(user);
-            } catch (Exception e) {
-                log.error("Error syncing music status for user {}", user.getSlackUserId(), e);
-                // Continue with next user even if this one fails
+    /**
+     * Makes sure every sync candidate has a poll deadline. Runs at startup and periodically to pick up
+     * users that became eligible outside startSync (reconnects, re-enabled sync). New deadlines are
+     * spread across one polling interval so users don't all fire on the same tick.
+     */
+    @Scheduled(fixedDelayString = "${statusbeat.sync.reconcile-interval-ms:300000}")
+    public void scheduleActiveUsers() {
+        int added = 0;
+        try (Stream<String> userIds = syncCandidateSource.streamIds(syncPartitionService::owns)) {
+            for (String userId : (Iterable<String>) userIds::iterator) {
+                long jitterMs = ThreadLocalRandom.current().nextLong(Math.max(1, pollingIntervalMs));
+                if (pollScheduler.scheduleIfAbsent(userId, jitterMs)) {
+                    added++;
+                }
             }
         }
 
-        log.debug("Completed music status sync cycle");
+        if (added > 0) {
+            log.info("Scheduled {} sync candidates for polling ({} pending)", added, pollScheduler.size());
+        }
+    }
+
+    /**
+     * Syncs each user against settings loaded with one query per batch of users, so the pipeline and the
+     * Slack write never look settings up per user. Settings are held only until their user's sync starts.
+     *
+     * A user holds an executor slot only through fetch and diff; the cycle can end while users are still
+     * publishing, and the pipeline reschedules them as they finish.
+     */
+    private Optional<SyncExecutor.SyncCycleStats> runCycle(Iterable<User> users) {
+        Map<String, UserSettings> settingsByUserId = new ConcurrentHashMap<>();
+        Iterable<User> withSettings = () -> Batches.flatMap(users.iterator(), candidateBatchSize, batch -> {
+            settingsByUserId.putAll(userService.getUserSettingsByUserIds(batch.stream().map(User::getId).toList()));
+            return batch;
+        });
+        return syncExecutor.runCycle(withSettings, user -> {
+            SyncJob job = startSync(user, settingsByUserId.remove(user.getId()));
+            // Publish and persist finish on their own; the slot is only needed until the job is decided
+            await(job.decided);
+        });
     }
 
-    private void syncUserMusicStatus(User user) {
+    /**
+     * Picks up users in partitions this node just took over from another node.
+     */
+    @EventListener
+    public void onPartitionsChanged(SyncPartitionService.PartitionsChangedEvent event) {
+        scheduleActiveUsers();
+    }
+
+    private List<User> ownedUsers(List<User> users) {
+        return users.stream()
+                .filter(user -> syncPartitionService.owns(user.getId()))
+                .toList();
+    }
+
+    /**
+     * Syncs one user's Spotify playback to their Slack status. The job's result is the delay until their
+     * next poll, or {@link #STOP_POLLING} when the user cannot sync until something changes (start,
+     * reconnect), so there is no point polling them again. Settings are the ones loaded for the cycle;
+     * null if the user has none.
+     *
+     * The work runs through the fetch, diff, publish and persist stages without blocking the caller. The
+     * user is rescheduled from the job's completion, whichever stage finishes it.
+     */
+    private SyncJob startSync(User user, UserSettings settings) {
+        SyncJob job = new SyncJob(user, settings);
+        if (!user.isActive()) {
+            job.result.complete(STOP_POLLING);
+            return job;
+        }
+        try {
+            stages.fetch().submit(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.result.completeExceptionally(new IllegalStateException(
+                    "Interrupted while queueing sync for user " + user.getSlackUserId(), e));
+        } catch (RuntimeException e) {
+            job.result.completeExceptionally(e);
+        }
+        return job;
+    }
+
+    private void reschedule(SyncJob job, Long nextPollDelayMs, Throwable error) {
+        if (error != null && job.handedOff) {
+            // Failures before the handoff reach the executor; these happened while publishing or persisting
+            log.error("Error publishing music status for user {}", job.user.getSlackUserId(), error);
+        }
+        // Failed polls are retried on the regular interval
+        long delayMs = error == null ? nextPollDelayMs : pollingIntervalMs;
+        if (delayMs == STOP_POLLING) {
+            stopPolling(job.user);
+        } else {
+            pollScheduler.schedule(job.user.getId(), delayMs);
+        }
+    }
+
+    /**
+     * Blocks until part of a job is done, rethrowing whatever failed along the way.
+     */
+    private static void await(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a decided job on to publish or persist and frees its executor slot. The slot is held until the
+     * stage accepts the job, so a backed up publish stage still slows the cycle down.
+     */
+    private void handOff(SyncStage<SyncJob> stage, SyncJob job) throws InterruptedException {
+        // Set first: the stage can fail the job before submit returns
+        job.handedOff = true;
+        stage.submit(job);
+        job.decided.complete(null);
+    }
+
+    private void stopPolling(User user) {
+        pollScheduler.cancel(user.getId());
+        pollIntervalPolicy.reset(user.getId());
+    }
+
+    /**
+     * Fetch stage: runs the gate and manual status check against the cycle's settings, and reads Spotify
+     * playback.
+     */
+    private void fetch(SyncJob job) throws InterruptedException {
+        User user = job.user;
+
         // Early validation
         if (user.getEncryptedSpotifyAccessToken() == null) {
             log.debug("User {} has no Spotify token, skipping sync", user.getSlackUserId());
+            job.result.complete(STOP_POLLING);
             return;
         }
 
         if (user.isTokenInvalidated()) {
             log.debug("User {} has invalidated token, skipping sync", user.getSlackUserId());
+            job.result.complete(STOP_POLLING);
             return;
         }
 
-        UserSettings settings = userService.getUserSettings(user.getId()).orElse(null);
+        UserSettings settings = job.settings;
         if (settings == null) {
             log.debug("User {} has no settings, skipping sync", user.getSlackUserId());
+            job.result.complete(STOP_POLLING);
             return;
         }
 
         // === SINGLE GATE CHECK ===
         if (!canSyncStatus(user, settings)) {
+            // Only users waiting for their working hours need polling; the rest resume via startSync
+            boolean waitingForWorkingHours = settings.isSyncEnabled() && settings.isSyncActive()
+                    && !user.isManualStatusSet();
+            job.result.complete(waitingForWorkingHours ? pollIntervalPolicy.afterIdle(user.getId()) : STOP_POLLING);
             return;
         }
 
-        // Check for manual status change EVERY cycle
-        if (slackService.hasManualStatusChange(user)) {
-            log.info("User {} has manually changed their status, stopping sync", user.getSlackUserId());
-            userService.setManualStatusFlag(user.getId(), true);
-            userService.stopSync(user.getId());
+        try {
+            // Slack events catch manual statuses as they happen; this is the slow fallback for missed ones
+            if (manualStatusMonitor.isPollCheckDue(user) && slackService.hasManualStatusChange(user)) {
+                log.info("User {} has manually changed their status, stopping sync", user.getSlackUserId());
+                job.action = SyncAction.STOP_MANUAL;
+                job.nextPollDelayMs = STOP_POLLING;
+                handOff(stages.persist(), job);
+                return;
+            }
+
+            job.track = spotifyService.getCurrentlyPlayingTrack(user);
+        } catch (SpotifyRateLimitException e) {
+            // Leave the status alone and come back once Spotify is expected to accept requests again
+            postpone(job, "spotify", e.getRetryAfterMs());
+            return;
+        } catch (CircuitOpenException e) {
+            postpone(job, e.getEndpoint(), e.getRetryAfterMs());
+            return;
+        } catch (SlackRateLimitException e) {
+            postpone(job, "slack:" + e.getMethod(), e.getRetryAfterMs());
             return;
         }
+        stages.diff().submit(job);
+    }
 
-        CurrentlyPlayingTrackInfo currentTrack = spotifyService.getCurrentlyPlayingTrack(user);
+    /**
+     * Diff stage: decides in memory what, if anything, has to change and when to poll next.
+     */
+    private void diff(SyncJob job) throws InterruptedException {
+        User user = job.user;
+        UserSettings settings = job.settings;
+        CurrentlyPlayingTrackInfo currentTrack = job.track;
 
         // Filter by content type preference
         if (currentTrack != null && !matchesContentTypePreference(currentTrack, settings)) {
@@ -88,54 +307,136 @@ public class MusicSyncService {
             currentTrack = null; // Treat as not playing
         }
 
-        if (currentTrack == null || !currentTrack.isPlaying()) {
-            handleNoTrackPlaying(user, settings);
-            return;
-        }
-
-        if (!isDeviceAllowed(user, currentTrack.getDeviceId())) {
+        if (currentTrack != null && currentTrack.isPlaying() && !isDeviceAllowed(user, settings, currentTrack.getDeviceId())) {
             log.debug("User {} is playing on non-tracked device '{}', skipping sync",
                     user.getSlackUserId(), currentTrack.getDeviceName());
-            handleNoTrackPlaying(user, settings);
+            currentTrack = null;
+        }
+
+        if (currentTrack == null || !currentTrack.isPlaying()) {
+            job.nextPollDelayMs = pollIntervalPolicy.afterIdle(user.getId());
+            if (user.getCurrentlyPlayingSongId() != null) {
+                log.info("No track playing for user {}, clearing status", user.getSlackUserId());
+                job.action = SyncAction.CLEAR_STATUS;
+                handOff(stages.publish(), job);
+            } else {
+                job.result.complete(job.nextPollDelayMs);
+            }
             return;
         }
 
-        boolean trackChanged = hasTrackChanged(user, currentTrack);
+        job.track = currentTrack;
+        job.nextPollDelayMs = pollIntervalPolicy.afterPlayback(user.getId(), currentTrack);
+        job.trackChanged = hasTrackChanged(user, currentTrack);
         boolean needsExpirationRefresh = shouldRefreshExpiration(currentTrack);
-        boolean shouldUpdateStatus = trackChanged || needsExpirationRefresh;
 
-        if (trackChanged) {
+        if (job.trackChanged) {
             log.info("Track changed for user {}: {} - {}",
                     user.getSlackUserId(),
                     currentTrack.getTrackName(),
                     currentTrack.getArtistName());
-
-            userService.updateCurrentlyPlaying(
-                    user.getId(),
-                    currentTrack.getTrackId(),
-                    currentTrack.getTrackName(),
-                    currentTrack.getArtistName()
-            );
+            pollIntervalPolicy.recordTrackChange(currentTrack);
         }
 
-        if (shouldUpdateStatus) {
-            if (needsExpirationRefresh && !trackChanged) {
+        if (job.trackChanged || needsExpirationRefresh) {
+            if (needsExpirationRefresh && !job.trackChanged) {
                 log.debug("Same track playing for user {}, but expiration approaching - refreshing status", user.getSlackUserId());
             }
+            job.action = SyncAction.UPDATE_STATUS;
+            handOff(stages.publish(), job);
+        } else {
+            log.debug("Same track playing for user {}, expiration still valid - skipping update", user.getSlackUserId());
+            job.result.complete(job.nextPollDelayMs);
+        }
+    }
+
+    /**
+     * Publish stage: writes the decided status to Slack.
+     */
+    private void publish(SyncJob job) throws InterruptedException {
+        // Any retry still queued for an older status of this user is now stale
+        long generation = slackStatusRetryQueue.nextGeneration(job.user.getId());
+        try {
+            writeStatus(job);
+        } catch (CircuitOpenException e) {
+            // Nothing was written, so nothing to persist; the next poll decides again
+            postpone(job, e.getEndpoint(), e.getRetryAfterMs());
+            return;
+        } catch (SlackRateLimitException e) {
+            // Queued too long behind Slack's rate limit; retrying now would only add to the queue
+            postpone(job, "slack:" + e.getMethod(), e.getRetryAfterMs());
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Slack status write failed for user {}, retrying in the background: {}",
+                    job.user.getSlackUserId(), e.getMessage());
+            slackStatusRetryQueue.retry(job.user, generation, job.action.name(), () -> {
+                // Retries can run well after the cycle; write with the user's current settings
+                job.settings = null;
+                writeStatus(job);
+                persist(job);
+            }, e);
+            job.result.complete(job.nextPollDelayMs);
+            return;
+        }
+        stages.persist().submit(job);
+    }
 
+    private void writeStatus(SyncJob job) {
+        if (job.action == SyncAction.UPDATE_STATUS) {
             slackService.updateUserStatus(
-                    user,
-                    currentTrack.getTrackName(),
-                    currentTrack.getArtistName(),
-                    currentTrack.getDurationMs(),
-                    currentTrack.getProgressMs()
+                    job.user,
+                    job.settings,
+                    job.track.getTrackName(),
+                    job.track.getArtistName(),
+                    job.track.getDurationMs(),
+                    job.track.getProgressMs()
             );
+        } else if (job.action == SyncAction.CLEAR_STATUS) {
+            slackService.clearUserStatus(job.user);
+        }
+    }
 
-            // Mark that we have set a status
-            userService.setStatusCleared(user.getId(), false);
-        } else {
-            log.debug("Same track playing for user {}, expiration still valid - skipping update", user.getSlackUserId());
+    /**
+     * Ends the job without touching the user's status and polls them again once the endpoint (an open
+     * circuit or a rate limit) lets calls through.
+     */
+    private void postpone(SyncJob job, String endpoint, long retryAfterMs) {
+        log.debug("{} unavailable, postponing sync for user {}", endpoint, job.user.getSlackUserId());
+        job.result.complete(Math.max(pollingIntervalMs, retryAfterMs));
+    }
+
+    /**
+     * Persist stage: records what was published, or that the user took over their status. Sync state is
+     * buffered and bulk written at the end of the cycle; taking over is written right away.
+     */
+    private void persist(SyncJob job) {
+        String userId = job.user.getId();
+        switch (job.action) {
+            case UPDATE_STATUS -> {
+                if (job.trackChanged) {
+                    // Conditional on the track this job started from, so a delayed retry never
+                    // overwrites a newer track recorded by a later poll
+                    syncStateWriter.updateCurrentlyPlaying(
+                            userId,
+                            job.user.getCurrentlyPlayingSongId(),
+                            job.track.getTrackId(),
+                            job.track.getTrackName(),
+                            job.track.getArtistName()
+                    );
+                }
+                // Mark that we have set a status
+                syncStateWriter.setStatusCleared(userId, false);
+            }
+            case CLEAR_STATUS -> {
+                syncStateWriter.clearCurrentlyPlaying(userId);
+                syncStateWriter.setStatusCleared(userId, true);
+            }
+            case STOP_MANUAL -> {
+                userService.setManualStatusFlag(userId, true);
+                userService.stopSync(userId);
+            }
         }
+        job.result.complete(job.nextPollDelayMs);
     }
 
     /**
@@ -188,15 +489,6 @@ public class MusicSyncService {
         return shouldRefresh;
     }
 
-    private void handleNoTrackPlaying(User user, UserSettings settings) {
-        if (user.getCurrentlyPlayingSongId() != null) {
-            log.info("No track playing for user {}, clearing status", user.getSlackUserId());
-            slackService.clearUserStatus(user);
-            userService.clearCurrentlyPlaying(user.getId());
-            userService.setStatusCleared(user.getId(), true);
-        }
-    }
-
     private boolean hasTrackChanged(User user, CurrentlyPlayingTrackInfo currentTrack) {
         String previousTrackId = user.getCurrentlyPlayingSongId();
 
@@ -207,26 +499,17 @@ public class MusicSyncService {
         return !previousTrackId.equals(currentTrack.getTrackId());
     }
 
-    private boolean isDeviceAllowed(User user, String deviceId) {
+    private boolean isDeviceAllowed(User user, UserSettings settings, String deviceId) {
         if (deviceId == null) {
             log.debug("No device ID available for user {}, allowing sync", user.getSlackUserId());
             return true;
         }
 
-        var settings = userService.getUserSettings(user.getId());
-
-        if (settings.isEmpty()) {
-            log.warn("No settings found for user {}, allowing sync", user.getSlackUserId());
+        if (settings.getAllowedDeviceIds() == null || settings.getAllowedDeviceIds().isEmpty()) {
             return true;
         }
 
-        var userSettings = settings.get();
-
-        if (userSettings.getAllowedDeviceIds() == null || userSettings.getAllowedDeviceIds().isEmpty()) {
-            return true;
-        }
-
-        boolean isAllowed = userSettings.getAllowedDeviceIds().contains(deviceId);
+        boolean isAllowed = settings.getAllowedDeviceIds().contains(deviceId);
 
         if (!isAllowed) {
             log.debug("Device {} not in allowed list for user {}", deviceId, user.getSlackUserId());
@@ -290,8 +573,57 @@ public class MusicSyncService {
         UserSettings settings = userService.getUserSettings(user.getId()).orElse(null);
         if (settings != null && settings.isSyncEnabled() && !settings.isSyncActive()) {
             userService.startSync(user.getId());
+            // startSync clears the manual/cleared flags and activates sync; sync against the stored state
+            user = userService.findBySlackUserId(userId).orElse(user);
+            settings = userService.getUserSettings(user.getId()).orElse(null);
+        }
+
+        // An explicit sync means the user is around; don't stay on a long idle backoff
+        pollIntervalPolicy.reset(user.getId());
+        // Unlike a polled user, wait for the status to be written before answering
+        await(startSync(user, settings).done);
+        syncStateWriter.flush(user.getId());
+    }
+
+    private enum SyncAction {
+        NONE, UPDATE_STATUS, CLEAR_STATUS, STOP_MANUAL
+    }
+
+    /**
+     * One user's trip through the pipeline. Each stage fills in what it learned before handing it on.
+     * The result completes when the job leaves the pipeline, which reschedules the user, and decided when
+     * the job no longer needs an executor slot.
+     */
+    private final class SyncJob {
+        private final User user;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> decided = new CompletableFuture<>();
+        private volatile boolean handedOff;
+        private UserSettings settings;
+        private CurrentlyPlayingTrackInfo track;
+        private SyncAction action = SyncAction.NONE;
+        private boolean trackChanged;
+        private long nextPollDelayMs;
+
+        private SyncJob(User user, UserSettings settings) {
+            this.user = user;
+            this.settings = settings;
+            result.whenComplete((nextPollDelayMs, e) -> {
+                // Reschedule first, so a user decided in fetch or diff is scheduled before the cycle ends
+                try {
+                    reschedule(this, nextPollDelayMs, e);
+                } finally {
+                    if (e != null) {
+                        decided.completeExceptionally(e);
+                    } else {
+                        decided.complete(null);
+                    }
+                }
+            });
         }
+    }
 
-        syncUserMusicStatus(user);
+    private record Stages(SyncStage<SyncJob> fetch, SyncStage<SyncJob> diff,
+                          SyncStage<SyncJob> publish, SyncStage<SyncJob> persist) {
     }
 }
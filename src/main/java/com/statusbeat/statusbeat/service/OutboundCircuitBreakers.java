@@ -0,0 +1,178 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Circuit breakers for outbound Spotify and Slack calls, one per endpoint (e.g. "slack:users.profile.set").
+ *
+ * Callers acquire before the call and report the outcome after it. Only outcomes that say the remote
+ * service is unhealthy (network errors, 5xx) count as failures; per-user errors such as a revoked token
+ * are reported as successes, and rate limiting is left to the rate governors. While a breaker is open,
+ * acquire throws {@link CircuitOpenException} without touching the network, so the sync engine can
+ * postpone the user instead of waiting on a timeout.
+ *
+ * Also a health contributor: breaker states are listed under /actuator/health on the internal management
+ * port, never on the public one. Open breakers do not
+ * mark the app DOWN, since restarting it would not bring Spotify or Slack back.
+ */
+@Slf4j
+@Service
+public class OutboundCircuitBreakers implements HealthIndicator {
+
+    @Value("${statusbeat.circuit-breaker.window-size:20}")
+    private int windowSize = 20;
+
+    @Value("${statusbeat.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls = 10;
+
+    @Value("${statusbeat.circuit-breaker.failure-rate-threshold:50}")
+    private double failureRateThreshold = 50;
+
+    @Value("${statusbeat.circuit-breaker.slow-call-threshold-ms:5000}")
+    private long slowCallThresholdMs = 5000;
+
+    @Value("${statusbeat.circuit-breaker.slow-call-rate-threshold:80}")
+    private double slowCallRateThreshold = 80;
+
+    @Value("${statusbeat.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMs = 30000;
+
+    @Value("${statusbeat.circuit-breaker.half-open-probes:3}")
+    private int halfOpenProbes = 3;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public OutboundCircuitBreakers(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Lets a call to the endpoint go ahead, or throws if its breaker is open.
+     */
+    public void acquire(String endpoint) {
+        Endpoint breaker = endpoint(endpoint);
+        long now = System.currentTimeMillis();
+        if (!breaker.circuit().tryAcquire(now)) {
+            breaker.rejected().increment();
+            throw new CircuitOpenException(endpoint, Math.max(breaker.circuit().remainingOpenMs(now), 1));
+        }
+    }
+
+    /**
+     * Records a call that reached the endpoint and got a usable answer. startNanos is from System.nanoTime().
+     */
+    public void recordSuccess(String endpoint, long startNanos) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        Endpoint breaker = endpoint(endpoint);
+        (durationMs >= slowCallThresholdMs ? breaker.slow() : breaker.succeeded()).increment();
+        transition(endpoint, breaker, now -> breaker.circuit().onSuccess(durationMs, now));
+    }
+
+    public void recordFailure(String endpoint) {
+        Endpoint breaker = endpoint(endpoint);
+        breaker.failed().increment();
+        transition(endpoint, breaker, breaker.circuit()::onFailure);
+    }
+
+    /**
+     * Records a call whose outcome says nothing about the endpoint's health, such as a rate limit.
+     */
+    public void recordIgnored(String endpoint) {
+        endpoint(endpoint).circuit.onIgnored();
+    }
+
+    public boolean isOpen(String endpoint) {
+        Endpoint breaker = endpoints.get(endpoint);
+        return breaker != null && breaker.circuit().getState(System.currentTimeMillis()) == CircuitBreaker.State.OPEN;
+    }
+
+    public CircuitBreaker.State getState(String endpoint) {
+        Endpoint breaker = endpoints.get(endpoint);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.circuit().getState(System.currentTimeMillis());
+    }
+
+    @Override
+    public Health health() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> details = new TreeMap<>();
+        endpoints.forEach((name, breaker) -> {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("state", breaker.circuit().getState(now));
+            detail.put("failureRate", breaker.circuit().getFailureRate());
+            detail.put("slowCallRate", breaker.circuit().getSlowCallRate());
+            long remainingOpenMs = breaker.circuit().remainingOpenMs(now);
+            if (remainingOpenMs > 0) {
+                detail.put("retryInMs", remainingOpenMs);
+            }
+            details.put(name, detail);
+        });
+        return Health.up().withDetails(details).build();
+    }
+
+    private void transition(String endpoint, Endpoint breaker, LongConsumer outcome) {
+        long now = System.currentTimeMillis();
+        CircuitBreaker.State before = breaker.circuit().getState(now);
+        outcome.accept(now);
+        CircuitBreaker.State after = breaker.circuit().getState(now);
+        if (before != after) {
+            if (after == CircuitBreaker.State.OPEN) {
+                log.warn("Circuit for {} opened (failure rate {}%, slow call rate {}%), pausing calls for {} ms",
+                        endpoint, breaker.circuit().getFailureRate(), breaker.circuit().getSlowCallRate(), openDurationMs);
+            } else {
+                log.info("Circuit for {} is now {}", endpoint, after);
+            }
+            Counter.builder("statusbeat.circuit.transitions")
+                    .tag("endpoint", endpoint)
+                    .tag("to", after.name().toLowerCase())
+                    .description("Circuit breaker state changes")
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, this::register);
+    }
+
+    private Endpoint register(String name) {
+        CircuitBreaker circuit = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                slowCallThresholdMs, slowCallRateThreshold, openDurationMs, halfOpenProbes);
+        Gauge.builder("statusbeat.circuit.state", circuit, c -> c.getState(System.currentTimeMillis()).ordinal())
+                .tag("endpoint", name)
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+        return new Endpoint(circuit,
+                callCounter(name, "success"),
+                callCounter(name, "failure"),
+                callCounter(name, "slow"),
+                callCounter(name, "rejected"));
+    }
+
+    private Counter callCounter(String endpoint, String outcome) {
+        return Counter.builder("statusbeat.circuit.calls")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .description("Outbound calls seen by circuit breakers, by outcome")
+                .register(meterRegistry);
+    }
+
+    private record Endpoint(CircuitBreaker circuit, Counter succeeded, Counter failed, Counter slow, Counter rejected) {
+    }
+}
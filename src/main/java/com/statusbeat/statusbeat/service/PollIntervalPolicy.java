@@ -0,0 +1,114 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.CurrentlyPlayingTrackInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when each user should be polled next, based on what their last poll saw.
+ *
+ * While a track is playing the next poll lands just after the predicted track end, capped so skips
+ * and pauses are still noticed. Idle or paused users back off exponentially from the polling
+ * interval up to a cap, and snap back to the fast interval as soon as playback is seen again.
+ */
+@Service
+public class PollIntervalPolicy {
+
+    @Value("${statusbeat.sync.polling-interval:10000}")
+    private long pollingIntervalMs = 10000;
+
+    @Value("${statusbeat.sync.poll.track-end-margin-ms:1500}")
+    private long trackEndMarginMs = 1500;
+
+    @Value("${statusbeat.sync.poll.min-interval-ms:1000}")
+    private long minIntervalMs = 1000;
+
+    @Value("${statusbeat.sync.poll.max-playing-interval-ms:120000}")
+    private long maxPlayingIntervalMs = 120000;
+
+    @Value("${statusbeat.sync.poll.max-idle-interval-ms:300000}")
+    private long maxIdleIntervalMs = 300000;
+
+    private final Map<String, Integer> idleStreaks = new ConcurrentHashMap<>();
+    private final Counter trackEndDecisions;
+    private final Counter idleDecisions;
+    private final DistributionSummary scheduledIntervals;
+    private final Timer trackChangeLag;
+
+    public PollIntervalPolicy(MeterRegistry meterRegistry) {
+        this.trackEndDecisions = Counter.builder("statusbeat.sync.poll.decisions")
+                .tag("reason", "track_end")
+                .description("Next-poll decisions by reason")
+                .register(meterRegistry);
+        this.idleDecisions = Counter.builder("statusbeat.sync.poll.decisions")
+                .tag("reason", "idle_backoff")
+                .description("Next-poll decisions by reason")
+                .register(meterRegistry);
+        this.scheduledIntervals = DistributionSummary.builder("statusbeat.sync.poll.interval")
+                .description("Delay until a user's next poll")
+                .baseUnit("milliseconds")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.trackChangeLag = Timer.builder("statusbeat.sync.track.change.lag")
+                .description("How far into a new track its change was detected")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Next poll delay for a user whose track is playing. Resets any idle backoff.
+     */
+    public long afterPlayback(String userId, CurrentlyPlayingTrackInfo track) {
+        idleStreaks.remove(userId);
+        trackEndDecisions.increment();
+
+        long delayMs = maxPlayingIntervalMs;
+        if (track.getDurationMs() != null && track.getProgressMs() != null) {
+            long remainingMs = track.getDurationMs() - track.getProgressMs();
+            delayMs = Math.min(remainingMs + trackEndMarginMs, maxPlayingIntervalMs);
+        }
+
+        return record(Math.max(delayMs, minIntervalMs));
+    }
+
+    /**
+     * Next poll delay for a user with nothing playing: the polling interval, doubled for every
+     * consecutive idle poll up to the idle cap.
+     */
+    public long afterIdle(String userId) {
+        int streak = idleStreaks.merge(userId, 1, (current, one) -> Math.min(current + 1, 31));
+        idleDecisions.increment();
+
+        long delayMs = pollingIntervalMs << Math.min(streak - 1, 20);
+        return record(Math.max(Math.min(delayMs, maxIdleIntervalMs), minIntervalMs));
+    }
+
+    /**
+     * Records how stale a detected track change was, approximated by the new track's progress.
+     */
+    public void recordTrackChange(CurrentlyPlayingTrackInfo track) {
+        if (track.getProgressMs() != null) {
+            trackChangeLag.record(track.getProgressMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forgets the user's backoff state so their next idle poll starts from the fast interval.
+     */
+    public void reset(String userId) {
+        idleStreaks.remove(userId);
+    }
+
+    private long record(long delayMs) {
+        scheduledIntervals.record(delayMs);
+        return delayMs;
+    }
+}
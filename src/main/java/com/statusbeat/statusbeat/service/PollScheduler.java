@@ -0,0 +1,91 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.util.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds one next-poll deadline per user on a hierarchical timing wheel.
+ * MusicSyncService drains due users on every tick, so a user only costs work when their deadline fires.
+ */
+@Slf4j
+@Service
+public class PollScheduler {
+
+    static final long TICK_MS = 100;
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(System.currentTimeMillis() / TICK_MS);
+    private final Counter firedTimers;
+
+    public PollScheduler(MeterRegistry meterRegistry) {
+        this.firedTimers = Counter.builder("statusbeat.sync.poll.fired")
+                .description("User poll deadlines that fired")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.sync.poll.scheduled", this, PollScheduler::size)
+                .description("Users with a pending poll deadline")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sets the user's next poll to {@code delayMs} from now, replacing any existing deadline.
+     */
+    public synchronized void schedule(String userId, long delayMs) {
+        wheel.schedule(userId, toTick(System.currentTimeMillis() + Math.max(0, delayMs)));
+    }
+
+    /**
+     * Schedules the user only if no deadline is pending. Returns true if a deadline was added.
+     */
+    public synchronized boolean scheduleIfAbsent(String userId, long delayMs) {
+        if (wheel.contains(userId)) {
+            return false;
+        }
+        schedule(userId, delayMs);
+        return true;
+    }
+
+    public synchronized void cancel(String userId) {
+        if (wheel.cancel(userId)) {
+            log.debug("Cancelled poll timer for user {}", userId);
+        }
+    }
+
+    public synchronized boolean isScheduled(String userId) {
+        return wheel.contains(userId);
+    }
+
+    /**
+     * Returns the epoch millis of the user's next poll, or -1 if none is scheduled.
+     */
+    public synchronized long nextPollAt(String userId) {
+        long deadlineTick = wheel.deadlineOf(userId);
+        return deadlineTick < 0 ? -1 : deadlineTick * TICK_MS;
+    }
+
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    /**
+     * Advances the wheel to now and returns the users whose deadline has passed.
+     * Returned users are no longer scheduled; the caller reschedules them after polling.
+     */
+    public List<String> pollDue() {
+        List<String> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(toTick(System.currentTimeMillis()), due::add);
+        }
+        firedTimers.increment(due.size());
+        return due;
+    }
+
+    private static long toTick(long epochMs) {
+        return epochMs / TICK_MS;
+    }
+}
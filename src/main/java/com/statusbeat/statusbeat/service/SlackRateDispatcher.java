@@ -0,0 +1,320 @@
+package com.statusbeat.statusbeat.service;
+
+import com.slack.api.methods.SlackApiException;
+import com.slack.api.methods.SlackApiTextResponse;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side rate limiting for Slack Web API calls.
+ *
+ * Slack limits each app per method per workspace, in tiers. Every call takes a permit from the token
+ * bucket for its method and workspace, sized to the method's tier. A ratelimited answer empties that
+ * bucket until its Retry-After has passed, so the rest of the queue waits instead of piling on.
+ *
+ * Interactive calls (App Home, slash commands) wait up to their limit for a permit. Background calls never
+ * wait: they run while the bucket has a permit beyond the last one, which is left to interactive callers,
+ * and no interactive caller is queued on it. Otherwise they get a {@link SlackRateLimitException} carrying
+ * how long to hold off, so the sync postpones the user instead of parking one of its workers.
+ */
+@Slf4j
+@Service
+public class SlackRateDispatcher {
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    /**
+     * Slack's published rate tiers, per app per workspace.
+     */
+    public enum Tier {
+        TIER_1(1, 1),
+        TIER_2(20, 3),
+        TIER_3(50, 5),
+        TIER_4(100, 10),
+        // chat.postMessage: roughly one message per second
+        SPECIAL_POST_MESSAGE(60, 5);
+
+        private final double permitsPerMinute;
+        private final int burst;
+
+        Tier(double permitsPerMinute, int burst) {
+            this.permitsPerMinute = permitsPerMinute;
+            this.burst = burst;
+        }
+    }
+
+    private static final Map<String, Tier> METHOD_TIERS = Map.of(
+            "users.profile.set", Tier.TIER_3,
+            "users.profile.get", Tier.TIER_4,
+            "users.info", Tier.TIER_4,
+            "users.list", Tier.TIER_2,
+            "views.publish", Tier.TIER_4,
+            "views.open", Tier.TIER_4,
+            "chat.postMessage", Tier.SPECIAL_POST_MESSAGE);
+
+    @Value("${statusbeat.slack.rate-limit.interactive-max-wait-ms:2000}")
+    private long interactiveMaxWaitMs = 2000;
+
+    @Value("${statusbeat.slack.rate-limit.default-retry-after-ms:30000}")
+    private long defaultRetryAfterMs = 30000;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<Priority, AtomicInteger> waiting = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    // Per-method counters, registered on first use
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> limitedCounters = new ConcurrentHashMap<>();
+
+    public SlackRateDispatcher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            AtomicInteger queued = new AtomicInteger();
+            waiting.put(priority, queued);
+            Gauge.builder("statusbeat.slack.rate.waiting", queued, AtomicInteger::get)
+                    .tag("priority", tag)
+                    .description("Callers queued for a Slack request permit")
+                    .register(meterRegistry);
+            waitTimers.put(priority, Timer.builder("statusbeat.slack.rate.wait")
+                    .tag("priority", tag)
+                    .description("Time spent waiting for a Slack request permit")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Runs a Slack call once its method and workspace have a permit, and backs the bucket off if Slack
+     * answers ratelimited.
+     *
+     * @param teamId the workspace the call is made in; null puts the call in a shared bucket
+     * @throws SlackRateLimitException if no permit becomes available within the interactive wait limit, or
+     *                                 right away for a background call
+     */
+    public <T> T execute(String method, String teamId, Priority priority, SlackCall<T> call)
+            throws IOException, SlackApiException {
+        Bucket bucket = bucket(method, teamId);
+        acquire(bucket, method, priority);
+        try {
+            T response = call.execute();
+            if (response instanceof SlackApiTextResponse text && "ratelimited".equals(text.getError())) {
+                penalize(bucket, method, defaultRetryAfterMs);
+            }
+            return response;
+        } catch (SlackApiException e) {
+            if (e.getResponse().code() == 429) {
+                penalize(bucket, method, retryAfterMs(e));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Milliseconds until the method's bucket for the workspace stops being held back by a Retry-After.
+     */
+    public long penaltyRemainingMs(String method, String teamId) {
+        Bucket bucket = buckets.get(key(method, teamId));
+        return bucket != null ? bucket.penaltyRemainingMs() : 0;
+    }
+
+    public int waitingCallers(Priority priority) {
+        return waiting.get(priority).get();
+    }
+
+    private void acquire(Bucket bucket, String method, Priority priority) {
+        long start = System.nanoTime();
+        long deadline = priority == Priority.INTERACTIVE
+                ? start + TimeUnit.MILLISECONDS.toNanos(interactiveMaxWaitMs)
+                : start;
+        AtomicInteger queued = waiting.get(priority);
+
+        queued.incrementAndGet();
+        try {
+            long retryAfterMs = bucket.acquire(priority, deadline);
+            if (retryAfterMs > 0) {
+                rejectedCounter(method, priority).increment();
+                throw new SlackRateLimitException(method, retryAfterMs);
+            }
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void penalize(Bucket bucket, String method, long retryAfterMs) {
+        limitedCounters.computeIfAbsent(method, m -> Counter.builder("statusbeat.slack.rate.limited")
+                .tag("method", m)
+                .description("ratelimited responses received from Slack")
+                .register(meterRegistry))
+                .increment();
+        if (bucket.penalize(retryAfterMs)) {
+            log.warn("Slack rate limit hit for {}, pausing those calls for {} ms", method, retryAfterMs);
+        }
+    }
+
+    private Counter rejectedCounter(String method, Priority priority) {
+        String tag = priority.name().toLowerCase();
+        return rejectedCounters.computeIfAbsent(method + ":" + tag, key ->
+                Counter.builder("statusbeat.slack.rate.rejected")
+                        .tag("method", method)
+                        .tag("priority", tag)
+                        .description("Slack calls that gave up waiting for a request permit")
+                        .register(meterRegistry));
+    }
+
+    private long retryAfterMs(SlackApiException e) {
+        String header = e.getResponse().header("Retry-After");
+        if (header != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(header.trim()));
+            } catch (NumberFormatException ignored) {
+                // Fall through to the default
+            }
+        }
+        return defaultRetryAfterMs;
+    }
+
+    private Bucket bucket(String method, String teamId) {
+        return buckets.computeIfAbsent(key(method, teamId),
+                k -> new Bucket(METHOD_TIERS.getOrDefault(method, Tier.TIER_3)));
+    }
+
+    private static String key(String method, String teamId) {
+        return method + ":" + (teamId != null ? teamId : "");
+    }
+
+    @FunctionalInterface
+    public interface SlackCall<T> {
+        T execute() throws IOException, SlackApiException;
+    }
+
+    /**
+     * Token bucket for one method in one workspace.
+     */
+    private static final class Bucket {
+        private final double permitsPerSecond;
+        private final int burst;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition permitDue = lock.newCondition();
+
+        // Guarded by lock
+        private double permits;
+        private long lastRefillNanos = System.nanoTime();
+        private long penaltyUntilNanos = lastRefillNanos;
+        private int interactiveWaiting;
+
+        private Bucket(Tier tier) {
+            this.permitsPerSecond = tier.permitsPerMinute / 60.0;
+            this.burst = tier.burst;
+            this.permits = burst;
+        }
+
+        /**
+         * Takes a permit, waiting until the deadline at most. Returns 0 on success, otherwise how long
+         * the caller should hold off before trying again. Only interactive callers ever wait.
+         */
+        long acquire(Priority priority, long deadline) {
+            boolean interactive = priority == Priority.INTERACTIVE;
+            lock.lock();
+            if (interactive) {
+                interactiveWaiting++;
+            }
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+
+                    long waitNanos;
+                    if (now < penaltyUntilNanos) {
+                        waitNanos = penaltyUntilNanos - now;
+                        if (penaltyUntilNanos > deadline) {
+                            // Slack will not take the call before we'd give up anyway
+                            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                        }
+                    } else if (!interactive && interactiveWaiting > 0) {
+                        // Come back once the queued interactive callers have had a permit's worth of refill
+                        waitNanos = (long) Math.ceil(interactiveWaiting / permitsPerSecond * 1_000_000_000L);
+                    } else {
+                        // Background callers leave the last permit to interactive ones
+                        double floor = interactive || burst == 1 ? 1 : 2;
+                        if (permits >= floor) {
+                            permits -= 1;
+                            return 0;
+                        }
+                        waitNanos = (long) Math.ceil((floor - permits) / permitsPerSecond * 1_000_000_000L);
+                    }
+
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                    }
+                    permitDue.awaitNanos(Math.min(waitNanos, remaining));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return TimeUnit.NANOSECONDS.toMillis(Math.max(1, deadline - System.nanoTime()));
+            } finally {
+                if (interactive) {
+                    interactiveWaiting--;
+                }
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Empties the bucket until the Retry-After has passed. Returns true if this extended the pause.
+         */
+        boolean penalize(long retryAfterMs) {
+            lock.lock();
+            try {
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
+                boolean extended = until > penaltyUntilNanos;
+                if (extended) {
+                    penaltyUntilNanos = until;
+                }
+                // Start refilling from an empty bucket once the pause is over
+                permits = 0;
+                lastRefillNanos = penaltyUntilNanos;
+                return extended;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long penaltyRemainingMs() {
+            lock.lock();
+            try {
+                return Math.max(0, TimeUnit.NANOSECONDS.toMillis(penaltyUntilNanos - System.nanoTime()));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refill(long now) {
+            if (now <= lastRefillNanos) {
+                return;
+            }
+            double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+            permits = Math.min(burst, permits + elapsedSeconds * permitsPerSecond);
+            lastRefillNanos = now;
+        }
+    }
+}
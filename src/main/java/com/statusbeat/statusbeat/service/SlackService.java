@@ -6,44 +6,102 @@ import com.slack.api.methods.request.users.profile.UsersProfileSetRequest;
 import com.slack.api.methods.response.users.profile.UsersProfileSetResponse;
 import com.slack.api.model.User.Profile;
 import com.statusbeat.statusbeat.constants.AppConstants;
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
 import com.statusbeat.statusbeat.model.BotInstallation;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
 import com.statusbeat.statusbeat.repository.BotInstallationRepository;
+import com.statusbeat.statusbeat.service.SlackRateDispatcher.Priority;
 import com.statusbeat.statusbeat.util.EncryptionUtil;
-import lombok.RequiredArgsConstructor;
+import com.statusbeat.statusbeat.util.StatusTemplate;
+import com.statusbeat.statusbeat.util.StatusWriteCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SlackService {
 
+    private static final String PROFILE_SET_METHOD = "users.profile.set";
+    private static final String PROFILE_GET_METHOD = "users.profile.get";
+    private static final String USERS_INFO_METHOD = "users.info";
+    private static final String USERS_LIST_METHOD = "users.list";
+    private static final String POST_MESSAGE_METHOD = "chat.postMessage";
+    private static final int MAX_COMPILED_TEMPLATES = 10_000;
+
     private final UserService userService;
     private final TokenValidationService tokenValidationService;
     private final BotInstallationRepository botInstallationRepository;
     private final EncryptionUtil encryptionUtil;
+    private final InstallationCache installationCache;
+    private final OutboundCircuitBreakers circuitBreakers;
+    private final SlackRateDispatcher rateDispatcher;
     private final com.slack.api.Slack slack = com.slack.api.Slack.getInstance();
+    private final StatusWriteCoalescer statusWrites = new StatusWriteCoalescer();
+    private final Map<String, StatusTemplate> statusTemplates = new ConcurrentHashMap<>();
+    private final Map<StatusWriteCoalescer.Outcome, Counter> statusWriteCounters =
+            new EnumMap<>(StatusWriteCoalescer.Outcome.class);
 
     @Value("${statusbeat.sync.expiration-overhead-ms:120000}")
     private long expirationOverheadMs;
 
-    @Retryable(
-            maxAttemptsExpression = "${statusbeat.retry.max-attempts}",
-            backoff = @Backoff(delayExpression = "${statusbeat.retry.backoff-delay}", multiplier = 2)
-    )
+    @Value("${statusbeat.sync.polling-interval:10000}")
+    private long pollingIntervalMs = 10000;
+
+    @Value("${statusbeat.slack.users-list.page-size:200}")
+    private int usersListPageSize = 200;
+
+    @Value("${statusbeat.slack.users-list.max-page-wait-ms:60000}")
+    private long usersListMaxPageWaitMs = 60000;
+
+    public SlackService(UserService userService, TokenValidationService tokenValidationService,
+                        BotInstallationRepository botInstallationRepository, EncryptionUtil encryptionUtil,
+                        InstallationCache installationCache, OutboundCircuitBreakers circuitBreakers,
+                        SlackRateDispatcher rateDispatcher, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.tokenValidationService = tokenValidationService;
+        this.botInstallationRepository = botInstallationRepository;
+        this.encryptionUtil = encryptionUtil;
+        this.installationCache = installationCache;
+        this.circuitBreakers = circuitBreakers;
+        this.rateDispatcher = rateDispatcher;
+        for (StatusWriteCoalescer.Outcome outcome : StatusWriteCoalescer.Outcome.values()) {
+            statusWriteCounters.put(outcome, Counter.builder("statusbeat.slack.status.writes")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .description("Slack status writes sent, suppressed as no-ops, or superseded by newer ones")
+                    .register(meterRegistry));
+        }
+    }
+
     public void updateUserStatus(User user, String songTitle, String artist, Integer durationMs, Integer progressMs) {
+        updateUserStatus(user, null, songTitle, artist, durationMs, progressMs);
+    }
+
+    /**
+     * Sets the status from settings the caller already holds, such as the sync pipeline's per-cycle load.
+     *
+     * @param loadedSettings the user's settings, or null to read them
+     */
+    public void updateUserStatus(User user, UserSettings loadedSettings, String songTitle, String artist,
+                                 Integer durationMs, Integer progressMs) {
         try {
-            UserSettings settings = userService.getUserSettings(user.getId())
-                    .orElseThrow(() -> new RuntimeException(AppConstants.ERROR_USER_SETTINGS_NOT_FOUND));
+            UserSettings settings = loadedSettings;
+            if (settings == null) {
+                settings = userService.getUserSettings(user.getId())
+                        .orElseThrow(() -> new RuntimeException(AppConstants.ERROR_USER_SETTINGS_NOT_FOUND));
+            }
 
             if (!settings.isSyncEnabled()) {
                 log.debug("Sync disabled for user {}, skipping status update", user.getSlackUserId());
@@ -51,7 +109,7 @@ public class SlackService {
             }
 
             String statusText = buildStatusText(settings, songTitle, artist);
-            String statusEmoji = selectEmoji(settings);
+            String statusEmoji = selectEmoji(settings, user.getSlackUserId(), statusText);
 
             // Calculate status expiration based on remaining song time + overhead
             Long statusExpiration = null;
@@ -69,12 +127,17 @@ public class SlackService {
                         remainingSeconds, durationMs / 1000, currentProgress / 1000, expirationOverheadMs / 1000);
             }
 
-            setSlackStatus(userService.getDecryptedSlackAccessToken(user), statusText, statusEmoji, statusExpiration);
+            if (!publishStatus(user, statusText, statusEmoji, statusExpiration, Priority.BACKGROUND, false)) {
+                log.debug("Slack status for user {} already up to date: {}", user.getSlackUserId(), statusText);
+                return;
+            }
 
             userService.updateLastSetStatus(user.getId(), statusText);
 
             log.info("Updated Slack status for user {}: {} (expires in {}s)",
                     user.getSlackUserId(), statusText, statusExpiration != null ? (statusExpiration - System.currentTimeMillis() / 1000) : "N/A");
+        } catch (CircuitOpenException | SlackRateLimitException e) {
+            throw e;
         } catch (RuntimeException e) {
             // Check if this is a token invalidation error
             if (e.getMessage() != null && e.getMessage().contains("Slack token invalidated")) {
@@ -90,7 +153,7 @@ public class SlackService {
                         String notificationMessage = "⚠️ *Your Slack connection has been revoked*\n\n" +
                                 "StatusBeat can no longer update your Slack status. " +
                                 "To resume automatic status updates, please reinstall the app.";
-                        sendMessage(botToken, user.getSlackUserId(), notificationMessage);
+                        sendMessage(botToken, user.getSlackTeamId(), user.getSlackUserId(), notificationMessage);
                         log.info("Sent invalidation notification to user {}", user.getSlackUserId());
                     } else {
                         log.warn("No bot token found for team {}, cannot send invalidation notification",
@@ -110,10 +173,6 @@ public class SlackService {
         }
     }
 
-    @Retryable(
-            maxAttemptsExpression = "${statusbeat.retry.max-attempts}",
-            backoff = @Backoff(delayExpression = "${statusbeat.retry.backoff-delay}", multiplier = 2)
-    )
     public void clearUserStatus(User user) {
         // Never clear a user's manual status
         if (user.isManualStatusSet()) {
@@ -128,8 +187,11 @@ public class SlackService {
         }
 
         try {
-            setSlackStatus(userService.getDecryptedSlackAccessToken(user), "", "", null);
-            log.info("Cleared Slack status for user {}", user.getSlackUserId());
+            if (publishStatus(user, "", "", null, Priority.BACKGROUND, false)) {
+                log.info("Cleared Slack status for user {}", user.getSlackUserId());
+            }
+        } catch (CircuitOpenException | SlackRateLimitException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error clearing Slack status for user {}", user.getSlackUserId(), e);
             throw new RuntimeException(AppConstants.ERROR_FAILED_TO_CLEAR_SLACK_STATUS, e);
@@ -138,7 +200,7 @@ public class SlackService {
 
     public void forceClearUserStatus(User user) {
         try {
-            setSlackStatus(userService.getDecryptedSlackAccessToken(user), "", "", null);
+            publishStatus(user, "", "", null, Priority.INTERACTIVE, true);
             log.info("Force-cleared Slack status for user {}", user.getSlackUserId());
         } catch (Exception e) {
             log.error("Error force-clearing Slack status for user {}", user.getSlackUserId(), e);
@@ -146,8 +208,35 @@ public class SlackService {
         }
     }
 
-    private void setSlackStatus(String accessToken, String statusText, String statusEmoji, Long statusExpiration)
-            throws IOException, SlackApiException {
+    /**
+     * Writes the status through the user's outbound slot, so only the newest of concurrent writes goes out
+     * and a status already in place is not written again. Returns true if the write was sent.
+     */
+    private boolean publishStatus(User user, String statusText, String statusEmoji, Long statusExpiration,
+                                  Priority priority, boolean force) throws Exception {
+        // Re-send an unchanged status to extend it only once it expires within a few polls plus the overhead
+        long refreshThresholdSeconds = (pollingIntervalMs * 3 + expirationOverheadMs) / 1000;
+        StatusWriteCoalescer.Outcome outcome = statusWrites.submit(user.getSlackUserId(),
+                new StatusWriteCoalescer.Status(statusText, statusEmoji, statusExpiration),
+                refreshThresholdSeconds, force,
+                status -> setSlackStatus(userService.getDecryptedSlackAccessToken(user), user.getSlackTeamId(),
+                        priority, status.text(), status.emoji(), status.expiration()));
+
+        statusWriteCounters.get(outcome).increment();
+        return outcome == StatusWriteCoalescer.Outcome.SENT;
+    }
+
+    /**
+     * Records a status seen on Slack (fetched, listed or pushed in an event). If it is not what we last
+     * wrote, the user or Slack changed it, so the next write must go out even if it looks like a no-op.
+     */
+    public void observeStatus(String slackUserId, String statusText) {
+        String observed = normalizeStatusText(statusText);
+        statusWrites.forgetIf(slackUserId, written -> !normalizeStatusText(written.text()).equals(observed));
+    }
+
+    private void setSlackStatus(String accessToken, String teamId, Priority priority, String statusText,
+                                String statusEmoji, Long statusExpiration) throws IOException, SlackApiException {
         MethodsClient client = slack.methods(accessToken);
 
         Profile profile = new Profile();
@@ -163,7 +252,8 @@ public class SlackService {
                 .profile(profile)
                 .build();
 
-        UsersProfileSetResponse response = client.usersProfileSet(request);
+        UsersProfileSetResponse response = guarded(PROFILE_SET_METHOD, teamId, priority,
+                () -> client.usersProfileSet(request));
 
         if (!response.isOk()) {
             String error = response.getError();
@@ -178,29 +268,72 @@ public class SlackService {
         }
     }
 
-    private String buildStatusText(UserSettings settings, String songTitle, String artist) {
-        String template = settings.getStatusTemplate();
-
-        // Replace placeholders in template (emoji is set separately via statusEmoji field)
-        String text = template
-                .replace(AppConstants.PLACEHOLDER_EMOJI, "")
-                .replace(AppConstants.PLACEHOLDER_TITLE, settings.isShowSongTitle() ? songTitle : "")
-                .replace(AppConstants.PLACEHOLDER_ARTIST, settings.isShowArtist() ? artist : "");
+    /**
+     * Runs a Slack API call once the rate dispatcher hands out a permit for the method and workspace, then
+     * through the endpoint's circuit breaker. Only network errors and 5xx count against Slack; 429s are
+     * rate limiting, not an outage.
+     */
+    private <T> T guarded(String method, String teamId, Priority priority, SlackRateDispatcher.SlackCall<T> call)
+            throws IOException, SlackApiException {
+        String endpoint = "slack:" + method;
+        return rateDispatcher.execute(method, teamId, priority, () -> {
+            circuitBreakers.acquire(endpoint);
+            long start = System.nanoTime();
+            try {
+                T response = call.execute();
+                circuitBreakers.recordSuccess(endpoint, start);
+                return response;
+            } catch (IOException e) {
+                circuitBreakers.recordFailure(endpoint);
+                throw e;
+            } catch (SlackApiException e) {
+                int status = e.getResponse().code();
+                if (status >= 500) {
+                    circuitBreakers.recordFailure(endpoint);
+                } else if (status == 429) {
+                    circuitBreakers.recordIgnored(endpoint);
+                } else {
+                    circuitBreakers.recordSuccess(endpoint, start);
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreakers.recordIgnored(endpoint);
+                throw e;
+            }
+        });
+    }
 
-        // Clean up extra spaces and dashes
-        text = text.replaceAll("\\s+-\\s+$", "")
-                   .replaceAll("^\\s+-\\s+", "")
-                   .replaceAll("\\s{2,}", " ")
-                   .trim();
+    private String buildStatusText(UserSettings settings, String songTitle, String artist) {
+        // Emoji is set separately via the statusEmoji field; {emoji} renders as empty
+        return compiledTemplate(settings.getStatusTemplate())
+                .render(songTitle, artist, settings.isShowSongTitle(), settings.isShowArtist());
+    }
 
-        return text;
+    /**
+     * Compiled templates are keyed by the template text itself, so an edited template compiles afresh and
+     * users sharing a template share its plan.
+     */
+    private StatusTemplate compiledTemplate(String template) {
+        StatusTemplate compiled = statusTemplates.get(template);
+        if (compiled == null) {
+            if (statusTemplates.size() >= MAX_COMPILED_TEMPLATES) {
+                statusTemplates.clear();
+            }
+            compiled = statusTemplates.computeIfAbsent(template, StatusTemplate::compile);
+        }
+        return compiled;
     }
 
-    private String selectEmoji(UserSettings settings) {
+    private String selectEmoji(UserSettings settings, String slackUserId, String statusText) {
         List<String> emojis = settings.getRotatingEmojis();
         if (emojis == null || emojis.isEmpty()) {
             return settings.getDefaultEmoji();
         }
+        // Keep the emoji while the text stays the same, so refreshing an unchanged status is a no-op
+        StatusWriteCoalescer.Status current = statusWrites.acknowledged(slackUserId);
+        if (current != null && statusText.equals(current.text()) && emojis.contains(current.emoji())) {
+            return current.emoji();
+        }
         int index = ThreadLocalRandom.current().nextInt(emojis.size());
         return emojis.get(index);
     }
@@ -208,11 +341,14 @@ public class SlackService {
     /**
      * Fetches the user's timezone offset from Slack API.
      * Returns timezone offset in seconds from UTC, or null if unable to fetch.
+     *
+     * @param teamId the user's workspace, so the lookup takes a permit from that workspace's bucket
      */
-    public Integer getUserTimezoneOffset(String accessToken, String userId) {
+    public Integer getUserTimezoneOffset(String accessToken, String teamId, String userId) {
         try {
             MethodsClient client = slack.methods(accessToken);
-            var response = client.usersInfo(req -> req.user(userId));
+            var response = guarded(USERS_INFO_METHOD, teamId, Priority.INTERACTIVE,
+                    () -> client.usersInfo(req -> req.user(userId)));
 
             if (response.isOk() && response.getUser() != null) {
                 Integer tzOffset = response.getUser().getTzOffset();
@@ -235,22 +371,101 @@ public class SlackService {
     public String getCurrentStatusText(User user) {
         try {
             MethodsClient client = slack.methods(userService.getDecryptedSlackAccessToken(user));
-            var response = client.usersProfileGet(req -> req.user(user.getSlackUserId()));
+            var response = guarded(PROFILE_GET_METHOD, user.getSlackTeamId(), Priority.BACKGROUND,
+                    () -> client.usersProfileGet(req -> req.user(user.getSlackUserId())));
 
             if (response.isOk() && response.getProfile() != null) {
-                String statusText = response.getProfile().getStatusText();
+                String statusText = response.getProfile().getStatusText() != null
+                        ? response.getProfile().getStatusText() : "";
                 log.debug("Fetched current status for user {}: {}", user.getSlackUserId(), statusText);
-                return statusText != null ? statusText : "";
+                observeStatus(user.getSlackUserId(), statusText);
+                return statusText;
             } else {
                 log.warn("Failed to fetch current status for user {}: {}", user.getSlackUserId(), response.getError());
                 return null;
             }
+        } catch (CircuitOpenException | SlackRateLimitException e) {
+            // Let the sync engine postpone the user rather than guess at their status
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching current status for user {}", user.getSlackUserId(), e);
             return null;
         }
     }
 
+    /**
+     * Fetches the status text of every member of a workspace, paging through users.list with the team's
+     * bot token. One call per page replaces a users.profile.get per user.
+     * Returns null if the team has no bot installation or a page could not be fetched.
+     *
+     * Background calls fail fast when the workspace's users.list bucket is empty, so this waits out the
+     * Retry-After between pages itself. It runs on a team sweep's own thread, and gives up with a
+     * {@link SlackRateLimitException} once a page would take longer than the configured page wait.
+     */
+    public Map<String, String> getTeamStatusTexts(String teamId) {
+        String botToken = getDecryptedBotToken(teamId);
+        if (botToken == null) {
+            log.debug("No bot token for team {}, cannot list member statuses", teamId);
+            return null;
+        }
+
+        try {
+            MethodsClient client = slack.methods(botToken);
+            Map<String, String> statuses = new HashMap<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                String pageCursor = cursor;
+                var response = listPage(teamId, () -> client.usersList(req -> req
+                        .teamId(teamId)
+                        .limit(usersListPageSize)
+                        .cursor(pageCursor)));
+
+                if (!response.isOk()) {
+                    log.warn("Failed to list members of team {}: {}", teamId, response.getError());
+                    return null;
+                }
+
+                for (com.slack.api.model.User member : response.getMembers()) {
+                    if (member.getProfile() != null) {
+                        String statusText = member.getProfile().getStatusText() != null
+                                ? member.getProfile().getStatusText() : "";
+                        statuses.put(member.getId(), statusText);
+                        observeStatus(member.getId(), statusText);
+                    }
+                }
+                pages++;
+                cursor = response.getResponseMetadata() != null ? response.getResponseMetadata().getNextCursor() : null;
+            } while (cursor != null && !cursor.isEmpty());
+
+            log.debug("Fetched statuses of {} members of team {} in {} pages", statuses.size(), teamId, pages);
+            return statuses;
+        } catch (CircuitOpenException | SlackRateLimitException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.error("Error listing members of team {}", teamId, e);
+            return null;
+        }
+    }
+
+    private <T> T listPage(String teamId, SlackRateDispatcher.SlackCall<T> call)
+            throws IOException, SlackApiException, InterruptedException {
+        long deadline = System.currentTimeMillis() + usersListMaxPageWaitMs;
+        while (true) {
+            try {
+                return guarded(USERS_LIST_METHOD, teamId, Priority.BACKGROUND, call);
+            } catch (SlackRateLimitException e) {
+                if (System.currentTimeMillis() + e.getRetryAfterMs() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(e.getRetryAfterMs());
+            }
+        }
+    }
+
     /**
      * Checks if the user has manually changed their Slack status.
      * Returns true if the current status differs from what we last set.
@@ -263,6 +478,14 @@ public class SlackService {
             return false;
         }
 
+        return isManualStatus(user, currentStatus);
+    }
+
+    /**
+     * Checks whether a status seen on Slack (fetched or pushed in an event) is one the user set themselves,
+     * i.e. neither blank nor what StatusBeat last set.
+     */
+    public boolean isManualStatus(User user, String currentStatus) {
         // If current status is blank, user cleared it - that's okay, not a manual status
         if (currentStatus.isBlank()) {
             return false;
@@ -306,19 +529,24 @@ public class SlackService {
      * Retrieves the decrypted bot token for a given team ID.
      */
     public String getDecryptedBotToken(String teamId) {
-        return botInstallationRepository.findByTeamId(teamId)
-                .map(BotInstallation::getEncryptedBotToken)
-                .map(encryptionUtil::decrypt)
-                .orElse(null);
+        return installationCache.get(InstallationCache.Kind.BOT_TOKEN, teamId, null,
+                () -> botInstallationRepository.findByTeamId(teamId)
+                        .map(BotInstallation::getEncryptedBotToken)
+                        .map(encryptionUtil::decrypt)
+                        .orElse(null));
     }
 
-    public String sendMessage(String accessToken, String channel, String message) {
+    /**
+     * @param teamId the workspace the message is posted in, so it takes a permit from that workspace's bucket
+     */
+    public String sendMessage(String accessToken, String teamId, String channel, String message) {
         try {
             MethodsClient client = slack.methods(accessToken);
-            var response = client.chatPostMessage(req -> req
-                    .channel(channel)
-                    .text(message)
-            );
+            var response = guarded(POST_MESSAGE_METHOD, teamId, Priority.BACKGROUND,
+                    () -> client.chatPostMessage(req -> req
+                            .channel(channel)
+                            .text(message)
+                    ));
 
             if (!response.isOk()) {
                 log.error("Failed to send Slack message: {}", response.getError());
@@ -0,0 +1,222 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.StatusDeadLetter;
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.repository.StatusDeadLetterRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retries failed Slack status writes later instead of sleeping on the sync thread.
+ *
+ * A failed write is put on a timer with exponential backoff and jitter, and the retry runs on a virtual
+ * thread when it comes due. Each status write for a user gets a new generation; a retry whose generation
+ * is no longer the user's latest is dropped, since a newer status has been written or queued since.
+ *
+ * Retries draw on two budgets: a per-user allowance per time window and a cap on retries pending across
+ * all users. A write that runs out of attempts or budget is recorded as a {@link StatusDeadLetter}.
+ */
+@Slf4j
+@Service
+public class SlackStatusRetryQueue {
+
+    @Value("${statusbeat.retry.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${statusbeat.retry.backoff-delay:1000}")
+    private long backoffDelayMs = 1000;
+
+    @Value("${statusbeat.retry.max-backoff-ms:60000}")
+    private long maxBackoffMs = 60000;
+
+    @Value("${statusbeat.retry.global-budget:1000}")
+    private int globalBudget = 1000;
+
+    @Value("${statusbeat.retry.user-budget:6}")
+    private int userBudget = 6;
+
+    @Value("${statusbeat.retry.user-budget-window-ms:600000}")
+    private long userBudgetWindowMs = 600000;
+
+    @Value("${statusbeat.retry.dead-letter-ttl-days:7}")
+    private long deadLetterTtlDays = 7;
+
+    private final StatusDeadLetterRepository deadLetterRepository;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("slack-retry-timer").daemon(true).factory());
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<String, UserBudget> userBudgets = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter scheduled;
+    private final Counter succeeded;
+    private final Counter superseded;
+    private final Map<String, Counter> deadLetters;
+
+    public SlackStatusRetryQueue(StatusDeadLetterRepository deadLetterRepository, MeterRegistry meterRegistry) {
+        this.deadLetterRepository = deadLetterRepository;
+        this.meterRegistry = meterRegistry;
+        this.scheduled = outcomeCounter("scheduled");
+        this.succeeded = outcomeCounter("succeeded");
+        this.superseded = outcomeCounter("superseded");
+        this.deadLetters = Map.of(
+                "attempts_exhausted", deadLetterCounter("attempts_exhausted"),
+                "user_budget_exhausted", deadLetterCounter("user_budget_exhausted"),
+                "global_budget_exhausted", deadLetterCounter("global_budget_exhausted"));
+        Gauge.builder("statusbeat.slack.retry.pending", pending, AtomicInteger::get)
+                .description("Slack status writes waiting for a retry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a new status write for the user and returns its generation. Retries of any earlier
+     * write for the user are dropped when they come due.
+     */
+    public long nextGeneration(String userId) {
+        return generations.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Schedules a retry of a write whose first attempt failed. The write should publish and then
+     * record the status, and throw if publishing failed.
+     */
+    public void retry(User user, long generation, String operation, Runnable write, Exception failure) {
+        schedule(new PendingWrite(user, generation, operation, write, 2), failure);
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    private void schedule(PendingWrite write, Exception failure) {
+        if (write.attempt() > maxAttempts) {
+            deadLetter(write, "attempts_exhausted", failure);
+            return;
+        }
+        if (!takeUserBudget(write.user().getId())) {
+            deadLetter(write, "user_budget_exhausted", failure);
+            return;
+        }
+        if (pending.incrementAndGet() > globalBudget) {
+            pending.decrementAndGet();
+            deadLetter(write, "global_budget_exhausted", failure);
+            return;
+        }
+
+        long delayMs = backoff(write.attempt());
+        log.debug("Retrying Slack {} for user {} in {} ms (attempt {}/{})", write.operation(),
+                write.user().getSlackUserId(), delayMs, write.attempt(), maxAttempts);
+        scheduled.increment();
+        timer.schedule(() -> workers.execute(() -> run(write)), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(PendingWrite write) {
+        pending.decrementAndGet();
+        if (isSuperseded(write)) {
+            superseded.increment();
+            log.debug("Dropping Slack {} retry for user {}, a newer status was queued",
+                    write.operation(), write.user().getSlackUserId());
+            return;
+        }
+
+        try {
+            write.write().run();
+            succeeded.increment();
+            log.info("Slack {} for user {} succeeded on attempt {}", write.operation(),
+                    write.user().getSlackUserId(), write.attempt());
+        } catch (Exception e) {
+            log.warn("Slack {} retry {} failed for user {}: {}", write.operation(), write.attempt(),
+                    write.user().getSlackUserId(), e.getMessage());
+            schedule(write.nextAttempt(), e);
+        }
+    }
+
+    private boolean isSuperseded(PendingWrite write) {
+        AtomicLong latest = generations.get(write.user().getId());
+        return latest != null && latest.get() != write.generation();
+    }
+
+    private boolean takeUserBudget(String userId) {
+        long now = System.currentTimeMillis();
+        UserBudget budget = userBudgets.compute(userId, (id, current) ->
+                current == null || now - current.windowStartMs() >= userBudgetWindowMs
+                        ? new UserBudget(now, 1)
+                        : new UserBudget(current.windowStartMs(), current.used() + 1));
+        return budget.used() <= userBudget;
+    }
+
+    private long backoff(int attempt) {
+        long delayMs = Math.min(backoffDelayMs << Math.min(attempt - 2, 20), maxBackoffMs);
+        // Half fixed, half random, so writes that failed together don't retry together
+        return delayMs / 2 + ThreadLocalRandom.current().nextLong(delayMs / 2 + 1);
+    }
+
+    private void deadLetter(PendingWrite write, String reason, Exception failure) {
+        User user = write.user();
+        deadLetters.get(reason).increment();
+        log.error("Giving up on Slack {} for user {} after {} attempts ({}): {}", write.operation(),
+                user.getSlackUserId(), write.attempt() - 1, reason, failure.getMessage());
+
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            deadLetterRepository.save(StatusDeadLetter.builder()
+                    .userId(user.getId())
+                    .slackUserId(user.getSlackUserId())
+                    .operation(write.operation())
+                    .attempts(write.attempt() - 1)
+                    .reason(reason)
+                    .lastError(failure.getMessage())
+                    .failedAt(now)
+                    .expiresAt(now.plusDays(deadLetterTtlDays))
+                    .build());
+        } catch (Exception e) {
+            log.warn("Could not record dead letter for user {}: {}", user.getSlackUserId(), e.getMessage());
+        }
+    }
+
+    private Counter deadLetterCounter(String reason) {
+        return Counter.builder("statusbeat.slack.retry.dead_letters")
+                .tag("reason", reason)
+                .description("Slack status writes given up on")
+                .register(meterRegistry);
+    }
+
+    private Counter outcomeCounter(String outcome) {
+        return Counter.builder("statusbeat.slack.retry")
+                .tag("outcome", outcome)
+                .description("Slack status write retries by outcome")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    private record PendingWrite(User user, long generation, String operation, Runnable write, int attempt) {
+        PendingWrite nextAttempt() {
+            return new PendingWrite(user, generation, operation, write, attempt + 1);
+        }
+    }
+
+    private record UserBudget(long windowStartMs, int used) {
+    }
+}
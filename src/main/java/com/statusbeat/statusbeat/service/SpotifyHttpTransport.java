@@ -0,0 +1,296 @@
+package com.statusbeat.statusbeat.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpPut;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.client5.http.ssl.TlsSocketStrategy;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one HTTP client used for every Spotify call.
+ *
+ * Connections are pooled and kept alive per route, responses are gzip-decoded, and every request has
+ * connect, response and pool-lease timeouts. Callers still build a lightweight SpotifyApi per request;
+ * the user's access token travels in that request's Authorization header, never in the client.
+ */
+@Slf4j
+@Service
+public class SpotifyHttpTransport implements IHttpManager {
+
+    @Value("${spotify.http.max-connections-per-route:64}")
+    private int maxConnectionsPerRoute = 64;
+
+    @Value("${spotify.http.max-connections-total:128}")
+    private int maxConnectionsTotal = 128;
+
+    @Value("${spotify.http.connect-timeout-ms:3000}")
+    private long connectTimeoutMs = 3000;
+
+    @Value("${spotify.http.response-timeout-ms:10000}")
+    private long responseTimeoutMs = 10000;
+
+    @Value("${spotify.http.pool-timeout-ms:2000}")
+    private long poolTimeoutMs = 2000;
+
+    @Value("${spotify.http.keep-alive-ms:60000}")
+    private long keepAliveMs = 60000;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer tlsHandshakeTimer;
+    // One timer per method and status, registered on first use instead of looked up on every request
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+    private volatile CloseableHttpClient httpClient;
+
+    public SpotifyHttpTransport(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.tlsHandshakeTimer = Timer.builder("statusbeat.spotify.http.tls.handshake")
+                .description("TLS handshake time for new Spotify connections")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        getHttpClient();
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpGet(uri), headers, null);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpPost(uri), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpPut(uri), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(new HttpDelete(uri), headers, body);
+    }
+
+    private String execute(HttpUriRequestBase request, Header[] headers, HttpEntity body)
+            throws IOException, SpotifyWebApiException, ParseException {
+        if (headers != null) {
+            request.setHeaders(headers);
+        }
+        if (body != null) {
+            request.setEntity(body);
+        }
+
+        long start = System.nanoTime();
+        String outcome = "IO_ERROR";
+        try {
+            Response response = getHttpClient().execute(request, httpResponse -> new Response(
+                    httpResponse.getCode(),
+                    httpResponse.getReasonPhrase(),
+                    httpResponse.getFirstHeader("Retry-After"),
+                    httpResponse.getEntity() != null
+                            ? EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8)
+                            : null));
+            outcome = String.valueOf(response.code());
+            return handleResponse(response);
+        } finally {
+            requestTimer(request.getMethod(), outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer requestTimer(String method, String status) {
+        return requestTimers.computeIfAbsent(method + ":" + status, key ->
+                Timer.builder("statusbeat.spotify.http.request")
+                        .description("Spotify request latency, including any connection setup")
+                        .tag("method", method)
+                        .tag("status", status)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry));
+    }
+
+    /**
+     * Maps error responses to the same exceptions the Spotify library's own HTTP manager throws,
+     * so callers can keep catching UnauthorizedException, TooManyRequestsException and friends.
+     */
+    private String handleResponse(Response response) throws SpotifyWebApiException {
+        String errorMessage = extractErrorMessage(response.body(), response.reasonPhrase());
+
+        switch (response.code()) {
+            case HttpStatus.SC_BAD_REQUEST:
+                throw new BadRequestException(errorMessage);
+            case HttpStatus.SC_UNAUTHORIZED:
+                throw new UnauthorizedException(errorMessage);
+            case HttpStatus.SC_FORBIDDEN:
+                throw new ForbiddenException(errorMessage);
+            case HttpStatus.SC_NOT_FOUND:
+                throw new NotFoundException(errorMessage);
+            case HttpStatus.SC_TOO_MANY_REQUESTS:
+                int retryAfterSeconds = retryAfterSeconds(response.retryAfter());
+                if (retryAfterSeconds > 0) {
+                    throw new TooManyRequestsException(errorMessage, retryAfterSeconds);
+                }
+                // Without a usable Retry-After the rate governor falls back to its default pause
+                throw new TooManyRequestsException(errorMessage);
+            case HttpStatus.SC_INTERNAL_SERVER_ERROR:
+                throw new InternalServerErrorException(errorMessage);
+            case HttpStatus.SC_BAD_GATEWAY:
+                throw new BadGatewayException(errorMessage);
+            case HttpStatus.SC_SERVICE_UNAVAILABLE:
+                throw new ServiceUnavailableException(errorMessage);
+            default:
+                return response.body();
+        }
+    }
+
+    private static int retryAfterSeconds(Header retryAfter) {
+        if (retryAfter != null) {
+            try {
+                return Integer.parseInt(retryAfter.getValue().trim());
+            } catch (NumberFormatException ignored) {
+                // An HTTP date or garbage; fall through to the default
+            }
+        }
+        return 0;
+    }
+
+    private static String extractErrorMessage(String body, String fallback) {
+        if (body == null || body.isEmpty()) {
+            return fallback;
+        }
+
+        try {
+            JsonElement json = JsonParser.parseString(body);
+            if (json.isJsonObject()) {
+                JsonObject object = json.getAsJsonObject();
+                if (object.has("error_description")) {
+                    return object.get("error_description").getAsString();
+                }
+                if (object.has("error") && object.get("error").isJsonObject()
+                        && object.getAsJsonObject("error").has("message")) {
+                    return object.getAsJsonObject("error").get("message").getAsString();
+                }
+                if (object.has("error") && object.get("error").isJsonPrimitive()) {
+                    return object.get("error").getAsString();
+                }
+            }
+        } catch (JsonSyntaxException | IllegalStateException e) {
+            log.trace("Spotify error body is not JSON: {}", body);
+        }
+        return fallback;
+    }
+
+    private CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private CloseableHttpClient buildHttpClient() {
+        TlsSocketStrategy defaultTls = DefaultClientTlsStrategy.createSystemDefault();
+        TlsSocketStrategy timedTls = (socket, target, port, attachment, context) -> {
+            long start = System.nanoTime();
+            try {
+                return defaultTls.upgrade(socket, target, port, attachment, context);
+            } finally {
+                tlsHandshakeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setTlsSocketStrategy(timedTls)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setMaxConnTotal(maxConnectionsTotal)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .setTimeToLive(TimeValue.ofMinutes(10))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "spotify").bindTo(meterRegistry);
+
+        log.info("Spotify HTTP client pool: {} per route, {} total", maxConnectionsPerRoute, maxConnectionsTotal);
+
+        // Content compression (Accept-Encoding: gzip, deflate) is on by default for HttpClients.custom()
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs))
+                .evictExpiredConnections()
+                .disableCookieManagement()
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        CloseableHttpClient client = httpClient;
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.warn("Failed to close Spotify HTTP client", e);
+            }
+        }
+    }
+
+    private record Response(int code, String reasonPhrase, Header retryAfter, String body) {
+    }
+}
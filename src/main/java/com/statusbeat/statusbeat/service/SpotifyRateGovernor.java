@@ -0,0 +1,271 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.exception.SpotifyRateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * App-wide token bucket in front of the Spotify Web API.
+ *
+ * Spotify rate limits the whole app, not each user, so one busy poll cycle can get every user's
+ * requests rejected. Every Web API call takes a permit first. Spotify does not publish its limit, so 429
+ * with Retry-After is the real brake: the bucket is emptied, no permits are handed out until Retry-After
+ * has passed, and the refill rate is halved. The rate then climbs back linearly to the configured ceiling
+ * over the recovery period, so it settles just under whatever Spotify currently allows.
+ *
+ * Interactive callers (player commands, device lists) are served before background polling: pollers
+ * wait while any interactive caller is queued and cannot use the last few permits. Interactive callers
+ * wait up to their limit. Background callers never wait out a Retry-After or a wait longer than theirs
+ * (at most one polling interval); they get a {@link SpotifyRateLimitException} carrying the expected
+ * wait right away, so the sync postpones the user instead of parking its worker.
+ */
+@Slf4j
+@Service
+public class SpotifyRateGovernor {
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    // Ceiling of the adaptive rate
+    @Value("${statusbeat.spotify.rate-limit.permits-per-second:100}")
+    private double permitsPerSecond = 100;
+
+    @Value("${statusbeat.spotify.rate-limit.min-permits-per-second:2}")
+    private double minPermitsPerSecond = 2;
+
+    // Time for the rate to climb from nothing back to the ceiling once 429s stop
+    @Value("${statusbeat.spotify.rate-limit.recovery-ms:60000}")
+    private long recoveryMs = 60000;
+
+    @Value("${statusbeat.spotify.rate-limit.burst:50}")
+    private int burst = 50;
+
+    @Value("${statusbeat.spotify.rate-limit.interactive-reserve:2}")
+    private int interactiveReserve = 2;
+
+    @Value("${statusbeat.spotify.rate-limit.interactive-max-wait-ms:3000}")
+    private long interactiveMaxWaitMs = 3000;
+
+    @Value("${statusbeat.spotify.rate-limit.background-max-wait-ms:1000}")
+    private long backgroundMaxWaitMs = 1000;
+
+    @Value("${statusbeat.sync.polling-interval:10000}")
+    private long pollingIntervalMs = 10000;
+
+    @Value("${statusbeat.spotify.rate-limit.default-retry-after-ms:5000}")
+    private long defaultRetryAfterMs = 5000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitsChanged = lock.newCondition();
+    private final Map<Priority, AtomicInteger> waiting = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejections = new EnumMap<>(Priority.class);
+    private final Counter rateLimited;
+
+    // Guarded by lock
+    private double permits = burst;
+    private double rateScale = 1.0;
+    private long lastRefillNanos = System.nanoTime();
+    private long penaltyUntilNanos = lastRefillNanos;
+
+    public SpotifyRateGovernor(MeterRegistry meterRegistry) {
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            AtomicInteger queued = new AtomicInteger();
+            waiting.put(priority, queued);
+            Gauge.builder("statusbeat.spotify.rate.waiting", queued, AtomicInteger::get)
+                    .tag("priority", tag)
+                    .description("Callers queued for a Spotify request permit")
+                    .register(meterRegistry);
+            waitTimers.put(priority, Timer.builder("statusbeat.spotify.rate.wait")
+                    .tag("priority", tag)
+                    .description("Time spent waiting for a Spotify request permit")
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            rejections.put(priority, Counter.builder("statusbeat.spotify.rate.rejected")
+                    .tag("priority", tag)
+                    .description("Callers that gave up waiting for a Spotify request permit")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("statusbeat.spotify.rate.permits", this, SpotifyRateGovernor::availablePermits)
+                .description("Spotify request permits currently available")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.spotify.rate.limit", this, SpotifyRateGovernor::currentRate)
+                .description("Spotify request permits handed out per second, adapted to 429 responses")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.spotify.rate.penalty.remaining", this, SpotifyRateGovernor::penaltyRemainingMs)
+                .description("Milliseconds until Spotify's last Retry-After expires")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.rateLimited = Counter.builder("statusbeat.spotify.rate.limited")
+                .description("429 responses received from Spotify")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Blocks until a permit is available for the given priority.
+     *
+     * @throws SpotifyRateLimitException if no permit becomes available within the priority's wait limit,
+     *                                   or right away for background callers while a Retry-After is running
+     */
+    public void acquire(Priority priority) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMs(priority));
+        boolean interactive = priority == Priority.INTERACTIVE;
+        AtomicInteger queued = waiting.get(priority);
+
+        lock.lock();
+        queued.incrementAndGet();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                long waitNanos;
+                if (now < penaltyUntilNanos) {
+                    waitNanos = penaltyUntilNanos - now;
+                    if (!interactive || penaltyUntilNanos > deadline) {
+                        // Spotify will not take requests before we'd give up anyway
+                        throw reject(priority, "Spotify rate limit in effect", waitNanos);
+                    }
+                } else if (!interactive && waiting.get(Priority.INTERACTIVE).get() > 0) {
+                    waitNanos = deadline - now;
+                } else {
+                    double floor = interactive ? 1 : Math.min(1 + interactiveReserve, burst);
+                    if (permits >= floor) {
+                        permits -= 1;
+                        waitTimers.get(priority).record(now - start, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((floor - permits) / rate() * 1_000_000_000L);
+                    if (!interactive && now + waitNanos > deadline) {
+                        // The refill takes longer than a poller may wait; postpone instead of parking
+                        throw reject(priority, "Spotify request budget used up", waitNanos);
+                    }
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    throw reject(priority, "Timed out waiting for a Spotify request permit", waitNanos);
+                }
+                permitsChanged.awaitNanos(Math.min(waitNanos, remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject(priority, "Interrupted waiting for a Spotify request permit", 0);
+        } finally {
+            if (queued.decrementAndGet() == 0 && interactive) {
+                // Background callers parked behind interactive ones can go again
+                permitsChanged.signalAll();
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a 429 from Spotify. No permits are handed out until Retry-After has passed, and the rate is
+     * halved. 429s for requests already in flight when the first one arrived do not halve it again.
+     *
+     * @param retryAfterSeconds the Retry-After header value; 0 or less falls back to the default
+     */
+    public void penalize(int retryAfterSeconds) {
+        long penaltyMs = retryAfterSeconds > 0 ? TimeUnit.SECONDS.toMillis(retryAfterSeconds) : defaultRetryAfterMs;
+        rateLimited.increment();
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            if (now >= penaltyUntilNanos) {
+                rateScale = Math.max(rateScale / 2, minPermitsPerSecond / permitsPerSecond);
+            }
+            long until = now + TimeUnit.MILLISECONDS.toNanos(penaltyMs);
+            if (until > penaltyUntilNanos) {
+                penaltyUntilNanos = until;
+                log.warn("Spotify rate limit hit, pausing Spotify requests for {} ms, then {} per second",
+                        penaltyMs, String.format("%.1f", rate()));
+            }
+            // Start refilling from an empty bucket once the penalty is over
+            permits = 0;
+            lastRefillNanos = penaltyUntilNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double availablePermits() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return permits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Permits handed out per second right now: the ceiling scaled down by recent 429s.
+     */
+    public double currentRate() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return rate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long penaltyRemainingMs() {
+        lock.lock();
+        try {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(penaltyUntilNanos - System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int waitingCallers(Priority priority) {
+        return waiting.get(priority).get();
+    }
+
+    private double rate() {
+        return Math.min(permitsPerSecond, Math.max(minPermitsPerSecond, permitsPerSecond * rateScale));
+    }
+
+    private void refill(long now) {
+        if (now <= lastRefillNanos) {
+            return;
+        }
+        double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        permits = Math.min(burst, permits + elapsedSeconds * rate());
+        // Additive recovery; lastRefillNanos never precedes the end of a penalty, so none happens during one
+        rateScale = Math.min(1.0, rateScale + elapsedSeconds * 1000 / Math.max(1, recoveryMs));
+        lastRefillNanos = now;
+    }
+
+    private long maxWaitMs(Priority priority) {
+        // A poller never waits longer than a poll interval; past that, postponing the user costs nothing
+        return priority == Priority.INTERACTIVE
+                ? interactiveMaxWaitMs
+                : Math.min(backgroundMaxWaitMs, pollingIntervalMs);
+    }
+
+    private SpotifyRateLimitException reject(Priority priority, String message, long retryAfterNanos) {
+        rejections.get(priority).increment();
+        return new SpotifyRateLimitException(message, TimeUnit.NANOSECONDS.toMillis(Math.max(0, retryAfterNanos)));
+    }
+}
@@ -12,8 +12,11 @@ import org.apache.hc.core5.http.ParseException;
 import org.springframework.stereotype.Service;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
 import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
 import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
 import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
 import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
@@ -30,6 +33,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -37,9 +41,18 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SpotifyService {
 
+    private static final String TOKEN_ENDPOINT = "spotify:token";
+    private static final String DEVICES_ENDPOINT = "spotify:devices";
+    private static final String PLAYBACK_ENDPOINT = "spotify:playback";
+    private static final String PLAYER_ENDPOINT = "spotify:player";
+
     private final SpotifyConfig spotifyConfig;
     private final UserService userService;
     private final TokenValidationService tokenValidationService;
+    private final SpotifyHttpTransport spotifyHttpTransport;
+    private final TokenRefreshCoordinator tokenRefreshCoordinator;
+    private final SpotifyRateGovernor spotifyRateGovernor;
+    private final OutboundCircuitBreakers circuitBreakers;
 
     public URI getAuthorizationUri() {
         SpotifyApi spotifyApi = getSpotifyApi(null);
@@ -61,25 +74,41 @@ public class SpotifyService {
 
     public AuthorizationCodeCredentials refreshAccessToken(String refreshToken) throws IOException, ParseException, SpotifyWebApiException {
         SpotifyApi spotifyApi = SpotifyApi.builder()
+                .setHttpManager(spotifyHttpTransport)
                 .setClientId(spotifyConfig.getClientId())
                 .setClientSecret(spotifyConfig.getClientSecret())
                 .setRefreshToken(refreshToken)
                 .build();
 
         AuthorizationCodeRefreshRequest refreshRequest = spotifyApi.authorizationCodeRefresh().build();
-        return refreshRequest.execute();
+        return guarded(TOKEN_ENDPOINT, refreshRequest::execute);
     }
 
+    /**
+     * Fallback for tokens the background refresher has not renewed in time.
+     */
     private User ensureValidToken(User user) throws IOException, ParseException, SpotifyWebApiException {
         if (userService.isSpotifyTokenExpired(user)) {
-            log.debug("Spotify token expired or expiring soon for user {}, refreshing...", user.getSlackUserId());
-            refreshUserToken(user);
-            return userService.findBySlackUserId(user.getSlackUserId())
-                    .orElseThrow(() -> new RuntimeException("User not found after token refresh"));
+            log.debug("Spotify token expired or expiring soon for user {}, refreshing inline", user.getSlackUserId());
+            return refreshUserToken(user);
         }
         return user;
     }
 
+    /**
+     * Refreshes the user's Spotify token ahead of expiry. Returns false if the refresh failed;
+     * revoked tokens are marked invalidated as part of the refresh.
+     */
+    public boolean refreshTokenProactively(User user) {
+        try {
+            refreshUserToken(user);
+            return true;
+        } catch (Exception e) {
+            log.warn("Proactive Spotify token refresh failed for user {}: {}", user.getSlackUserId(), e.getMessage());
+            return false;
+        }
+    }
+
     public List<SpotifyDevice> getAvailableDevices(User user) {
         try {
             user = ensureValidToken(user);
@@ -88,7 +117,7 @@ public class SpotifyService {
             SpotifyApi spotifyApi = getSpotifyApi(accessToken);
 
             var request = spotifyApi.getUsersAvailableDevices().build();
-            var devices = request.execute();
+            var devices = throttled(DEVICES_ENDPOINT, SpotifyRateGovernor.Priority.INTERACTIVE, request::execute);
 
             if (devices == null || devices.length == 0) {
                 log.debug("No devices found for user {}", user.getId());
@@ -104,6 +133,9 @@ public class SpotifyService {
                             .build())
                     .collect(Collectors.toList());
 
+        } catch (SpotifyRateLimitException | CircuitOpenException e) {
+            log.warn("Spotify unavailable fetching devices for user {}: {}", user.getSlackUserId(), e.getMessage());
+            return new ArrayList<>();
         } catch (UnauthorizedException e) {
             log.warn("Unauthorized error for user {}: {}", user.getSlackUserId(), e.getMessage());
             handleSpotifyTokenError(user, e.getMessage());
@@ -131,7 +163,8 @@ public class SpotifyService {
             SpotifyApi spotifyApi = getSpotifyApi(accessToken);
 
             var contextRequest = spotifyApi.getInformationAboutUsersCurrentPlayback().build();
-            CurrentlyPlayingContext context = contextRequest.execute();
+            CurrentlyPlayingContext context = throttled(PLAYBACK_ENDPOINT, SpotifyRateGovernor.Priority.BACKGROUND,
+                    contextRequest::execute);
 
             if (context == null || context.getItem() == null || !context.getIs_playing()) {
                 log.debug("No track currently playing for user {}", user.getId());
@@ -170,6 +203,13 @@ public class SpotifyService {
             }
 
             return null;
+        } catch (SpotifyRateLimitException | CircuitOpenException e) {
+            // Not "nothing playing": the caller must keep the current status and try again later
+            throw e;
+        } catch (TooManyRequestsException e) {
+            log.warn("Rate limited fetching playback for user {}", user.getSlackUserId());
+            throw new SpotifyRateLimitException("Spotify API rate limit exceeded",
+                    TimeUnit.SECONDS.toMillis(e.getRetryAfter()));
         } catch (UnauthorizedException e) {
             log.warn("Unauthorized error for user {}: {}", user.getSlackUserId(), e.getMessage());
             handleSpotifyTokenError(user, e.getMessage());
@@ -227,8 +267,14 @@ public class SpotifyService {
 
     private void executePlayerCommand(User user, String operation, PlayerCommand command) {
         try {
-            command.execute();
+            throttled(PLAYER_ENDPOINT, SpotifyRateGovernor.Priority.INTERACTIVE, () -> {
+                command.execute();
+                return null;
+            });
             log.info("{}d playback for user {}", operation, user.getSlackUserId());
+        } catch (CircuitOpenException e) {
+            log.warn("Spotify player unavailable, not trying to {} playback for user {}", operation, user.getSlackUserId());
+            throw new SpotifyException("Spotify is temporarily unavailable", e);
         } catch (NotFoundException e) {
             log.warn("No active device found for user {}", user.getSlackUserId());
             throw new NoActiveDeviceException();
@@ -260,13 +306,71 @@ public class SpotifyService {
         void execute() throws IOException, ParseException, SpotifyWebApiException;
     }
 
-    private void refreshUserToken(User user) throws IOException, ParseException, SpotifyWebApiException {
+    /**
+     * Runs a Web API call under the app-wide rate governor and reports any 429 back to it.
+     */
+    private <T> T throttled(String endpoint, SpotifyRateGovernor.Priority priority, SpotifyCall<T> call)
+            throws IOException, ParseException, SpotifyWebApiException {
+        spotifyRateGovernor.acquire(priority);
+        try {
+            return guarded(endpoint, call);
+        } catch (TooManyRequestsException e) {
+            spotifyRateGovernor.penalize(e.getRetryAfter());
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a call through the endpoint's circuit breaker. Only network errors and 5xx count against Spotify.
+     */
+    private <T> T guarded(String endpoint, SpotifyCall<T> call) throws IOException, ParseException, SpotifyWebApiException {
+        circuitBreakers.acquire(endpoint);
+        long start = System.nanoTime();
+        try {
+            T result = call.execute();
+            circuitBreakers.recordSuccess(endpoint, start);
+            return result;
+        } catch (IOException | InternalServerErrorException | BadGatewayException | ServiceUnavailableException e) {
+            circuitBreakers.recordFailure(endpoint);
+            throw e;
+        } catch (TooManyRequestsException | RuntimeException e) {
+            circuitBreakers.recordIgnored(endpoint);
+            throw e;
+        } catch (ParseException | SpotifyWebApiException e) {
+            // Spotify answered; per-user errors such as 401 or 404 say nothing about its health
+            circuitBreakers.recordSuccess(endpoint, start);
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SpotifyCall<T> {
+        T execute() throws IOException, ParseException, SpotifyWebApiException;
+    }
+
+    /**
+     * Refreshes the user's token at most once at a time: concurrent callers share the in-flight refresh.
+     */
+    private User refreshUserToken(User user) throws IOException, ParseException, SpotifyWebApiException {
+        return tokenRefreshCoordinator.refresh(user.getId(), () -> doRefreshUserToken(user));
+    }
+
+    private User doRefreshUserToken(User user) throws IOException, ParseException, SpotifyWebApiException {
+        // A refresh that finished just before we got here already rotated the tokens; using the
+        // caller's copy would send a refresh token Spotify may have retired
+        User latest = userService.findBySlackUserId(user.getSlackUserId()).orElse(user);
+        if (isNewerToken(latest, user)) {
+            log.debug("Spotify token for user {} was refreshed concurrently, reusing it", user.getSlackUserId());
+            return latest;
+        }
+        user = latest;
+
         try {
             log.info("Refreshing Spotify token for user {}", user.getSlackUserId());
             String refreshToken = userService.getDecryptedSpotifyRefreshToken(user);
             AuthorizationCodeCredentials credentials = refreshAccessToken(refreshToken);
 
-            userService.updateSpotifyTokens(
+            User refreshed = userService.updateSpotifyTokens(
                     user.getId(),
                     user.getSpotifyUserId(),
                     credentials.getAccessToken(),
@@ -275,6 +379,8 @@ public class SpotifyService {
             );
             log.info("Successfully refreshed Spotify token for user {}. New token expires in {} seconds",
                     user.getSlackUserId(), credentials.getExpiresIn());
+            // updateSpotifyTokens returns the saved document, so there is no need to read the user back
+            return refreshed != null ? refreshed : user;
         } catch (SpotifyWebApiException e) {
             String errorMsg = e.getMessage();
             if (tokenValidationService.isSpotifyTokenInvalidError(errorMsg)) {
@@ -290,8 +396,18 @@ public class SpotifyService {
         }
     }
 
+    private static boolean isNewerToken(User latest, User seen) {
+        return latest.getSpotifyTokenExpiresAt() != null && seen.getSpotifyTokenExpiresAt() != null
+                && latest.getSpotifyTokenExpiresAt().isAfter(seen.getSpotifyTokenExpiresAt());
+    }
+
+    /**
+     * Builds a lightweight per-request API handle. All handles share the pooled transport;
+     * only the access token differs.
+     */
     private SpotifyApi getSpotifyApi(String accessToken) {
         SpotifyApi.Builder builder = SpotifyApi.builder()
+                .setHttpManager(spotifyHttpTransport)
                 .setClientId(spotifyConfig.getClientId())
                 .setClientSecret(spotifyConfig.getClientSecret())
                 .setRedirectUri(URI.create(spotifyConfig.getRedirectUri()));
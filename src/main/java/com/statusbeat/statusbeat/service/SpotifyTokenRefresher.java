@@ -0,0 +1,190 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes Spotify tokens shortly before they expire, off the sync path.
+ *
+ * Each run pulls users whose token expires within the refresh window, soonest first, in batches
+ * from the token_expiry index, and refreshes them on virtual threads behind a concurrency
+ * limit. A random delay per user spreads the refreshes out. The refresh window is wider than the
+ * inline check in UserService.isSpotifyTokenExpired, so syncs rarely have to refresh themselves.
+ *
+ * A run can take minutes with jitter and a full window, so the scheduler tick only hands it to the
+ * refresher's own threads and returns; a tick that finds the previous run still going skips.
+ */
+@Slf4j
+@Service
+public class SpotifyTokenRefresher {
+
+    @Value("${statusbeat.spotify.token-refresh.window-ms:900000}")
+    private long refreshWindowMs = 900000;
+
+    @Value("${statusbeat.spotify.token-refresh.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${statusbeat.spotify.token-refresh.max-batches:10}")
+    private int maxBatches = 10;
+
+    @Value("${statusbeat.spotify.token-refresh.max-concurrency:8}")
+    private int maxConcurrency = 8;
+
+    @Value("${statusbeat.spotify.token-refresh.jitter-ms:2000}")
+    private long jitterMs = 2000;
+
+    private final UserService userService;
+    private final SpotifyService spotifyService;
+    private final SyncPartitionService syncPartitionService;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter refreshed;
+    private final Counter failed;
+
+    public SpotifyTokenRefresher(UserService userService, SpotifyService spotifyService,
+                                 SyncPartitionService syncPartitionService, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.spotifyService = spotifyService;
+        this.syncPartitionService = syncPartitionService;
+        this.refreshed = Counter.builder("statusbeat.spotify.token.refresh.proactive")
+                .tag("result", "success")
+                .description("Spotify tokens refreshed ahead of expiry")
+                .register(meterRegistry);
+        this.failed = Counter.builder("statusbeat.spotify.token.refresh.proactive")
+                .tag("result", "failure")
+                .description("Spotify tokens refreshed ahead of expiry")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts a refresh run in the background unless the previous one is still going. Returns whether a run
+     * was started.
+     */
+    @Scheduled(fixedDelayString = "${statusbeat.spotify.token-refresh.interval-ms:60000}",
+            initialDelayString = "${statusbeat.spotify.token-refresh.interval-ms:60000}")
+    public boolean startRefresh() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Previous token refresh run still going, skipping this one");
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refreshExpiringTokens();
+                } catch (RuntimeException e) {
+                    log.error("Proactive token refresh run failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Refreshes every token expiring within the window, up to maxBatches batches per run, and blocks until
+     * done. Returns the number of tokens refreshed.
+     */
+    public int refreshExpiringTokens() {
+        LocalDateTime cutoff = LocalDateTime.now().plusNanos(refreshWindowMs * 1_000_000);
+        LocalDateTime afterExpiry = LocalDateTime.of(1970, 1, 1, 0, 0);
+        String afterId = null;
+        AtomicInteger succeeded = new AtomicInteger();
+        int attempted = 0;
+
+        // Keyset paging on the (expiry, id) index: each batch starts after the last user of the previous one,
+        // so users sharing an expiry across a batch boundary are neither skipped nor read twice
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<User> expiring = userService.findUsersWithSpotifyTokenExpiringAfter(afterExpiry, afterId, cutoff,
+                    batchSize);
+            if (expiring.isEmpty()) {
+                break;
+            }
+            afterExpiry = expiring.getLast().getSpotifyTokenExpiresAt();
+            afterId = expiring.getLast().getId();
+
+            List<User> due = expiring.stream()
+                    .filter(user -> user.getEncryptedSpotifyRefreshToken() != null)
+                    .filter(user -> syncPartitionService.owns(user.getId()))
+                    .toList();
+            attempted += due.size();
+            refreshBatch(due, succeeded);
+
+            if (expiring.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (attempted > 0) {
+            log.info("Proactively refreshed {} of {} expiring Spotify tokens", succeeded.get(), attempted);
+        }
+        return succeeded.get();
+    }
+
+    private void refreshBatch(List<User> users, AtomicInteger succeeded) {
+        int permits = Math.max(1, maxConcurrency);
+        Semaphore inFlight = new Semaphore(permits);
+
+        try {
+            for (User user : users) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        jitter();
+                        if (spotifyService.refreshTokenProactively(user)) {
+                            refreshed.increment();
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.increment();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+
+            // Wait for the whole batch before querying the next one
+            inFlight.acquire(permits);
+            inFlight.release(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Token refresh batch interrupted");
+        }
+    }
+
+    private void jitter() {
+        if (jitterMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(jitterMs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.model.UserSettings;
+import com.statusbeat.statusbeat.repository.UserRepository;
+import com.statusbeat.statusbeat.util.Batches;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the users the sync engine can act on: sync enabled and started, active, with a Spotify token that
+ * has not been revoked and no manual status. They come from a cursor instead of a list, so memory stays flat
+ * however many users there are.
+ *
+ * The ids of syncing users come from a cursor over user_settings, answered from the sync_candidates index.
+ * They are read batchSize at a time, and each batch is resolved to candidates with one $in query on users.
+ * Returned streams hold the cursor open; close them.
+ *
+ * The users side has no index of its own on purpose. The $in on _id already narrows each query to at most
+ * batchSize documents through the _id index, and the other predicates (active, tokenInvalidated,
+ * manualStatusSet, a Spotify token) only filter those. An index on them would never be more selective than
+ * _id, and it would cost a write on every token refresh and manual status change.
+ */
+@Service
+@RequiredArgsConstructor
+public class SyncCandidateSource {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserRepository userRepository;
+
+    @Value("${statusbeat.sync.candidate-batch-size:500}")
+    private int batchSize = 500;
+
+    /**
+     * Sync candidates whose id passes the filter, with only the fields a sync reads. Ids are filtered before
+     * users are loaded, so users another node owns are never read.
+     */
+    public Stream<User> stream(Predicate<String> userIdFilter) {
+        return candidates(userIdFilter, userRepository::findSyncCandidatesByIdIn);
+    }
+
+    /**
+     * Ids of {@link #stream}, for callers that only schedule users.
+     */
+    public Stream<String> streamIds(Predicate<String> userIdFilter) {
+        return candidates(userIdFilter, ids -> userRepository.findSyncCandidateIdsByIdIn(ids).stream()
+                .map(User::getId)
+                .toList());
+    }
+
+    private <T> Stream<T> candidates(Predicate<String> userIdFilter, Function<List<String>, List<T>> load) {
+        Query syncing = new Query(Criteria.where("syncEnabled").is(true).and("syncActive").is(true))
+                .cursorBatchSize(batchSize);
+        syncing.fields().include("userId").exclude("_id");
+
+        Stream<String> syncingUserIds = mongoTemplate.stream(syncing, UserSettings.class)
+                .map(UserSettings::getUserId)
+                .filter(userIdFilter);
+        Iterator<T> candidates = Batches.flatMap(syncingUserIds.iterator(), batchSize, load);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(candidates, Spliterator.ORDERED), false)
+                .onClose(syncingUserIds::close);
+    }
+}
@@ -0,0 +1,137 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.util.LatencyHistogram;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Runs one sync cycle by fanning users out onto virtual threads behind a concurrency limit.
+ * A failing user never affects the others, and a cycle only returns once every user has finished,
+ * so consecutive cycles never overlap.
+ */
+@Slf4j
+@Service
+public class SyncExecutor {
+
+    @Value("${statusbeat.sync.max-concurrency:64}")
+    private int maxConcurrency = 64;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock cycleLock = new ReentrantLock();
+    private final Timer cycleTimer;
+    private final Timer userTimer;
+    private final Counter userFailures;
+    private volatile double lastThroughput;
+
+    public SyncExecutor(MeterRegistry meterRegistry) {
+        this.cycleTimer = Timer.builder("statusbeat.sync.cycle.duration")
+                .description("Wall time of a full sync cycle")
+                .register(meterRegistry);
+        this.userTimer = Timer.builder("statusbeat.sync.user.duration")
+                .description("Time to sync a single user")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.userFailures = Counter.builder("statusbeat.sync.user.failures")
+                .description("Users whose sync threw an exception")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.sync.cycle.throughput", this, syncExecutor -> syncExecutor.lastThroughput)
+                .description("Users synced per second in the last cycle")
+                .baseUnit("users/s")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Syncs every user with the given task and blocks until all of them are done.
+     * Returns empty if another cycle is still running.
+     */
+    public Optional<SyncCycleStats> runCycle(Iterable<User> users, Consumer<User> syncTask) {
+        if (!cycleLock.tryLock()) {
+            log.warn("Previous sync cycle still running, skipping this cycle");
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(executeCycle(users, syncTask));
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    private SyncCycleStats executeCycle(Iterable<User> users, Consumer<User> syncTask) {
+        int permits = Math.max(1, maxConcurrency);
+        Semaphore inFlight = new Semaphore(permits);
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicInteger failed = new AtomicInteger();
+        long cycleStart = System.nanoTime();
+
+        try {
+            for (User user : users) {
+                inFlight.acquire();
+                executor.execute(() -> {
+                    long userStart = System.nanoTime();
+                    try {
+                        syncTask.accept(user);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        userFailures.increment();
+                        log.error("Error syncing music status for user {}", user.getSlackUserId(), e);
+                    } finally {
+                        long elapsed = System.nanoTime() - userStart;
+                        userTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        latencies.record(elapsed);
+                        inFlight.release();
+                    }
+                });
+            }
+
+            // Barrier: every permit is back only once all submitted users have finished
+            inFlight.acquire(permits);
+            inFlight.release(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Sync cycle interrupted before all users completed");
+        }
+
+        long wallNanos = System.nanoTime() - cycleStart;
+        cycleTimer.record(wallNanos, TimeUnit.NANOSECONDS);
+
+        double seconds = wallNanos / 1_000_000_000.0;
+        int users = (int) latencies.count();
+        SyncCycleStats stats = new SyncCycleStats(users, failed.get(), TimeUnit.NANOSECONDS.toMillis(wallNanos),
+                latencies.percentileMs(0.50), latencies.percentileMs(0.99), seconds > 0 ? users / seconds : 0);
+        lastThroughput = stats.usersPerSecond();
+
+        log.debug("Completed sync cycle: {} users ({} failed) in {} ms, {} users/s, p50 {} ms, p99 {} ms",
+                stats.users(), stats.failed(), stats.wallTimeMs(),
+                String.format("%.1f", stats.usersPerSecond()), stats.p50Ms(), stats.p99Ms());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Summary of a completed sync cycle. Percentiles come from a bucketed histogram and are approximate.
+     */
+    public record SyncCycleStats(int users, int failed, long wallTimeMs, long p50Ms, long p99Ms,
+                                 double usersPerSecond) {
+    }
+}
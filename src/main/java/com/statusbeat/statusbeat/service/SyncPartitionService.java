@@ -0,0 +1,289 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.PartitionLease;
+import com.statusbeat.statusbeat.model.SyncNode;
+import com.statusbeat.statusbeat.repository.PartitionLeaseRepository;
+import com.statusbeat.statusbeat.repository.SyncNodeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Splits users across StatusBeat replicas so each user is synced by exactly one node.
+ *
+ * User ids hash into a fixed number of buckets. Every node heartbeats a {@link SyncNode} document,
+ * and buckets are assigned to live nodes by rendezvous hashing, so a node joining or leaving only
+ * moves its share of buckets. A node syncs a bucket only while it holds that bucket's lease in Mongo;
+ * leases are renewed on every heartbeat and expire on their own when a node dies.
+ *
+ * The heartbeat runs on a thread of its own rather than the shared Spring scheduler: a late heartbeat lets
+ * the leases lapse, and the node then stops syncing until the next one renews them.
+ *
+ * With partitioning disabled (the default) this node owns every user and Mongo is never touched.
+ */
+@Slf4j
+@Service
+public class SyncPartitionService {
+
+    @Value("${statusbeat.sync.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${statusbeat.sync.partitioning.buckets:64}")
+    private int bucketCount = 64;
+
+    @Value("${statusbeat.sync.partitioning.lease-ttl-ms:30000}")
+    private long leaseTtlMs = 30000;
+
+    @Value("${statusbeat.sync.partitioning.heartbeat-interval-ms:10000}")
+    private long heartbeatIntervalMs = 10000;
+
+    private final PartitionLeaseRepository partitionLeaseRepository;
+    private final SyncNodeRepository syncNodeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter rebalances;
+    private final String nodeId = createNodeId();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sync-partition-heartbeat").daemon(true).factory());
+
+    private volatile Set<Integer> ownedBuckets = Set.of();
+    private volatile long leasesValidUntilMs;
+
+    public SyncPartitionService(PartitionLeaseRepository partitionLeaseRepository,
+                                SyncNodeRepository syncNodeRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry) {
+        this.partitionLeaseRepository = partitionLeaseRepository;
+        this.syncNodeRepository = syncNodeRepository;
+        this.eventPublisher = eventPublisher;
+        this.rebalances = Counter.builder("statusbeat.sync.partitions.rebalances")
+                .description("Heartbeats that changed the set of partitions owned by this node")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.sync.partitions.owned", this, service -> service.ownedBuckets.size())
+                .description("Sync partitions currently leased by this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns true if this node is responsible for syncing the user.
+     */
+    public boolean owns(String userId) {
+        if (!enabled) {
+            return true;
+        }
+        // Stop syncing as soon as our leases may have lapsed, even if Mongo is unreachable
+        if (System.currentTimeMillis() > leasesValidUntilMs) {
+            return false;
+        }
+        return ownedBuckets.contains(bucketOf(userId));
+    }
+
+    public int bucketOf(String userId) {
+        return (int) Long.remainderUnsigned(fnv1a(userId), bucketCount);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<Integer> getOwnedBuckets() {
+        return ownedBuckets;
+    }
+
+    /**
+     * Starts heartbeating right away and then every heartbeat interval.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renews this node's membership, works out which buckets it should own among the live nodes,
+     * takes over any of those whose lease is free or expired, and releases the ones it no longer should own.
+     */
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            // Never let an exception escape: it would cancel every later heartbeat
+            log.error("Partition heartbeat failed for node {}", nodeId, e);
+        }
+    }
+
+    private void rebalance() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusNanos(leaseTtlMs * 1_000_000);
+        long validUntilMs = System.currentTimeMillis() + leaseTtlMs;
+
+        SyncNode self = syncNodeRepository.findById(nodeId)
+                .orElseGet(() -> SyncNode.builder().id(nodeId).startedAt(now).build());
+        self.setHeartbeatAt(now);
+        self.setExpiresAt(expiresAt);
+        syncNodeRepository.save(self);
+
+        List<String> liveNodes = syncNodeRepository.findByExpiresAtAfter(now).stream()
+                .map(SyncNode::getId)
+                .collect(Collectors.toList());
+        if (!liveNodes.contains(nodeId)) {
+            liveNodes.add(nodeId);
+        }
+
+        Map<Integer, PartitionLease> leases = partitionLeaseRepository.findAll().stream()
+                .collect(Collectors.toMap(PartitionLease::getBucket, Function.identity()));
+
+        Set<Integer> owned = new HashSet<>();
+        Set<Integer> toRelease = new HashSet<>();
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            PartitionLease lease = leases.get(bucket);
+            boolean heldByUs = lease != null && nodeId.equals(lease.getOwnerId());
+
+            if (nodeId.equals(assignedNode(bucket, liveNodes))) {
+                if (lease == null || heldByUs || lease.getExpiresAt().isBefore(now)) {
+                    if (acquire(bucket, lease, now, expiresAt)) {
+                        owned.add(bucket);
+                    }
+                }
+            } else if (heldByUs) {
+                toRelease.add(bucket);
+            }
+        }
+
+        // Stop syncing released buckets before their leases become available to the new owner
+        Set<Integer> previous = ownedBuckets;
+        ownedBuckets = Set.copyOf(owned);
+        leasesValidUntilMs = validUntilMs;
+        toRelease.forEach(bucket -> release(leases.get(bucket)));
+
+        if (!owned.equals(previous)) {
+            rebalances.increment();
+            log.info("Node {} now owns {} of {} sync partitions ({} live nodes)",
+                    nodeId, owned.size(), bucketCount, liveNodes.size());
+            eventPublisher.publishEvent(new PartitionsChangedEvent(Set.copyOf(owned)));
+        }
+    }
+
+    private boolean acquire(int bucket, PartitionLease lease, LocalDateTime now, LocalDateTime expiresAt) {
+        PartitionLease updated = lease != null ? lease : PartitionLease.builder().bucket(bucket).build();
+        updated.setOwnerId(nodeId);
+        updated.setHeartbeatAt(now);
+        updated.setExpiresAt(expiresAt);
+
+        try {
+            partitionLeaseRepository.save(updated);
+            return true;
+        } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+            log.debug("Node {} lost the race for partition {}", nodeId, bucket);
+            return false;
+        }
+    }
+
+    private void release(PartitionLease lease) {
+        try {
+            partitionLeaseRepository.delete(lease);
+            log.debug("Node {} released partition {}", nodeId, lease.getBucket());
+        } catch (OptimisticLockingFailureException e) {
+            log.debug("Partition {} changed hands before node {} released it", lease.getBucket(), nodeId);
+        }
+    }
+
+    /**
+     * Rendezvous hashing: the live node with the highest score for a bucket gets it.
+     * Every node computes the same answer from the same membership list.
+     */
+    static String assignedNode(int bucket, List<String> liveNodes) {
+        String winner = null;
+        long best = 0;
+        for (String node : liveNodes) {
+            long score = mix(fnv1a(node) ^ (bucket * 0x9E3779B97F4A7C15L));
+            if (winner == null || Long.compareUnsigned(score, best) > 0
+                    || (score == best && node.compareTo(winner) < 0)) {
+                winner = node;
+                best = score;
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Hands this node's partitions back on shutdown so the remaining nodes take over without waiting for expiry.
+     */
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        if (!enabled) {
+            return;
+        }
+
+        ownedBuckets = Set.of();
+        try {
+            partitionLeaseRepository.findByOwnerId(nodeId).forEach(this::release);
+            syncNodeRepository.deleteById(nodeId);
+            log.info("Node {} released its sync partitions", nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to release sync partitions for node {}, they will expire", nodeId, e);
+        }
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static String createNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Published when the set of partitions owned by this node changes.
+     */
+    public record PartitionsChangedEvent(Set<Integer> ownedBuckets) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.statusbeat.statusbeat.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Creates the stages of the sync pipeline with their configured concurrency and queue size,
+ * and stops them on shutdown, failing whatever they still hold.
+ *
+ * Stages are sized independently so that a slow dependency only ties up the workers of the stage
+ * that calls it: Spotify reads, in-memory decisions, Slack writes and Mongo writes.
+ */
+@Service
+public class SyncPipeline {
+
+    public enum Stage {
+        FETCH, DIFF, PUBLISH, PERSIST
+    }
+
+    @Value("${statusbeat.sync.pipeline.fetch-concurrency:32}")
+    private int fetchConcurrency = 32;
+
+    @Value("${statusbeat.sync.pipeline.diff-concurrency:2}")
+    private int diffConcurrency = 2;
+
+    @Value("${statusbeat.sync.pipeline.publish-concurrency:16}")
+    private int publishConcurrency = 16;
+
+    @Value("${statusbeat.sync.pipeline.persist-concurrency:8}")
+    private int persistConcurrency = 8;
+
+    @Value("${statusbeat.sync.pipeline.queue-capacity:256}")
+    private int queueCapacity = 256;
+
+    private final MeterRegistry meterRegistry;
+    private final List<SyncStage<?>> stages = new CopyOnWriteArrayList<>();
+
+    public SyncPipeline(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts a stage whose workers run the handler for every submitted item.
+     * Exceptions thrown by the handler are passed to onError with the item that failed.
+     */
+    public <T> SyncStage<T> createStage(Stage stage, SyncStage.Handler<T> handler, BiConsumer<T, Throwable> onError) {
+        SyncStage<T> created = new SyncStage<>(stage.name().toLowerCase(), concurrencyOf(stage), queueCapacity,
+                handler, onError, meterRegistry);
+        stages.add(created);
+        return created;
+    }
+
+    private int concurrencyOf(Stage stage) {
+        return switch (stage) {
+            case FETCH -> fetchConcurrency;
+            case DIFF -> diffConcurrency;
+            case PUBLISH -> publishConcurrency;
+            case PERSIST -> persistConcurrency;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stages.forEach(SyncStage::shutdown);
+        stages.clear();
+    }
+}
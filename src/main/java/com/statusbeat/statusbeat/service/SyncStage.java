@@ -0,0 +1,137 @@
+package com.statusbeat.statusbeat.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * One stage of the sync pipeline: a bounded queue drained by a fixed number of virtual-thread workers.
+ *
+ * Submitting blocks while the queue is full, so a slow stage pushes back on the stage feeding it
+ * instead of buffering without limit. Work for one item is handed to the next stage by the handler.
+ * On shutdown, items still queued or submitted afterwards are failed through onError, never dropped.
+ */
+@Slf4j
+public class SyncStage<T> {
+
+    private final String name;
+    private final BlockingQueue<Queued<T>> queue;
+    private final Handler<T> handler;
+    private final BiConsumer<T, Throwable> onError;
+    private final Timer serviceTimer;
+    private final Timer waitTimer;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopped;
+
+    SyncStage(String name, int concurrency, int capacity, Handler<T> handler, BiConsumer<T, Throwable> onError,
+              MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.handler = handler;
+        this.onError = onError;
+        this.serviceTimer = Timer.builder("statusbeat.sync.stage.service.time")
+                .tag("stage", name)
+                .description("Time a pipeline stage spends on one user")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("statusbeat.sync.stage.wait.time")
+                .tag("stage", name)
+                .description("Time a user waits in a pipeline stage's queue")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.sync.stage.queue.depth", queue, BlockingQueue::size)
+                .tag("stage", name)
+                .description("Users waiting in a pipeline stage's queue")
+                .register(meterRegistry);
+
+        for (int i = 0; i < Math.max(1, concurrency); i++) {
+            workers.add(Thread.ofVirtual().name("sync-" + name + "-", i).start(this::work));
+        }
+    }
+
+    /**
+     * Queues an item, blocking while the stage is full. Throws RejectedExecutionException once the stage
+     * is shut down.
+     */
+    public void submit(T item) throws InterruptedException {
+        if (stopped) {
+            throw rejected();
+        }
+        Queued<T> queued = new Queued<>(item, System.nanoTime());
+        queue.put(queued);
+        // Shutdown may have drained the queue between the check and the put
+        if (stopped && queue.remove(queued)) {
+            throw rejected();
+        }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Stops the workers and fails every item still waiting in the queue. Items being handled are
+     * interrupted and fail the same way unless they finish first.
+     */
+    void shutdown() {
+        stopped = true;
+        workers.forEach(Thread::interrupt);
+        List<Queued<T>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(queued -> onError.accept(queued.item(), rejected()));
+        if (!pending.isEmpty()) {
+            log.debug("Sync stage {} shut down with {} items queued", name, pending.size());
+        }
+    }
+
+    private RejectedExecutionException rejected() {
+        return new RejectedExecutionException("Sync stage " + name + " is shut down");
+    }
+
+    private void work() {
+        while (!stopped) {
+            Queued<T> queued;
+            try {
+                queued = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long start = System.nanoTime();
+            waitTimer.record(start - queued.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            try {
+                handler.handle(queued.item());
+            } catch (Throwable e) {
+                log.debug("Sync stage {} failed for an item", name, e);
+                onError.accept(queued.item(), e);
+            } finally {
+                serviceTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Processes one item, usually finishing by submitting it to the next stage.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private record Queued<T>(T item, long enqueuedAtNanos) {
+    }
+}
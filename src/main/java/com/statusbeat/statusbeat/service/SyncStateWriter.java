@@ -0,0 +1,289 @@
+package com.statusbeat.statusbeat.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.statusbeat.statusbeat.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Buffers the sync engine's per-user state writes (currently playing, status cleared) and flushes them
+ * as one unordered bulk write per sync cycle or time window, instead of a round trip per field per user.
+ *
+ * Writes for one user are merged in order as they arrive, so each user costs at most two updates per
+ * flush: one for plain fields and one for a track change that only applies while the stored track is
+ * still the one the sync started from. The two touch different fields, so their order in the bulk
+ * doesn't matter, and flushes never overlap. Updates that fail are merged back under anything newer
+ * and retried with the next flush, up to a limit.
+ *
+ * Writes that other code reads back right away (last set status, manual flag) stay immediate in
+ * {@link UserService}; callers that save whole user documents flush the user first.
+ */
+@Slf4j
+@Service
+public class SyncStateWriter {
+
+    private static final String SONG_ID = "currentlyPlayingSongId";
+    private static final String SONG_TITLE = "currentlyPlayingSongTitle";
+    private static final String ARTIST = "currentlyPlayingArtist";
+    private static final String LAST_SYNCED_AT = "lastSyncedAt";
+    private static final String STATUS_CLEARED = "statusCleared";
+    private static final String UPDATED_AT = "updatedAt";
+
+    @Value("${statusbeat.sync.state-flush.max-batch:1000}")
+    private int maxBatch = 1000;
+
+    @Value("${statusbeat.sync.state-flush.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final DistributionSummary flushSize;
+    private final Timer flushTimer;
+    private final Counter retried;
+    private final Counter dropped;
+
+    public SyncStateWriter(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.flushSize = DistributionSummary.builder("statusbeat.sync.state.flush.size")
+                .description("User updates sent per bulk write of sync state")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("statusbeat.sync.state.flush.duration")
+                .description("Time to bulk write buffered sync state")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.retried = Counter.builder("statusbeat.sync.state.flush.failures")
+                .tag("result", "retried")
+                .description("Buffered user updates that failed and were queued for the next flush")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("statusbeat.sync.state.flush.failures")
+                .tag("result", "dropped")
+                .description("Buffered user updates given up on after repeated failures")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.sync.state.pending", pending, Map::size)
+                .description("Users with sync state waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a new track, applied only if the stored track is still expectedSongId (null: no track).
+     */
+    public void updateCurrentlyPlaying(String userId, String expectedSongId, String songId, String title,
+                                       String artist) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put(SONG_ID, songId);
+        fields.put(SONG_TITLE, title);
+        fields.put(ARTIST, artist);
+        fields.put(LAST_SYNCED_AT, now);
+        enqueue(userId, new Pending(now).conditional(expectedSongId, fields));
+    }
+
+    public void clearCurrentlyPlaying(String userId) {
+        Pending write = new Pending(LocalDateTime.now());
+        write.fields.put(SONG_ID, null);
+        write.fields.put(SONG_TITLE, null);
+        write.fields.put(ARTIST, null);
+        enqueue(userId, write);
+    }
+
+    public void setStatusCleared(String userId, boolean cleared) {
+        Pending write = new Pending(LocalDateTime.now());
+        write.fields.put(STATUS_CLEARED, cleared);
+        enqueue(userId, write);
+    }
+
+    public int pendingUsers() {
+        return pending.size();
+    }
+
+    private void enqueue(String userId, Pending write) {
+        pending.merge(userId, write, Pending::absorb);
+        if (pending.size() >= maxBatch && flushLock.tryLock()) {
+            // Whoever fills the batch writes it; if a flush is already running it picks these up next time
+            try {
+                flushLocked(pending.keySet());
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes everything buffered so far. Called at the end of each sync cycle and on a timer for writes
+     * made outside cycles (manual syncs, retries).
+     */
+    @Scheduled(fixedDelayString = "${statusbeat.sync.state-flush.interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushLocked(pending.keySet());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes whatever is buffered for one user, before code that saves the whole user document.
+     */
+    public void flush(String userId) {
+        flushLock.lock();
+        try {
+            flushLocked(Set.of(userId));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked(Set<String> userIds) {
+        Map<String, Pending> batch = new LinkedHashMap<>();
+        for (String userId : List.copyOf(userIds)) {
+            Pending write = pending.remove(userId);
+            if (write != null) {
+                batch.put(userId, write);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        // Which user each update in the bulk belongs to, by index
+        List<String> owners = new ArrayList<>();
+        batch.forEach((userId, write) -> {
+            if (!write.fields.isEmpty()) {
+                bulk.updateOne(new Query(Criteria.where("_id").is(userId)), write.update(write.fields));
+                owners.add(userId);
+            }
+            if (write.conditionalFields != null) {
+                Query stillExpected = new Query(Criteria.where("_id").is(userId)
+                        .and(SONG_ID).is(write.expectedSongId));
+                bulk.updateOne(stillExpected, write.update(write.conditionalFields));
+                owners.add(userId);
+            }
+        });
+
+        long start = System.nanoTime();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            Set<String> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(owners.get(error.getIndex()));
+            }
+            log.warn("Bulk write of sync state failed for {} of {} users: {}",
+                    failed.size(), batch.size(), e.getMessage());
+            requeue(batch, failed);
+        } catch (DataAccessException e) {
+            log.warn("Bulk write of sync state for {} users failed: {}", batch.size(), e.getMessage());
+            requeue(batch, batch.keySet());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(owners.size());
+        }
+    }
+
+    /**
+     * Puts failed writes back under anything buffered for the user since, so the newer values still win.
+     */
+    private void requeue(Map<String, Pending> batch, Set<String> failedUserIds) {
+        for (String userId : failedUserIds) {
+            Pending failed = batch.get(userId);
+            if (++failed.attempts >= maxAttempts) {
+                dropped.increment();
+                log.error("Giving up on sync state for user {} after {} attempts", userId, failed.attempts);
+                continue;
+            }
+            retried.increment();
+            pending.merge(userId, failed, (newer, older) -> older.absorb(newer));
+        }
+    }
+
+    /**
+     * The state changes buffered for one user, merged in arrival order.
+     */
+    private static final class Pending {
+        private final Map<String, Object> fields = new LinkedHashMap<>();
+        private Map<String, Object> conditionalFields;
+        private String expectedSongId;
+        private LocalDateTime updatedAt;
+        private int attempts;
+
+        private Pending(LocalDateTime updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+
+        private Pending conditional(String expectedSongId, Map<String, Object> fields) {
+            this.expectedSongId = expectedSongId;
+            this.conditionalFields = fields;
+            return this;
+        }
+
+        /**
+         * Applies a later write on top of this one and returns this.
+         */
+        private Pending absorb(Pending later) {
+            if (later.fields.containsKey(SONG_ID)) {
+                // A plain write of the track replaces any track change still waiting on its condition
+                conditionalFields = null;
+                expectedSongId = null;
+            }
+            fields.putAll(later.fields);
+
+            if (later.conditionalFields != null) {
+                if (fields.containsKey(SONG_ID)) {
+                    // The track this write expects is already known here, so settle the condition now
+                    if (Objects.equals(fields.get(SONG_ID), later.expectedSongId)) {
+                        fields.putAll(later.conditionalFields);
+                    }
+                } else if (conditionalFields == null) {
+                    conditional(later.expectedSongId, later.conditionalFields);
+                } else if (Objects.equals(conditionalFields.get(SONG_ID), later.expectedSongId)) {
+                    // Chained track changes: keep the first condition, take the latest track
+                    conditionalFields = later.conditionalFields;
+                }
+            }
+
+            if (later.updatedAt.isAfter(updatedAt)) {
+                updatedAt = later.updatedAt;
+            }
+            attempts = Math.max(attempts, later.attempts);
+            return this;
+        }
+
+        private Update update(Map<String, Object> values) {
+            Update update = new Update();
+            values.forEach(update::set);
+            // Both of a user's updates stamp updatedAt; never move it backwards
+            update.max(UPDATED_AT, updatedAt);
+            return update;
+        }
+    }
+}
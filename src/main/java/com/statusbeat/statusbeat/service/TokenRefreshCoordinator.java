@@ -0,0 +1,101 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.stereotype.Service;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Makes sure at most one Spotify token refresh runs per user at a time.
+ *
+ * Spotify may rotate the refresh token on every refresh, so two overlapping refreshes for the same user
+ * can race and leave a stale refresh token in Mongo. The first caller runs the refresh; anyone arriving
+ * while it is in flight waits for it and gets the same result or exception.
+ */
+@Slf4j
+@Service
+public class TokenRefreshCoordinator {
+
+    private final Map<String, CompletableFuture<User>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter deduplicated;
+
+    public TokenRefreshCoordinator(MeterRegistry meterRegistry) {
+        this.executed = Counter.builder("statusbeat.spotify.token.refresh.calls")
+                .tag("outcome", "executed")
+                .description("Token refresh requests, split by whether they ran or joined one in flight")
+                .register(meterRegistry);
+        this.deduplicated = Counter.builder("statusbeat.spotify.token.refresh.calls")
+                .tag("outcome", "deduplicated")
+                .description("Token refresh requests, split by whether they ran or joined one in flight")
+                .register(meterRegistry);
+        Gauge.builder("statusbeat.spotify.token.refresh.in_flight", inFlight, Map::size)
+                .description("Users with a token refresh currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the refresh for the user, or waits for the one already running and returns its result.
+     */
+    public User refresh(String userId, RefreshCall call) throws IOException, ParseException, SpotifyWebApiException {
+        CompletableFuture<User> mine = new CompletableFuture<>();
+        CompletableFuture<User> running = inFlight.putIfAbsent(userId, mine);
+        if (running != null) {
+            deduplicated.increment();
+            log.debug("Joining in-flight Spotify token refresh for user {}", userId);
+            return await(running);
+        }
+
+        executed.increment();
+        try {
+            User refreshed = call.refresh();
+            mine.complete(refreshed);
+            return refreshed;
+        } catch (IOException | ParseException | SpotifyWebApiException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(userId, mine);
+        }
+    }
+
+    private static User await(CompletableFuture<User> running) throws IOException, ParseException, SpotifyWebApiException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for token refresh");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof ParseException parse) {
+                throw parse;
+            }
+            if (cause instanceof SpotifyWebApiException spotify) {
+                throw spotify;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RefreshCall {
+        User refresh() throws IOException, ParseException, SpotifyWebApiException;
+    }
+}
@@ -0,0 +1,161 @@
+package com.statusbeat.statusbeat.service;
+
+import com.statusbeat.statusbeat.util.ExpiringMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Short-lived, bounded cache of decrypted OAuth tokens.
+ * Entries are keyed by user and token kind, and only match while the stored ciphertext fingerprint is unchanged,
+ * so a token refresh or reinstall is never served a stale secret.
+ *
+ * Only the vault's own copy is zeroed on eviction. Every lookup returns a new String, because the Slack and
+ * Spotify clients only take tokens as Strings; those copies are immutable and stay on the heap until they are
+ * garbage collected. The vault keeps one long-lived copy per token instead of one per decrypt, but it does not
+ * keep tokens out of heap dumps.
+ */
+@Slf4j
+@Service
+public class TokenVault {
+
+    public enum TokenKind {
+        SLACK_ACCESS,
+        SPOTIFY_ACCESS,
+        SPOTIFY_REFRESH
+    }
+
+    @Value("${statusbeat.token-vault.ttl-ms:300000}")
+    private long ttlMs = 300000;
+
+    @Value("${statusbeat.token-vault.max-size:150000}")
+    private int maxSize = 150000;
+
+    private final ExpiringMap<VaultKey, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public TokenVault(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("statusbeat.token.vault.requests")
+                .tag("result", "hit")
+                .description("Decrypted token lookups served from the vault")
+                .register(meterRegistry);
+        this.misses = Counter.builder("statusbeat.token.vault.requests")
+                .tag("result", "miss")
+                .description("Decrypted token lookups that required a decrypt")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("statusbeat.token.vault.evictions")
+                .description("Vault entries evicted and zeroed")
+                .register(meterRegistry);
+        this.entries = new ExpiringMap<>(() -> ttlMs, () -> maxSize, entry -> {
+            entry.destroy();
+            evictions.increment();
+        });
+        Gauge.builder("statusbeat.token.vault.size", entries, ExpiringMap::size)
+                .description("Decrypted tokens currently held in the vault")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the decrypted token for the given ciphertext, decrypting and caching it on a miss.
+     * The returned String is a copy the vault cannot zero.
+     */
+    public String get(String userId, TokenKind kind, String ciphertext, UnaryOperator<String> decryptor) {
+        if (userId == null) {
+            return decryptor.apply(ciphertext);
+        }
+
+        VaultKey key = new VaultKey(userId, kind);
+        long fingerprint = fingerprint(ciphertext);
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.fingerprint == fingerprint) {
+            String secret = entry.read();
+            if (secret != null) {
+                hits.increment();
+                return secret;
+            }
+        }
+
+        misses.increment();
+        String plainText = decryptor.apply(ciphertext);
+        if (plainText == null) {
+            return null;
+        }
+
+        int evicted = entries.put(key, new Entry(fingerprint, plainText.toCharArray()));
+        if (evicted > 0) {
+            log.warn("Token vault reached max size {}, evicted {} oldest entries", maxSize, evicted);
+        }
+        return plainText;
+    }
+
+    /**
+     * Drops and zeroes every cached token of a user. Called whenever new ciphertext is written.
+     */
+    public void invalidate(String userId) {
+        if (userId == null) {
+            return;
+        }
+        for (TokenKind kind : TokenKind.values()) {
+            entries.remove(new VaultKey(userId, kind));
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Scheduled(fixedDelayString = "${statusbeat.token-vault.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        int evicted = entries.evictExpired();
+        if (evicted > 0) {
+            log.debug("Evicted {} expired tokens from vault, {} remaining", evicted, entries.size());
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the ciphertext. Ciphertext carries a random IV and auth tag,
+     * so every re-encryption yields a new fingerprint.
+     */
+    private static long fingerprint(String ciphertext) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < ciphertext.length(); i++) {
+            hash ^= ciphertext.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record VaultKey(String userId, TokenKind kind) {
+    }
+
+    private static final class Entry {
+        private final long fingerprint;
+        private char[] secret;
+
+        private Entry(long fingerprint, char[] secret) {
+            this.fingerprint = fingerprint;
+            this.secret = secret;
+        }
+
+        private synchronized String read() {
+            return secret != null ? new String(secret) : null;
+        }
+
+        private synchronized void destroy() {
+            if (secret != null) {
+                Arrays.fill(secret, '\0');
+                secret = null;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.statusbeat.statusbeat.service;
 
+import com.mongodb.client.result.UpdateResult;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
 import com.statusbeat.statusbeat.repository.UserRepository;
@@ -7,12 +8,23 @@ import com.statusbeat.statusbeat.repository.UserSettingsRepository;
 import com.statusbeat.statusbeat.util.EncryptionUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -22,6 +34,11 @@ public class UserService {
     private final UserRepository userRepository;
     private final UserSettingsRepository userSettingsRepository;
     private final EncryptionUtil encryptionUtil;
+    private final TokenVault tokenVault;
+    private final PollScheduler pollScheduler;
+    private final SyncStateWriter syncStateWriter;
+    private final InstallationCache installationCache;
+    private final MongoTemplate mongoTemplate;
 
     public Optional<User> findBySlackUserId(String slackUserId) {
         return userRepository.findBySlackUserId(slackUserId);
@@ -31,8 +48,26 @@ public class UserService {
         return userRepository.findBySpotifyUserId(spotifyUserId);
     }
 
-    public List<User> findAllActiveUsers() {
-        return userRepository.findByActiveTrue();
+    /**
+     * The users among the given ids that the sync engine can act on: active, with a Spotify token that has
+     * not been revoked and no manual status. Filtered in Mongo and read with only the fields a sync needs;
+     * the returned users must not be saved. Settings are not checked here; the sync reads them.
+     */
+    public List<User> findSyncCandidates(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findSyncCandidatesByIdIn(userIds);
+    }
+
+    /**
+     * Active users whose Spotify token expires before {@code before}, soonest first, starting after the user
+     * {@code afterId} whose token expires at {@code afterExpiry}. Pass a null id for the first page.
+     */
+    public List<User> findUsersWithSpotifyTokenExpiringAfter(LocalDateTime afterExpiry, String afterId,
+                                                              LocalDateTime before, int limit) {
+        return userRepository.findActiveWithSpotifyTokenExpiringAfter(afterExpiry, afterId, before,
+                PageRequest.of(0, limit, Sort.by("spotifyTokenExpiresAt", "id")));
     }
 
     @Transactional
@@ -45,6 +80,7 @@ public class UserService {
             user.setUpdatedAt(LocalDateTime.now());
             user.setActive(true);
             log.info("Updated existing user: {}", slackUserId);
+            tokenVault.invalidate(user.getId());
             return userRepository.save(user);
         } else {
             User newUser = User.builder()
@@ -65,41 +101,51 @@ public class UserService {
         }
     }
 
-    @Transactional
+    /**
+     * Stores new Spotify tokens and returns the updated user. Only the token fields are set, so sync state
+     * and status flags written concurrently by the sync are never overwritten with a stale copy.
+     */
     public User updateSpotifyTokens(String userId, String spotifyUserId, String accessToken,
                                     String refreshToken, long expiresIn) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setSpotifyUserId(spotifyUserId);
-        user.setEncryptedSpotifyAccessToken(encryptionUtil.encrypt(accessToken));
-        user.setEncryptedSpotifyRefreshToken(encryptionUtil.encrypt(refreshToken));
-        user.setSpotifyTokenExpiresAt(LocalDateTime.now().plusSeconds(expiresIn));
-        user.setUpdatedAt(LocalDateTime.now());
+        Update update = new Update()
+                .set("spotifyUserId", spotifyUserId)
+                .set("encryptedSpotifyAccessToken", encryptionUtil.encrypt(accessToken))
+                .set("encryptedSpotifyRefreshToken", encryptionUtil.encrypt(refreshToken))
+                .set("spotifyTokenExpiresAt", LocalDateTime.now().plusSeconds(expiresIn))
+                .set("updatedAt", LocalDateTime.now());
+        User user = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(userId)), update,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+        if (user == null) {
+            throw new RuntimeException("User not found");
+        }
 
         log.info("Updated Spotify tokens for user: {}", userId);
-        return userRepository.save(user);
+        tokenVault.invalidate(userId);
+        return user;
     }
 
     public String getDecryptedSpotifyAccessToken(User user) {
         if (user.getEncryptedSpotifyAccessToken() == null) {
             return null;
         }
-        return encryptionUtil.decrypt(user.getEncryptedSpotifyAccessToken());
+        return tokenVault.get(user.getId(), TokenVault.TokenKind.SPOTIFY_ACCESS,
+                user.getEncryptedSpotifyAccessToken(), encryptionUtil::decrypt);
     }
 
     public String getDecryptedSpotifyRefreshToken(User user) {
         if (user.getEncryptedSpotifyRefreshToken() == null) {
             return null;
         }
-        return encryptionUtil.decrypt(user.getEncryptedSpotifyRefreshToken());
+        return tokenVault.get(user.getId(), TokenVault.TokenKind.SPOTIFY_REFRESH,
+                user.getEncryptedSpotifyRefreshToken(), encryptionUtil::decrypt);
     }
 
     public String getDecryptedSlackAccessToken(User user) {
         if (user.getEncryptedSlackAccessToken() == null) {
             return null;
         }
-        return encryptionUtil.decrypt(user.getEncryptedSlackAccessToken());
+        return tokenVault.get(user.getId(), TokenVault.TokenKind.SLACK_ACCESS,
+                user.getEncryptedSlackAccessToken(), encryptionUtil::decrypt);
     }
 
     public boolean isSpotifyTokenExpired(User user) {
@@ -109,57 +155,14 @@ public class UserService {
         return LocalDateTime.now().plusMinutes(5).isAfter(user.getSpotifyTokenExpiresAt());
     }
 
-    @Transactional
-    public void updateCurrentlyPlaying(String userId, String songId, String title, String artist) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setCurrentlyPlayingSongId(songId);
-        user.setCurrentlyPlayingSongTitle(title);
-        user.setCurrentlyPlayingArtist(artist);
-        user.setLastSyncedAt(LocalDateTime.now());
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
-        log.debug("Updated currently playing for user {}: {} - {}", userId, title, artist);
-    }
-
-    @Transactional
-    public void clearCurrentlyPlaying(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setCurrentlyPlayingSongId(null);
-        user.setCurrentlyPlayingSongTitle(null);
-        user.setCurrentlyPlayingArtist(null);
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
-        log.debug("Cleared currently playing for user {}", userId);
-    }
-
-    @Transactional
     public void updateLastSetStatus(String userId, String statusText) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setLastSetStatusText(statusText);
-        user.setManualStatusSet(false); // Clear manual flag when we set status
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
+        // Clears the manual flag too: we just set the status ourselves
+        updateUser(userId, new Update().set("lastSetStatusText", statusText).set("manualStatusSet", false));
         log.debug("Updated last set status for user {}: {}", userId, statusText);
     }
 
-    @Transactional
     public void setManualStatusFlag(String userId, boolean manualStatusSet) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setManualStatusSet(manualStatusSet);
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
+        updateUser(userId, new Update().set("manualStatusSet", manualStatusSet));
         log.debug("Set manual status flag for user {} to: {}", userId, manualStatusSet);
     }
 
@@ -171,7 +174,9 @@ public class UserService {
         settings.setUpdatedAt(LocalDateTime.now());
         userSettingsRepository.save(settings);
 
-        // Clear manual status flag when user explicitly starts
+        // Clear manual status flag when user explicitly starts; buffered sync state must land first so
+        // saving the whole document can't be overtaken by an older flush
+        syncStateWriter.flush(userId);
         userRepository.findById(userId).ifPresent(user -> {
             user.setManualStatusSet(false);
             user.setStatusCleared(false);
@@ -179,6 +184,8 @@ public class UserService {
             userRepository.save(user);
         });
 
+        // Poll right away instead of waiting for the next reconciliation
+        pollScheduler.schedule(userId, 0);
         log.info("Started sync for user {}", userId);
     }
 
@@ -189,22 +196,11 @@ public class UserService {
         settings.setSyncActive(false);
         settings.setUpdatedAt(LocalDateTime.now());
         userSettingsRepository.save(settings);
+        pollScheduler.cancel(userId);
 
         log.info("Stopped sync for user {}", userId);
     }
 
-    @Transactional
-    public void setStatusCleared(String userId, boolean cleared) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setStatusCleared(cleared);
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
-        log.debug("Set status cleared flag for user {} to: {}", userId, cleared);
-    }
-
     @Transactional
     public void updateWorkingHours(String userId, Integer startHourUtc, Integer endHourUtc, boolean enabled) {
         UserSettings settings = userSettingsRepository.findByUserId(userId)
@@ -245,28 +241,56 @@ public class UserService {
         log.info("Updated default emoji for user {}: {}", userId, emoji);
     }
 
-    @Transactional
     public void setTokenInvalidated(String userId, boolean invalidated) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.setTokenInvalidated(invalidated);
-        user.setTokenInvalidatedAt(invalidated ? LocalDateTime.now() : null);
-        user.setActive(!invalidated); // Deactivate user when token is invalidated
-        user.setUpdatedAt(LocalDateTime.now());
-
-        userRepository.save(user);
+        // Deactivate user when token is invalidated
+        updateUser(userId, new Update()
+                .set("tokenInvalidated", invalidated)
+                .set("tokenInvalidatedAt", invalidated ? LocalDateTime.now() : null)
+                .set("active", !invalidated));
+        if (invalidated) {
+            pollScheduler.cancel(userId);
+        }
         log.info("Set token invalidated flag for user {} to: {}", userId, invalidated);
     }
 
+    /**
+     * Targeted $set on one user: one round trip, and fields it doesn't name (tokens) are never rewritten.
+     * Fails on a missing user the way the former findById did. Checks the matched count, not the modified
+     * one: an identical write landing in the same millisecond matches the user but modifies nothing.
+     */
+    private void updateUser(String userId, Update update) {
+        UpdateResult result = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userId)),
+                update.set("updatedAt", LocalDateTime.now()), User.class);
+        if (result.getMatchedCount() == 0) {
+            throw new RuntimeException("User not found");
+        }
+    }
+
     public Optional<UserSettings> getUserSettings(String userId) {
         return userSettingsRepository.findByUserId(userId);
     }
 
+    /**
+     * Settings of many users in one $in query, keyed by user id. Users without settings are absent.
+     * Sync cycles load their users' settings once with this and hand them down the pipeline.
+     */
+    public Map<String, UserSettings> getUserSettingsByUserIds(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        return userSettingsRepository.findByUserIdIn(userIds).stream()
+                .collect(Collectors.toMap(UserSettings::getUserId, Function.identity(), (first, second) -> first));
+    }
+
     @Transactional
     public void deleteUserCompletely(String userId) {
+        Optional<User> user = userRepository.findById(userId);
         userSettingsRepository.deleteByUserId(userId);
         userRepository.deleteById(userId);
+        tokenVault.invalidate(userId);
+        pollScheduler.cancel(userId);
+        // Cached installer records are keyed by Slack ids; drop them so a purged user is not served from cache
+        user.ifPresent(deleted -> installationCache.invalidate(deleted.getSlackTeamId(), deleted.getSlackUserId()));
         log.info("User and settings deleted successfully.");
     }
 
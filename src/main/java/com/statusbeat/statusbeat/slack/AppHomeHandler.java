@@ -39,6 +39,7 @@ public class AppHomeHandler {
     private final SpotifyService spotifyService;
     private final WorkingHoursValidator workingHoursValidator;
     private final TimezoneService timezoneService;
+    private final SlackRateDispatcher rateDispatcher;
 
     @PostConstruct
     public void registerHandlers() {
@@ -66,7 +67,7 @@ public class AppHomeHandler {
                 log.debug("App Home opened by user: {}", userId);
 
                 String botToken = ctx.getBotToken();
-                appHomeService.publishHomeView(userId, botToken);
+                appHomeService.publishHomeViewAsync(userId, botToken);
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -86,7 +87,7 @@ public class AppHomeHandler {
                 if (userOpt.isPresent()) {
                     User user = userOpt.get();
                     userService.startSync(user.getId());
-                    appHomeService.publishHomeView(userId, ctx.getBotToken());
+                    appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
                 }
 
                 return ctx.ack();
@@ -107,7 +108,7 @@ public class AppHomeHandler {
                 if (userOpt.isPresent()) {
                     User user = userOpt.get();
                     userService.stopSync(user.getId());
-                    appHomeService.publishHomeView(userId, ctx.getBotToken());
+                    appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
                 }
 
                 return ctx.ack();
@@ -134,7 +135,7 @@ public class AppHomeHandler {
                         settings.setSyncEnabled(true);
                         userService.updateUserSettings(settings);
 
-                        appHomeService.publishHomeView(userId, ctx.getBotToken());
+                        appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
                     }
                 }
 
@@ -162,7 +163,7 @@ public class AppHomeHandler {
                         settings.setSyncEnabled(false);
                         userService.updateUserSettings(settings);
 
-                        appHomeService.publishHomeView(userId, ctx.getBotToken());
+                        appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
                     }
                 }
 
@@ -182,7 +183,7 @@ public class AppHomeHandler {
 
                 musicSyncService.manualSync(userId);
 
-                appHomeService.publishHomeView(userId, ctx.getBotToken());
+                appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -212,10 +213,11 @@ public class AppHomeHandler {
                 UserSettings settings = settingsOpt.get();
                 View modalView = buildWorkingHoursModal(settings);
 
-                ctx.client().viewsOpen(r -> r
-                        .triggerId(req.getPayload().getTriggerId())
-                        .view(modalView)
-                );
+                rateDispatcher.execute("views.open", ctx.getTeamId(), SlackRateDispatcher.Priority.INTERACTIVE,
+                        () -> ctx.client().viewsOpen(r -> r
+                                .triggerId(req.getPayload().getTriggerId())
+                                .view(modalView)
+                        ));
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -359,7 +361,7 @@ public class AppHomeHandler {
                         convertedTimes[0] / 100, convertedTimes[0] % 100,
                         convertedTimes[1] / 100, convertedTimes[1] % 100);
 
-                appHomeService.publishHomeView(userId, ctx.getBotToken());
+                appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -389,10 +391,11 @@ public class AppHomeHandler {
                 UserSettings settings = settingsOpt.get();
                 View modalView = buildEmojiModal(settings);
 
-                ctx.client().viewsOpen(r -> r
-                        .triggerId(req.getPayload().getTriggerId())
-                        .view(modalView)
-                );
+                rateDispatcher.execute("views.open", ctx.getTeamId(), SlackRateDispatcher.Priority.INTERACTIVE,
+                        () -> ctx.client().viewsOpen(r -> r
+                                .triggerId(req.getPayload().getTriggerId())
+                                .view(modalView)
+                        ));
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -458,7 +461,7 @@ public class AppHomeHandler {
 
                 log.info("Updated emoji for user {}: {}", userId, emoji);
 
-                appHomeService.publishHomeView(userId, ctx.getBotToken());
+                appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -490,10 +493,11 @@ public class AppHomeHandler {
                 UserSettings settings = settingsOpt.get();
                 View modalView = buildDevicesModal(settings, devices);
 
-                ctx.client().viewsOpen(r -> r
-                        .triggerId(req.getPayload().getTriggerId())
-                        .view(modalView)
-                );
+                rateDispatcher.execute("views.open", ctx.getTeamId(), SlackRateDispatcher.Priority.INTERACTIVE,
+                        () -> ctx.client().viewsOpen(r -> r
+                                .triggerId(req.getPayload().getTriggerId())
+                                .view(modalView)
+                        ));
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -602,7 +606,7 @@ public class AppHomeHandler {
                 log.info("Updated allowed devices for user {}: {}",
                         userId, selectedDeviceIds.isEmpty() ? "all devices" : selectedDeviceIds);
 
-                appHomeService.publishHomeView(userId, ctx.getBotToken());
+                appHomeService.publishHomeViewAsync(userId, ctx.getBotToken());
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -633,10 +637,11 @@ public class AppHomeHandler {
                         reconnectUrl
                 );
 
-                ctx.client().chatPostMessage(r -> r
-                        .channel(userId)
-                        .text(message)
-                );
+                rateDispatcher.execute("chat.postMessage", ctx.getTeamId(), SlackRateDispatcher.Priority.INTERACTIVE,
+                        () -> ctx.client().chatPostMessage(r -> r
+                                .channel(userId)
+                                .text(message)
+                        ));
 
                 return ctx.ack();
             } catch (Exception e) {
@@ -0,0 +1,49 @@
+package com.statusbeat.statusbeat.slack;
+
+import com.slack.api.bolt.App;
+import com.slack.api.model.User;
+import com.slack.api.model.event.UserChangeEvent;
+import com.slack.api.model.event.UserStatusChangedEvent;
+import com.statusbeat.statusbeat.service.ManualStatusMonitor;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds Slack profile status events to the manual status monitor.
+ * Requires the users:read bot scope and a subscription to user_change and user_status_changed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserStatusEventHandler {
+
+    private final App slackApp;
+    private final ManualStatusMonitor manualStatusMonitor;
+
+    @PostConstruct
+    public void registerHandlers() {
+        slackApp.event(UserStatusChangedEvent.class, (payload, ctx) -> {
+            handle(payload.getEvent().getUser());
+            return ctx.ack();
+        });
+        slackApp.event(UserChangeEvent.class, (payload, ctx) -> {
+            handle(payload.getEvent().getUser());
+            return ctx.ack();
+        });
+
+        log.info("User status event handlers registered successfully");
+    }
+
+    private void handle(User user) {
+        try {
+            if (user == null || user.getProfile() == null) {
+                return;
+            }
+            manualStatusMonitor.onStatusChanged(user.getId(), user.getProfile().getStatusText());
+        } catch (Exception e) {
+            log.error("Error handling user status event", e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.statusbeat.statusbeat.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Lazy batching over an iterator: pulls up to batchSize elements from the source, hands them to a loader
+ * and yields what it returns, one batch at a time. Only the current batch is ever held, so the whole
+ * source never sits in memory. Not thread-safe; consume from one thread.
+ */
+public final class Batches {
+
+    private Batches() {
+    }
+
+    public static <T, R> Iterator<R> flatMap(Iterator<T> source, int batchSize,
+                                             Function<List<T>, ? extends Iterable<R>> loader) {
+        int size = Math.max(1, batchSize);
+        return new Iterator<>() {
+            private Iterator<R> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                // A batch can load to nothing (every id filtered out); keep pulling until something comes back
+                while (!current.hasNext() && source.hasNext()) {
+                    List<T> batch = new ArrayList<>(size);
+                    while (batch.size() < size && source.hasNext()) {
+                        batch.add(source.next());
+                    }
+                    current = loader.apply(batch).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public R next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
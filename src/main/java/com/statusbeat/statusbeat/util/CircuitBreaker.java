@@ -0,0 +1,167 @@
+package com.statusbeat.statusbeat.util;
+
+/**
+ * Count-based circuit breaker for one outbound endpoint.
+ *
+ * Outcomes of the last windowSize calls are kept in a ring. Once at least minimumCalls are recorded
+ * and either the failure rate or the slow-call rate reaches its threshold, the breaker opens and
+ * rejects calls for openDurationMs. It then goes half-open and lets halfOpenProbes calls through:
+ * if they all succeed it closes with a fresh window, and any failure opens it again.
+ *
+ * Time is passed in by the caller in milliseconds. Thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte OK = 0;
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallThresholdMs;
+    private final double slowCallRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+
+    private final byte[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAtMs;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param failureRateThreshold  percentage of failed calls that opens the breaker
+     * @param slowCallRateThreshold percentage of calls slower than slowCallThresholdMs that opens it
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long slowCallThresholdMs, double slowCallRateThreshold,
+                          long openDurationMs, int halfOpenProbes) {
+        this.window = new byte[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdMs = slowCallThresholdMs;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    /**
+     * Returns true if a call may go ahead. While half-open only the probe calls are let through.
+     */
+    public synchronized boolean tryAcquire(long nowMs) {
+        if (state == State.OPEN) {
+            if (nowMs - openedAtMs < openDurationMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long durationMs, long nowMs) {
+        boolean slow = durationMs >= slowCallThresholdMs;
+        if (state == State.HALF_OPEN) {
+            if (slow) {
+                open(nowMs);
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                close();
+            }
+            return;
+        }
+        record(slow ? SLOW : OK, nowMs);
+    }
+
+    public synchronized void onFailure(long nowMs) {
+        if (state == State.HALF_OPEN) {
+            open(nowMs);
+            return;
+        }
+        record(FAILED, nowMs);
+    }
+
+    /**
+     * Releases a probe slot taken by a call whose outcome says nothing about the endpoint's health.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State getState(long nowMs) {
+        if (state == State.OPEN && nowMs - openedAtMs >= openDurationMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets probes through again; 0 when not open.
+     */
+    public synchronized long remainingOpenMs(long nowMs) {
+        return state == State.OPEN ? Math.max(0, openDurationMs - (nowMs - openedAtMs)) : 0;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : failures * 100.0 / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0 : slowCalls * 100.0 / recorded;
+    }
+
+    private void record(byte outcome, long nowMs) {
+        if (recorded == window.length) {
+            byte evicted = window[next];
+            if (evicted == FAILED) {
+                failures--;
+            } else if (evicted == SLOW) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = outcome;
+        next = (next + 1) % window.length;
+        if (outcome == FAILED) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+            open(nowMs);
+        }
+    }
+
+    private void open(long nowMs) {
+        state = State.OPEN;
+        openedAtMs = nowMs;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -1,9 +1,11 @@
 package com.statusbeat.statusbeat.util;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
@@ -15,6 +17,13 @@ import java.security.SecureRandom;
 import java.security.spec.KeySpec;
 import java.util.Base64;
 
+/**
+ * AES-256-GCM encryption for tokens stored at rest.
+ *
+ * Keys are derived with PBKDF2 once and held in an in-memory keyring indexed by key version.
+ * Ciphertext layout: [format marker][key version][12-byte IV][ciphertext + auth tag].
+ * Ciphertext written before versioning ([IV][ciphertext + auth tag]) is decrypted with key version 1.
+ */
 @Slf4j
 @Component
 public class EncryptionUtil {
@@ -25,27 +34,54 @@ public class EncryptionUtil {
     private static final int ITERATION_COUNT = 600000;
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 128;
+    private static final byte FORMAT_MARKER = (byte) 0xB5;
+    private static final int HEADER_LENGTH = 2;
+    private static final int LEGACY_KEY_VERSION = 1;
+    private static final int MAX_KEY_VERSION = 255;
 
     @Value("${statusbeat.encryption.secret-key}")
     private String secretKeyString;
 
+    @Value("${statusbeat.encryption.key-version:1}")
+    private int activeKeyVersion = LEGACY_KEY_VERSION;
+
+    // Comma-separated "<version>:<secret>" pairs for keys that are still readable but no longer used to encrypt
+    @Value("${statusbeat.encryption.retired-keys:}")
+    private String retiredKeys;
+
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    private volatile SecretKey[] keyring;
+
+    @PostConstruct
+    public void init() {
+        SecretKey[] keys = getKeyring();
+        int loaded = 0;
+        for (SecretKey key : keys) {
+            if (key != null) {
+                loaded++;
+            }
+        }
+        log.info("Encryption keyring initialized with {} key(s), active version {}", loaded, activeKeyVersion);
+    }
+
     public String encrypt(String data) {
         try {
             byte[] iv = new byte[GCM_IV_LENGTH];
             secureRandom.nextBytes(iv);
             GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
 
-            SecretKey secretKey = getSecretKey();
+            SecretKey secretKey = getKeyring()[activeKeyVersion];
             Cipher cipher = Cipher.getInstance(ALGORITHM);
             cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
 
             byte[] encrypted = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
 
-            byte[] combined = new byte[iv.length + encrypted.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+            byte[] combined = new byte[HEADER_LENGTH + iv.length + encrypted.length];
+            combined[0] = FORMAT_MARKER;
+            combined[1] = (byte) activeKeyVersion;
+            System.arraycopy(iv, 0, combined, HEADER_LENGTH, iv.length);
+            System.arraycopy(encrypted, 0, combined, HEADER_LENGTH + iv.length, encrypted.length);
 
             return Base64.getEncoder().encodeToString(combined);
         } catch (Exception e) {
@@ -57,31 +93,107 @@ public class EncryptionUtil {
     public String decrypt(String encryptedData) {
         try {
             byte[] combined = Base64.getDecoder().decode(encryptedData);
+            SecretKey[] keys = getKeyring();
+
+            if (isVersioned(combined, keys)) {
+                try {
+                    return decrypt(keys[combined[1] & 0xFF], combined, HEADER_LENGTH);
+                } catch (AEADBadTagException e) {
+                    // A legacy ciphertext whose random IV happens to start with the marker bytes
+                    if (keys[LEGACY_KEY_VERSION] == null) {
+                        throw e;
+                    }
+                }
+            }
+
+            return decrypt(keys[LEGACY_KEY_VERSION], combined, 0);
+        } catch (Exception e) {
+            log.error("Error decrypting data", e);
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
 
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            byte[] encrypted = new byte[combined.length - GCM_IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-            System.arraycopy(combined, iv.length, encrypted, 0, encrypted.length);
+    /**
+     * Returns the key version a ciphertext was written with, or the legacy version for unversioned data.
+     * Useful for finding tokens that still need re-encryption after a key rotation.
+     */
+    public int getKeyVersion(String encryptedData) {
+        byte[] combined = Base64.getDecoder().decode(encryptedData);
+        return isVersioned(combined, getKeyring()) ? combined[1] & 0xFF : LEGACY_KEY_VERSION;
+    }
 
-            GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            SecretKey secretKey = getSecretKey();
+    private boolean isVersioned(byte[] combined, SecretKey[] keys) {
+        return combined.length > HEADER_LENGTH + GCM_IV_LENGTH
+                && combined[0] == FORMAT_MARKER
+                && keys[combined[1] & 0xFF] != null;
+    }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
+    private String decrypt(SecretKey secretKey, byte[] combined, int offset) throws Exception {
+        if (secretKey == null) {
+            throw new IllegalStateException("No key available for ciphertext");
+        }
 
-            byte[] decrypted = cipher.doFinal(encrypted);
-            return new String(decrypted, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            log.error("Error decrypting data", e);
-            throw new RuntimeException("Decryption failed", e);
+        GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, combined, offset, GCM_IV_LENGTH);
+
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
+
+        byte[] decrypted = cipher.doFinal(combined, offset + GCM_IV_LENGTH, combined.length - offset - GCM_IV_LENGTH);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the keyring, deriving all configured keys on first use.
+     * PBKDF2 is deliberately slow, so it must never run per encrypt/decrypt call.
+     */
+    private SecretKey[] getKeyring() {
+        SecretKey[] keys = keyring;
+        if (keys == null) {
+            synchronized (this) {
+                keys = keyring;
+                if (keys == null) {
+                    keys = buildKeyring();
+                    keyring = keys;
+                }
+            }
+        }
+        return keys;
+    }
+
+    private SecretKey[] buildKeyring() {
+        if (activeKeyVersion < 1 || activeKeyVersion > MAX_KEY_VERSION) {
+            throw new IllegalStateException("Encryption key version must be between 1 and " + MAX_KEY_VERSION);
+        }
+
+        SecretKey[] keys = new SecretKey[MAX_KEY_VERSION + 1];
+        keys[activeKeyVersion] = deriveKey(secretKeyString);
+
+        if (retiredKeys != null && !retiredKeys.isBlank()) {
+            for (String entry : retiredKeys.split(",")) {
+                int separator = entry.indexOf(':');
+                if (separator <= 0) {
+                    throw new IllegalStateException("Retired encryption keys must be formatted as <version>:<secret>");
+                }
+                int version = Integer.parseInt(entry.substring(0, separator).trim());
+                if (version < 1 || version > MAX_KEY_VERSION || version == activeKeyVersion) {
+                    throw new IllegalStateException("Invalid retired encryption key version: " + version);
+                }
+                keys[version] = deriveKey(entry.substring(separator + 1).trim());
+            }
         }
+
+        return keys;
     }
 
-    private SecretKey getSecretKey() throws Exception {
-        byte[] salt = "statusbeat-salt-2025".getBytes(StandardCharsets.UTF_8);
-        KeySpec keySpec = new PBEKeySpec(secretKeyString.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        byte[] keyBytes = factory.generateSecret(keySpec).getEncoded();
-        return new SecretKeySpec(keyBytes, SECRET_KEY_ALGORITHM);
+    private SecretKey deriveKey(String secret) {
+        try {
+            byte[] salt = "statusbeat-salt-2025".getBytes(StandardCharsets.UTF_8);
+            KeySpec keySpec = new PBEKeySpec(secret.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            byte[] keyBytes = factory.generateSecret(keySpec).getEncoded();
+            return new SecretKeySpec(keyBytes, SECRET_KEY_ALGORITHM);
+        } catch (Exception e) {
+            throw new IllegalStateException("Key derivation failed", e);
+        }
     }
 }
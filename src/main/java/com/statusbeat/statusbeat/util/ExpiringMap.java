@@ -0,0 +1,120 @@
+package com.statusbeat.statusbeat.util;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent map whose entries expire a fixed time after they are put, bounded to a maximum size.
+ *
+ * Expired entries are never returned. The owner drops them with {@link #evictExpired} on a schedule, and a
+ * put that finds the map full drops them too; if that is not enough, the tenth of the map closest to expiry
+ * goes as well. Every value that leaves the map, whether expired, evicted, replaced or removed, is handed to
+ * the eviction listener once.
+ *
+ * The TTL and size limit are read on every put, so owners can pass in their configuration fields. Thread-safe.
+ */
+public class ExpiringMap<K, V> {
+
+    private final LongSupplier ttlMs;
+    private final IntSupplier maxSize;
+    private final Consumer<? super V> onEvict;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    public ExpiringMap(LongSupplier ttlMs, IntSupplier maxSize, Consumer<? super V> onEvict) {
+        this.ttlMs = ttlMs;
+        this.maxSize = maxSize;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * Returns the value stored under the key, or null if there is none or it has expired.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.expiresAtNanos() - System.nanoTime() > 0 ? entry.value() : null;
+    }
+
+    /**
+     * Stores the value until the TTL has passed, replacing any value under the key. Returns how many unexpired
+     * entries had to be evicted to make room, so callers can tell when the limit is too small.
+     */
+    public int put(K key, V value) {
+        int evicted = entries.size() >= maxSize.getAsInt() ? evictForCapacity() : 0;
+        Entry<V> previous = entries.put(key, new Entry<>(value, System.nanoTime() + ttlMs.getAsLong() * 1_000_000L));
+        if (previous != null) {
+            onEvict.accept(previous.value());
+        }
+        return evicted;
+    }
+
+    public void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            onEvict.accept(removed.value());
+        }
+    }
+
+    public void removeIf(Predicate<? super K> keyFilter) {
+        entries.forEach((key, entry) -> {
+            if (keyFilter.test(key)) {
+                remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Drops every expired entry and returns how many there were.
+     */
+    public int evictExpired() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Map.Entry<K, Entry<V>> mapEntry : entries.entrySet()) {
+            if (mapEntry.getValue().expiresAtNanos() - now <= 0 && remove(mapEntry.getKey(), mapEntry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private int evictForCapacity() {
+        evictExpired();
+        int limit = maxSize.getAsInt();
+        if (entries.size() < limit) {
+            return 0;
+        }
+
+        int evicted = 0;
+        for (Map.Entry<K, Entry<V>> mapEntry : entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(mapEntry -> mapEntry.getValue().expiresAtNanos()))
+                .limit(Math.max(1, limit / 10))
+                .toList()) {
+            if (remove(mapEntry.getKey(), mapEntry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes the entry only if it is still the one mapped, so a concurrent replacement is never dropped.
+     */
+    private boolean remove(K key, Entry<V> entry) {
+        if (entries.remove(key, entry)) {
+            onEvict.accept(entry.value());
+            return true;
+        }
+        return false;
+    }
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+}
@@ -0,0 +1,217 @@
+package com.statusbeat.statusbeat.util;
+
+import com.statusbeat.statusbeat.constants.AppConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * A status template compiled once into literal segments and title/artist slots.
+ *
+ * Rendering fills the slots and cleans up dangling separators in a single buffer, producing exactly what
+ * the original replace-and-regex chain produced: {emoji} removed, {title} then {artist} substituted,
+ * a trailing or leading " - " dropped, whitespace runs collapsed and the result trimmed. Inputs where
+ * that chain behaves in ways the single pass can't reproduce (braces that could form a new placeholder,
+ * Unicode line separators) fall back to the chain itself. Immutable and thread-safe.
+ */
+public final class StatusTemplate {
+
+    private static final Pattern TRAILING_SEPARATOR = Pattern.compile("\\s+-\\s+$");
+    private static final Pattern LEADING_SEPARATOR = Pattern.compile("^\\s+-\\s+");
+    private static final Pattern WHITESPACE_RUN = Pattern.compile("\\s{2,}");
+
+    private enum Slot {
+        TITLE, ARTIST
+    }
+
+    private final String template;
+    private final String[] literals;
+    private final Slot[] slots;
+    private final int literalLength;
+    // A literal brace could combine with substituted text into a placeholder the chain would then replace
+    private final boolean literalBraces;
+
+    private StatusTemplate(String template, List<String> literals, List<Slot> slots) {
+        this.template = template;
+        this.literals = literals.toArray(String[]::new);
+        this.slots = slots.toArray(Slot[]::new);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+        this.literalBraces = literals.stream().anyMatch(StatusTemplate::hasBrace);
+    }
+
+    public static StatusTemplate compile(String template) {
+        String withoutEmoji = template.replace(AppConstants.PLACEHOLDER_EMOJI, "");
+        List<String> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+
+        // Titles are substituted before artists, so split on titles first, as String.replace would match them
+        int start = 0;
+        int title;
+        while ((title = withoutEmoji.indexOf(AppConstants.PLACEHOLDER_TITLE, start)) >= 0) {
+            splitArtists(withoutEmoji.substring(start, title), literals, slots);
+            slots.add(Slot.TITLE);
+            start = title + AppConstants.PLACEHOLDER_TITLE.length();
+        }
+        splitArtists(withoutEmoji.substring(start), literals, slots);
+        return new StatusTemplate(template, literals, slots);
+    }
+
+    private static void splitArtists(String text, List<String> literals, List<Slot> slots) {
+        int start = 0;
+        int artist;
+        while ((artist = text.indexOf(AppConstants.PLACEHOLDER_ARTIST, start)) >= 0) {
+            appendLiteral(text.substring(start, artist), literals, slots);
+            slots.add(Slot.ARTIST);
+            start = artist + AppConstants.PLACEHOLDER_ARTIST.length();
+        }
+        appendLiteral(text.substring(start), literals, slots);
+    }
+
+    /**
+     * Keeps literals and slots alternating: the literal before slot i is literals[i].
+     */
+    private static void appendLiteral(String literal, List<String> literals, List<Slot> slots) {
+        if (literals.size() > slots.size()) {
+            int last = literals.size() - 1;
+            literals.set(last, literals.get(last) + literal);
+        } else {
+            literals.add(literal);
+        }
+    }
+
+    public String template() {
+        return template;
+    }
+
+    /**
+     * Renders the status text; hidden fields render as empty.
+     */
+    public String render(String title, String artist, boolean showTitle, boolean showArtist) {
+        String titleText = Objects.requireNonNull(showTitle ? title : "");
+        String artistText = Objects.requireNonNull(showArtist ? artist : "");
+        if (literalBraces || hasBrace(titleText)) {
+            return renderByReplace(titleText, artistText);
+        }
+
+        StringBuilder buffer = new StringBuilder(literalLength + titleText.length() + artistText.length());
+        for (int i = 0; i < slots.length; i++) {
+            buffer.append(literals[i]).append(slots[i] == Slot.TITLE ? titleText : artistText);
+        }
+        buffer.append(literals[slots.length]);
+
+        if (hasLineSeparator(buffer)) {
+            return cleanUpByRegex(buffer.toString());
+        }
+        stripTrailingSeparator(buffer);
+        stripLeadingSeparator(buffer);
+        collapseWhitespace(buffer);
+        return buffer.toString().trim();
+    }
+
+    private String renderByReplace(String titleText, String artistText) {
+        String text = template
+                .replace(AppConstants.PLACEHOLDER_EMOJI, "")
+                .replace(AppConstants.PLACEHOLDER_TITLE, titleText)
+                .replace(AppConstants.PLACEHOLDER_ARTIST, artistText);
+        return cleanUpByRegex(text);
+    }
+
+    private static String cleanUpByRegex(String text) {
+        text = TRAILING_SEPARATOR.matcher(text).replaceAll("");
+        text = LEADING_SEPARATOR.matcher(text).replaceAll("");
+        text = WHITESPACE_RUN.matcher(text).replaceAll(" ");
+        return text.trim();
+    }
+
+    /**
+     * \s+-\s+$: whitespace, a dash and whitespace at the very end.
+     */
+    private static void stripTrailingSeparator(StringBuilder buffer) {
+        int dashEnd = buffer.length();
+        while (dashEnd > 0 && isWhitespace(buffer.charAt(dashEnd - 1))) {
+            dashEnd--;
+        }
+        if (dashEnd == buffer.length() || dashEnd == 0 || buffer.charAt(dashEnd - 1) != '-') {
+            return;
+        }
+        int dash = dashEnd - 1;
+        int start = dash;
+        while (start > 0 && isWhitespace(buffer.charAt(start - 1))) {
+            start--;
+        }
+        if (start < dash) {
+            buffer.setLength(start);
+        }
+    }
+
+    /**
+     * ^\s+-\s+: whitespace, a dash and whitespace at the very start.
+     */
+    private static void stripLeadingSeparator(StringBuilder buffer) {
+        int length = buffer.length();
+        int dash = 0;
+        while (dash < length && isWhitespace(buffer.charAt(dash))) {
+            dash++;
+        }
+        if (dash == 0 || dash == length || buffer.charAt(dash) != '-') {
+            return;
+        }
+        int end = dash + 1;
+        while (end < length && isWhitespace(buffer.charAt(end))) {
+            end++;
+        }
+        if (end > dash + 1) {
+            buffer.delete(0, end);
+        }
+    }
+
+    /**
+     * \s{2,} to a single space; a lone whitespace character is kept as it is.
+     */
+    private static void collapseWhitespace(StringBuilder buffer) {
+        int length = buffer.length();
+        int write = 0;
+        int read = 0;
+        while (read < length) {
+            char c = buffer.charAt(read);
+            if (!isWhitespace(c)) {
+                buffer.setCharAt(write++, c);
+                read++;
+                continue;
+            }
+            int runEnd = read + 1;
+            while (runEnd < length && isWhitespace(buffer.charAt(runEnd))) {
+                runEnd++;
+            }
+            buffer.setCharAt(write++, runEnd - read > 1 ? ' ' : c);
+            read = runEnd;
+        }
+        buffer.setLength(write);
+    }
+
+    /**
+     * The regex \s class: space, tab, newline, vertical tab, form feed and carriage return.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Line terminators that $ stops before but \s does not match.
+     */
+    private static boolean hasLineSeparator(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasBrace(String text) {
+        return text.indexOf('{') >= 0 || text.indexOf('}') >= 0;
+    }
+}
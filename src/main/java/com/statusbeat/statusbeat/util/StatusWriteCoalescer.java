@@ -0,0 +1,116 @@
+package com.statusbeat.statusbeat.util;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Per-user outbound slot for status writes.
+ *
+ * Writes for one key run one at a time. A write that was overtaken by a newer one while waiting its turn
+ * is dropped, so only the newest pending status goes out. A write whose text and emoji match the last
+ * status the remote side acknowledged is suppressed, even if it asks for a later expiration, until the
+ * acknowledged expiration comes within the refresh threshold; the write that goes out then extends it.
+ *
+ * The acknowledged status is only what we last wrote; callers should {@link #forgetIf forget} it when
+ * they see the remote status change under us. Thread-safe.
+ */
+public class StatusWriteCoalescer {
+
+    public enum Outcome {
+        SENT, SUPPRESSED, SUPERSEDED
+    }
+
+    /**
+     * A status as written: expiration is a Unix timestamp in seconds, or null for no expiration.
+     */
+    public record Status(String text, String emoji, Long expiration) {
+    }
+
+    @FunctionalInterface
+    public interface Write<X extends Exception> {
+        void send(Status status) throws X;
+    }
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Writes the status unless it is already in place or a newer write for the key is queued.
+     *
+     * @param refreshThresholdSeconds how close to expiring an unchanged status may get before a later
+     *                                expiration is written out
+     * @param force                   write even if the status is already in place
+     */
+    public <X extends Exception> Outcome submit(String key, Status status, long refreshThresholdSeconds,
+                                                boolean force, Write<X> write) throws X {
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+        long ticket = slot.tickets.incrementAndGet();
+
+        slot.lock.lock();
+        try {
+            if (ticket != slot.tickets.get()) {
+                return Outcome.SUPERSEDED;
+            }
+            if (!force && covers(slot.acknowledged.get(), status, refreshThresholdSeconds)) {
+                return Outcome.SUPPRESSED;
+            }
+
+            // Unknown until the write is confirmed; a failed write may or may not have landed
+            slot.acknowledged.set(null);
+            write.send(status);
+            slot.acknowledged.set(status);
+            return Outcome.SENT;
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the last acknowledged status for the key, or null if none is known.
+     */
+    public Status acknowledged(String key) {
+        Slot slot = slots.get(key);
+        return slot != null ? slot.acknowledged.get() : null;
+    }
+
+    /**
+     * Drops the acknowledged status if it matches the predicate, so the next write goes out in full.
+     */
+    public void forgetIf(String key, Predicate<Status> stale) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            return;
+        }
+        Status current = slot.acknowledged.get();
+        if (current != null && stale.test(current)) {
+            slot.acknowledged.compareAndSet(current, null);
+        }
+    }
+
+    private static boolean covers(Status acknowledged, Status requested, long refreshThresholdSeconds) {
+        if (acknowledged == null
+                || !Objects.equals(acknowledged.text(), requested.text())
+                || !Objects.equals(acknowledged.emoji(), requested.emoji())) {
+            return false;
+        }
+        if (requested.expiration() == null || acknowledged.expiration() == null) {
+            return requested.expiration() == null && acknowledged.expiration() == null;
+        }
+        if (acknowledged.expiration() >= requested.expiration()) {
+            return true;
+        }
+        // A later expiration is only worth a write once the one in place is about to run out
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        return acknowledged.expiration() - nowSeconds > refreshThresholdSeconds;
+    }
+
+    private static final class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicLong tickets = new AtomicLong();
+        private final AtomicReference<Status> acknowledged = new AtomicReference<>();
+    }
+}
@@ -0,0 +1,184 @@
+package com.statusbeat.statusbeat.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding at most one deadline per key.
+ *
+ * Four levels of 256 slots cover 2^32 ticks. Timers live in intrusive doubly linked slot lists,
+ * so schedule and cancel are O(1); far-away timers cascade down a level as the wheel turns.
+ * Not thread-safe: callers must serialize access.
+ */
+public class TimingWheel<K> {
+
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Node<K>[][] levels;
+    private final Map<K, Node<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long startTick) {
+        this.currentTick = startTick;
+        this.levels = new Node[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                levels[level][slot] = Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Sets the deadline of a key, replacing any existing one. Deadlines in the past fire on the next advance.
+     */
+    public void schedule(K key, long deadlineTick) {
+        Node<K> node = timers.get(key);
+        if (node != null) {
+            node.unlink();
+        } else {
+            node = new Node<>(key);
+            timers.put(key, node);
+        }
+        node.deadlineTick = deadlineTick;
+        place(node);
+    }
+
+    /**
+     * Removes the deadline of a key. Returns false if the key had none.
+     */
+    public boolean cancel(K key) {
+        Node<K> node = timers.remove(key);
+        if (node == null) {
+            return false;
+        }
+        node.unlink();
+        return true;
+    }
+
+    public boolean contains(K key) {
+        return timers.containsKey(key);
+    }
+
+    /**
+     * Returns the deadline tick of a key, or -1 if it has none.
+     */
+    public long deadlineOf(K key) {
+        Node<K> node = timers.get(key);
+        return node != null ? node.deadlineTick : -1;
+    }
+
+    public int size() {
+        return timers.size();
+    }
+
+    public long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Turns the wheel through every tick up to and including {@code nowTick},
+     * removing each expired key and handing it to the consumer.
+     */
+    public void advance(long nowTick, Consumer<K> expired) {
+        while (currentTick <= nowTick) {
+            int index = (int) (currentTick & SLOT_MASK);
+
+            // Entering a new level-0 revolution: pull the matching slots of higher levels down
+            if (index == 0) {
+                for (int level = 1; level < LEVELS; level++) {
+                    int levelIndex = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                    cascade(level, levelIndex);
+                    if (levelIndex != 0) {
+                        break;
+                    }
+                }
+            }
+
+            Node<K> head = levels[0][index];
+            while (head.next != head) {
+                Node<K> node = head.next;
+                node.unlink();
+                timers.remove(node.key);
+                expired.accept(node.key);
+            }
+
+            currentTick++;
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Node<K> head = levels[level][index];
+        Node<K> node = head.next;
+        head.next = head;
+        head.prev = head;
+
+        while (node != head) {
+            Node<K> next = node.next;
+            node.next = null;
+            node.prev = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Node<K> node) {
+        long delta = node.deadlineTick - currentTick;
+        long expires = node.deadlineTick;
+
+        if (delta < 0) {
+            expires = currentTick;
+            delta = 0;
+        } else if (delta > MAX_DELTA) {
+            expires = currentTick + MAX_DELTA;
+            delta = MAX_DELTA;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+
+        int slot = (int) ((expires >>> (SLOT_BITS * level)) & SLOT_MASK);
+        node.linkBefore(levels[level][slot]);
+    }
+
+    private static final class Node<K> {
+        private final K key;
+        private long deadlineTick;
+        private Node<K> prev;
+        private Node<K> next;
+
+        private Node(K key) {
+            this.key = key;
+        }
+
+        private static <K> Node<K> sentinel() {
+            Node<K> head = new Node<>(null);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+
+        private void linkBefore(Node<K> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
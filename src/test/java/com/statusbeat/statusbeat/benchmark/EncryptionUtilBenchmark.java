@@ -0,0 +1,41 @@
+package com.statusbeat.statusbeat.benchmark;
+
+import com.statusbeat.statusbeat.util.EncryptionUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Opt-in decrypt latency measurement; excluded from the regular test task, run with ./gradlew benchmark.
+ * Reports the average instead of asserting on it, since wall-clock timings depend on the machine.
+ */
+@Tag("benchmark")
+@DisplayName("EncryptionUtil benchmark")
+class EncryptionUtilBenchmark {
+
+    private static final int ITERATIONS = 5_000;
+
+    @Test
+    @DisplayName("decrypt latency once the key is derived")
+    void decryptLatency(TestReporter reporter) {
+        EncryptionUtil encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "secretKeyString", "benchmark-secret-key");
+        encryptionUtil.init();
+        String encrypted = encryptionUtil.encrypt("BQDnV0x1234567890abcdefghijklmnop");
+
+        // Warm up the JIT and cipher provider
+        for (int i = 0; i < ITERATIONS; i++) {
+            encryptionUtil.decrypt(encrypted);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encryptionUtil.decrypt(encrypted);
+        }
+        long averageNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        reporter.publishEntry("decrypt.averageNanos", String.valueOf(averageNanos));
+    }
+}
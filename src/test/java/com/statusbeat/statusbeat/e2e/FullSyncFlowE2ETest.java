@@ -14,13 +14,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -46,6 +50,12 @@ class FullSyncFlowE2ETest {
     @Autowired
     private MusicSyncService musicSyncService;
 
+    @Autowired
+    private SyncStateWriter syncStateWriter;
+
+    @MockitoSpyBean
+    private PollScheduler pollScheduler;
+
     @MockitoBean
     private SpotifyService spotifyService;
 
@@ -80,11 +90,11 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(track);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Slack status was updated
             verify(slackService).updateUserStatus(
-                    any(), eq("Bohemian Rhapsody"), eq("Queen"), any(), any());
+                    any(), any(), eq("Bohemian Rhapsody"), eq("Queen"), any(), any());
 
             // Verify: User's currently playing info was updated
             User updatedUser = userRepository.findById(user.getId()).orElseThrow();
@@ -102,7 +112,7 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(null);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was cleared
             verify(slackService).clearUserStatus(any());
@@ -124,11 +134,11 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(newTrack);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was updated with new track
             verify(slackService).updateUserStatus(
-                    any(), eq("Stairway to Heaven"), eq("Led Zeppelin"), any(), any());
+                    any(), any(), eq("Stairway to Heaven"), eq("Led Zeppelin"), any(), any());
 
             // Verify: User's track info was updated
             User updatedUser = userRepository.findById(user.getId()).orElseThrow();
@@ -148,10 +158,10 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(sameTrack);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was not updated
-            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any(), any());
         }
     }
 
@@ -167,7 +177,7 @@ class FullSyncFlowE2ETest {
             when(slackService.hasManualStatusChange(any())).thenReturn(true);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Sync was stopped
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
@@ -196,10 +206,10 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(track);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was updated
-            verify(slackService).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(any(), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -212,10 +222,10 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(track);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was not updated (but was cleared since previous track was set)
-            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any(), any());
         }
     }
 
@@ -234,10 +244,10 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(track);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Status was updated
-            verify(slackService).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(any(), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -248,7 +258,7 @@ class FullSyncFlowE2ETest {
             when(timezoneService.isWithinWorkingHours(any(), any())).thenReturn(false);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Spotify was not called
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
@@ -272,7 +282,7 @@ class FullSyncFlowE2ETest {
             userSettingsRepository.save(settings);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Spotify was not called
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
@@ -289,7 +299,7 @@ class FullSyncFlowE2ETest {
             userSettingsRepository.save(settings);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Spotify was not called
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
@@ -308,7 +318,7 @@ class FullSyncFlowE2ETest {
             userSettingsRepository.save(settings);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Spotify was not called
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
@@ -330,7 +340,7 @@ class FullSyncFlowE2ETest {
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(track);
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Both users were processed
             verify(spotifyService, times(2)).getCurrentlyPlayingTrack(any());
@@ -351,7 +361,7 @@ class FullSyncFlowE2ETest {
                     .thenReturn(TestDataFactory.createTrackInfo());
 
             // Execute
-            musicSyncService.syncMusicStatus();
+            syncAllUsers();
 
             // Verify: Second user was still processed
             verify(spotifyService, times(2)).getCurrentlyPlayingTrack(any());
@@ -360,6 +370,28 @@ class FullSyncFlowE2ETest {
 
     // Helper methods
 
+    /**
+     * Makes every stored user due and runs one polling tick, then waits until the pipeline has rescheduled
+     * or dropped each sync candidate and flushes the state they left behind.
+     */
+    private void syncAllUsers() {
+        List<String> userIds = userRepository.findAll().stream().map(User::getId).toList();
+        List<String> candidateIds = userService.findSyncCandidates(userIds).stream().map(User::getId).toList();
+        userIds.forEach(userId -> pollScheduler.schedule(userId, 0));
+        clearInvocations(pollScheduler);
+
+        musicSyncService.pollDueUsers();
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> candidateIds.stream().allMatch(this::isRescheduled));
+        syncStateWriter.flush();
+    }
+
+    private boolean isRescheduled(String userId) {
+        return mockingDetails(pollScheduler).getInvocations().stream()
+                .filter(invocation -> Set.of("schedule", "cancel").contains(invocation.getMethod().getName()))
+                .anyMatch(invocation -> userId.equals(invocation.getArgument(0)));
+    }
+
     private User createActiveUser() {
         User user = TestDataFactory.createUserWithSpotify();
         user.setActive(true);
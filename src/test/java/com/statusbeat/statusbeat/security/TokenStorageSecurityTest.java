@@ -153,8 +153,8 @@ class TokenStorageSecurityTest extends IntegrationTestBase {
 
             byte[] decoded = Base64.getDecoder().decode(savedUser.getEncryptedSpotifyAccessToken());
 
-            // GCM format: 12-byte IV + 10-byte ciphertext for "test-token" + 16-byte auth tag = 38 bytes
-            assertThat(decoded.length).isEqualTo(38);
+            // Versioned GCM format: 2-byte header + 12-byte IV + 10-byte ciphertext for "test-token" + 16-byte auth tag = 40 bytes
+            assertThat(decoded.length).isEqualTo(40);
         }
     }
 
@@ -0,0 +1,140 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.service.InstallationCache;
+import com.statusbeat.statusbeat.service.InstallationCache.Kind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("InstallationCache")
+class InstallationCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InstallationCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new InstallationCache(meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Nested
+    @DisplayName("get")
+    class GetTests {
+
+        @Test
+        @DisplayName("should load once and serve repeated lookups from the cache")
+        void shouldServeRepeatedLookupsFromCache() {
+            assertThat(cache.get(Kind.BOT_TOKEN, "T1", null, loader("xoxb-1"))).isEqualTo("xoxb-1");
+            assertThat(cache.get(Kind.BOT_TOKEN, "T1", null, loader("xoxb-1"))).isEqualTo("xoxb-1");
+
+            assertThat(loads).hasValue(1);
+            assertThat(requests("hit")).isEqualTo(1);
+            assertThat(requests("miss")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should keep installers of different users apart")
+        void shouldKeyInstallersByUser() {
+            cache.get(Kind.INSTALLER, "T1", "U1", loader("installer-1"));
+
+            assertThat(cache.get(Kind.INSTALLER, "T1", "U2", loader("installer-2"))).isEqualTo("installer-2");
+            assertThat(loads).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("should not cache missing installations")
+        void shouldNotCacheMisses() {
+            cache.get(Kind.BOT, "T1", null, loader(null));
+            cache.get(Kind.BOT, "T1", null, loader(null));
+
+            assertThat(loads).hasValue(2);
+            assertThat(cache.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should load again once the entry has expired")
+        void shouldReloadAfterTtl() {
+            ReflectionTestUtils.setField(cache, "ttlMs", 0L);
+            cache.get(Kind.BOT, "T1", null, loader("bot"));
+            cache.get(Kind.BOT, "T1", null, loader("bot"));
+
+            assertThat(loads).hasValue(2);
+        }
+    }
+
+    @Nested
+    @DisplayName("invalidate")
+    class InvalidateTests {
+
+        @Test
+        @DisplayName("should drop every record of the workspace")
+        void shouldDropWorkspace() {
+            cache.get(Kind.BOT, "T1", null, loader("bot"));
+            cache.get(Kind.INSTALLER, "T1", "U1", loader("installer"));
+            cache.get(Kind.BOT, "T2", null, loader("other-bot"));
+
+            cache.invalidate("T1", null);
+
+            assertThat(cache.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should drop the user's installers in any workspace")
+        void shouldDropUser() {
+            cache.get(Kind.INSTALLER, "T1", "U1", loader("installer"));
+
+            cache.invalidate("T9", "U1");
+
+            assertThat(cache.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should not cache a record loaded while the installation was being saved")
+        void shouldNotCacheRacingLoad() {
+            cache.get(Kind.BOT_TOKEN, "T1", null, () -> {
+                cache.invalidate("T1", null);
+                return "xoxb-old";
+            });
+
+            assertThat(cache.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("capacity")
+    class CapacityTests {
+
+        @Test
+        @DisplayName("should evict the oldest entries when full")
+        void shouldEvictWhenFull() {
+            ReflectionTestUtils.setField(cache, "maxSize", 10);
+            for (int i = 0; i < 11; i++) {
+                cache.get(Kind.BOT, "T" + i, null, loader("bot-" + i));
+            }
+
+            assertThat(cache.size()).isLessThanOrEqualTo(10);
+        }
+    }
+
+    private <T> Supplier<T> loader(T value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("statusbeat.installation.cache.requests").tag("result", result).counter().count();
+    }
+}
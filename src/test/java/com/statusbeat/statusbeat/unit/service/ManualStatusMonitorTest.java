@@ -0,0 +1,287 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.ManualStatusMonitor;
+import com.statusbeat.statusbeat.service.PollIntervalPolicy;
+import com.statusbeat.statusbeat.service.SlackService;
+import com.statusbeat.statusbeat.service.SyncCandidateSource;
+import com.statusbeat.statusbeat.service.SyncPartitionService;
+import com.statusbeat.statusbeat.service.UserService;
+import com.statusbeat.statusbeat.testutil.TestBase;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ManualStatusMonitor")
+class ManualStatusMonitorTest extends TestBase {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SlackService slackService;
+
+    @Mock
+    private PollIntervalPolicy pollIntervalPolicy;
+
+    @Mock
+    private SyncPartitionService syncPartitionService;
+
+    @Mock
+    private SyncCandidateSource syncCandidateSource;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ManualStatusMonitor monitor;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new ManualStatusMonitor(userService, slackService, pollIntervalPolicy, syncPartitionService,
+                syncCandidateSource, meterRegistry);
+        ReflectionTestUtils.setField(monitor, "confirmDelayMs", 10L);
+        user = TestDataFactory.createUserWithCurrentlyPlaying();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.shutdown();
+    }
+
+    @Nested
+    @DisplayName("onStatusChanged")
+    class OnStatusChangedTests {
+
+        @Test
+        @DisplayName("should stop sync when the user set their own status")
+        void shouldStopSyncOnManualStatus() {
+            when(userService.findBySlackUserId(user.getSlackUserId())).thenReturn(Optional.of(user));
+            when(userService.getUserSettings(user.getId()))
+                    .thenReturn(Optional.of(TestDataFactory.createUserSettingsWithSyncActive(user.getId())));
+            when(slackService.isManualStatus(user, "In a meeting")).thenReturn(true);
+
+            monitor.onStatusChanged(user.getSlackUserId(), "In a meeting");
+
+            verify(userService, timeout(5000)).stopSync(user.getId());
+            verify(userService).setManualStatusFlag(user.getId(), true);
+            verify(pollIntervalPolicy).reset(user.getId());
+            assertThat(meterRegistry.get("statusbeat.slack.status.manual.detected").tag("source", "event")
+                    .counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should leave sync running when the event echoes our own status")
+        void shouldIgnoreOwnStatus() {
+            when(userService.findBySlackUserId(user.getSlackUserId())).thenReturn(Optional.of(user));
+            when(userService.getUserSettings(user.getId()))
+                    .thenReturn(Optional.of(TestDataFactory.createUserSettingsWithSyncActive(user.getId())));
+            when(slackService.isManualStatus(user, user.getLastSetStatusText())).thenReturn(false);
+
+            monitor.onStatusChanged(user.getSlackUserId(), user.getLastSetStatusText());
+
+            verify(slackService, timeout(5000)).isManualStatus(user, user.getLastSetStatusText());
+            verify(userService, never()).stopSync(any());
+        }
+
+        @Test
+        @DisplayName("should ignore users whose sync is not active")
+        void shouldIgnoreInactiveSync() {
+            when(userService.findBySlackUserId(user.getSlackUserId())).thenReturn(Optional.of(user));
+            when(userService.getUserSettings(user.getId()))
+                    .thenReturn(Optional.of(TestDataFactory.createUserSettings(user.getId())));
+
+            monitor.onStatusChanged(user.getSlackUserId(), "In a meeting");
+
+            verify(userService, timeout(5000)).getUserSettings(user.getId());
+            verify(slackService, never()).isManualStatus(any(), any());
+        }
+
+        @Test
+        @DisplayName("should not look up the user when the status was cleared")
+        void shouldIgnoreClearedStatus() {
+            monitor.onStatusChanged(user.getSlackUserId(), "");
+
+            verify(slackService).observeStatus(user.getSlackUserId(), "");
+            verifyNoInteractions(userService);
+            assertThat(meterRegistry.get("statusbeat.slack.status.events").counter().count()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("isPollCheckDue")
+    class IsPollCheckDueTests {
+
+        @Test
+        @DisplayName("should check once per reconcile interval when events are enabled")
+        void shouldThrottleChecks() {
+            assertThat(monitor.isPollCheckDue(user)).isTrue();
+            assertThat(monitor.isPollCheckDue(user)).isFalse();
+
+            ReflectionTestUtils.setField(monitor, "reconcileIntervalMs", 0L);
+
+            assertThat(monitor.isPollCheckDue(user)).isTrue();
+        }
+
+        @Test
+        @DisplayName("should check every cycle when events are disabled")
+        void shouldCheckEveryCycleWithoutEvents() {
+            ReflectionTestUtils.setField(monitor, "eventsEnabled", false);
+            ReflectionTestUtils.setField(monitor, "reconcileMode", "user");
+
+            assertThat(monitor.isPollCheckDue(user)).isTrue();
+            assertThat(monitor.isPollCheckDue(user)).isTrue();
+        }
+
+        @Test
+        @DisplayName("should skip users whose team was swept recently")
+        void shouldSkipSweptTeams() {
+            candidates(user);
+            when(syncPartitionService.owns(user.getId())).thenReturn(true);
+            when(slackService.getTeamStatusTexts(user.getSlackTeamId())).thenReturn(Map.of());
+
+            monitor.reconcileTeams().join();
+
+            assertThat(monitor.isPollCheckDue(user)).isFalse();
+        }
+
+        @Test
+        @DisplayName("should keep checking users whose team could not be listed")
+        void shouldCheckUnlistedTeams() {
+            candidates(user);
+            when(syncPartitionService.owns(user.getId())).thenReturn(true);
+            when(slackService.getTeamStatusTexts(user.getSlackTeamId())).thenReturn(null);
+
+            monitor.reconcileTeams().join();
+
+            assertThat(monitor.isPollCheckDue(user)).isTrue();
+        }
+    }
+
+    @Nested
+    @DisplayName("reconcileTeams")
+    class ReconcileTeamsTests {
+
+        @Test
+        @DisplayName("should list each team once and stop sync for manual statuses")
+        void shouldSweepTeams() {
+            User teammate = TestDataFactory.createUserWithCurrentlyPlaying();
+            teammate.setSlackTeamId(user.getSlackTeamId());
+            candidates(user, teammate);
+            when(syncPartitionService.owns(any())).thenReturn(true);
+            when(slackService.getTeamStatusTexts(user.getSlackTeamId())).thenReturn(Map.of(
+                    user.getSlackUserId(), "In a meeting",
+                    teammate.getSlackUserId(), teammate.getLastSetStatusText()));
+            when(slackService.isManualStatus(user, "In a meeting")).thenReturn(true);
+            when(slackService.isManualStatus(teammate, teammate.getLastSetStatusText())).thenReturn(false);
+            when(userService.findBySlackUserId(user.getSlackUserId())).thenReturn(Optional.of(user));
+            when(userService.getUserSettings(user.getId()))
+                    .thenReturn(Optional.of(TestDataFactory.createUserSettingsWithSyncActive(user.getId())));
+
+            int detected = monitor.reconcileTeams().join();
+
+            assertThat(detected).isEqualTo(1);
+            verify(slackService).getTeamStatusTexts(user.getSlackTeamId());
+            verify(userService).stopSync(user.getId());
+            verify(userService, never()).stopSync(teammate.getId());
+            assertThat(meterRegistry.get("statusbeat.slack.status.manual.detected").tag("source", "team_sweep")
+                    .counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should not confirm statuses StatusBeat wrote after the listing")
+        void shouldRecheckFreshUser() {
+            User fresh = TestDataFactory.createUserWithCurrentlyPlaying();
+            fresh.setId(user.getId());
+            fresh.setSlackUserId(user.getSlackUserId());
+            fresh.setLastSetStatusText("Next Song - Next Artist");
+            candidates(user);
+            when(syncPartitionService.owns(user.getId())).thenReturn(true);
+            when(slackService.getTeamStatusTexts(user.getSlackTeamId()))
+                    .thenReturn(Map.of(user.getSlackUserId(), "Next Song - Next Artist"));
+            when(slackService.isManualStatus(user, "Next Song - Next Artist")).thenReturn(true);
+            when(userService.findBySlackUserId(user.getSlackUserId())).thenReturn(Optional.of(fresh));
+            when(userService.getUserSettings(user.getId()))
+                    .thenReturn(Optional.of(TestDataFactory.createUserSettingsWithSyncActive(user.getId())));
+            when(slackService.isManualStatus(fresh, "Next Song - Next Artist")).thenReturn(false);
+
+            assertThat(monitor.reconcileTeams().join()).isZero();
+            verify(userService, never()).stopSync(any());
+        }
+
+        @Test
+        @DisplayName("should do nothing in per-user mode")
+        void shouldSkipInUserMode() {
+            ReflectionTestUtils.setField(monitor, "reconcileMode", "user");
+
+            assertThat(monitor.reconcileTeams().join()).isZero();
+            verifyNoInteractions(userService, slackService, syncCandidateSource);
+        }
+
+        @Test
+        @DisplayName("should only sweep owned candidates and close their cursor")
+        void shouldSweepOwnedCandidates() {
+            AtomicBoolean closed = new AtomicBoolean();
+            when(syncCandidateSource.stream(any())).thenAnswer(invocation -> {
+                Predicate<String> owns = invocation.getArgument(0);
+                return Stream.of(user).filter(candidate -> owns.test(candidate.getId()))
+                        .onClose(() -> closed.set(true));
+            });
+            when(syncPartitionService.owns(user.getId())).thenReturn(false);
+
+            assertThat(monitor.reconcileTeams().join()).isZero();
+            verify(slackService, never()).getTeamStatusTexts(any());
+            assertThat(closed).isTrue();
+        }
+
+        @Test
+        @DisplayName("should return before workspaces are listed and skip ones still being swept")
+        void shouldSweepTeamsInBackground() {
+            candidates(user);
+            when(syncPartitionService.owns(user.getId())).thenReturn(true);
+            CountDownLatch release = new CountDownLatch(1);
+            when(slackService.getTeamStatusTexts(user.getSlackTeamId())).thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return Map.of();
+            });
+
+            CompletableFuture<Integer> first = monitor.reconcileTeams();
+            await().atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> verify(slackService).getTeamStatusTexts(user.getSlackTeamId()));
+            CompletableFuture<Integer> second = monitor.reconcileTeams();
+
+            assertThat(second.join()).isZero();
+            assertThat(first).isNotDone();
+            release.countDown();
+            assertThat(first.join()).isZero();
+            verify(slackService, times(1)).getTeamStatusTexts(user.getSlackTeamId());
+        }
+    }
+
+    private void candidates(User... users) {
+        when(syncCandidateSource.stream(any())).thenAnswer(invocation -> {
+            Predicate<String> owns = invocation.getArgument(0);
+            return Stream.of(users).filter(candidate -> owns.test(candidate.getId()));
+        });
+    }
+}
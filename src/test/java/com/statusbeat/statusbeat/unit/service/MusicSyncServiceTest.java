@@ -1,5 +1,8 @@
 package com.statusbeat.statusbeat.unit.service;
 
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
+import com.statusbeat.statusbeat.exception.SpotifyRateLimitException;
 import com.statusbeat.statusbeat.model.CurrentlyPlayingTrackInfo;
 import com.statusbeat.statusbeat.model.SyncContentType;
 import com.statusbeat.statusbeat.model.User;
@@ -7,6 +10,8 @@ import com.statusbeat.statusbeat.model.UserSettings;
 import com.statusbeat.statusbeat.service.*;
 import com.statusbeat.statusbeat.testutil.TestBase;
 import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,10 +19,18 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -36,18 +49,51 @@ class MusicSyncServiceTest extends TestBase {
     @Mock
     private TimezoneService timezoneService;
 
+    @Mock
+    private SyncPartitionService syncPartitionService;
+
+    private PollScheduler pollScheduler;
+
+    private SyncPipeline syncPipeline;
+
+    @Mock
+    private SlackStatusRetryQueue slackStatusRetryQueue;
+
+    @Mock
+    private ManualStatusMonitor manualStatusMonitor;
+
+    @Mock
+    private SyncStateWriter syncStateWriter;
+
+    @Mock
+    private SyncCandidateSource syncCandidateSource;
+
     private MusicSyncService musicSyncService;
 
     @BeforeEach
     void setUp() {
-        musicSyncService = new MusicSyncService(userService, spotifyService, slackService, timezoneService);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pollScheduler = spy(new PollScheduler(meterRegistry));
+        syncPipeline = new SyncPipeline(meterRegistry);
+        musicSyncService = new MusicSyncService(userService, spotifyService, slackService, timezoneService,
+                new SyncExecutor(meterRegistry), pollScheduler, new PollIntervalPolicy(meterRegistry),
+                syncPartitionService, syncPipeline, slackStatusRetryQueue, manualStatusMonitor, syncStateWriter,
+                syncCandidateSource);
+        musicSyncService.startPipeline();
+        lenient().when(syncPartitionService.owns(any())).thenReturn(true);
+        lenient().when(manualStatusMonitor.isPollCheckDue(any())).thenReturn(true);
         ReflectionTestUtils.setField(musicSyncService, "pollingIntervalMs", 10000L);
         ReflectionTestUtils.setField(musicSyncService, "expirationOverheadMs", 120000L);
     }
 
+    @AfterEach
+    void tearDown() {
+        syncPipeline.shutdown();
+    }
+
     @Nested
-    @DisplayName("syncMusicStatus")
-    class SyncMusicStatusTests {
+    @DisplayName("sync cycle")
+    class SyncCycleTests {
 
         @Test
         @DisplayName("should sync all active users")
@@ -57,17 +103,58 @@ class MusicSyncServiceTest extends TestBase {
             UserSettings settings1 = TestDataFactory.createUserSettingsWithSyncActive(user1.getId());
             UserSettings settings2 = TestDataFactory.createUserSettingsWithSyncActive(user2.getId());
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user1, user2));
-            when(userService.getUserSettings(user1.getId())).thenReturn(Optional.of(settings1));
-            when(userService.getUserSettings(user2.getId())).thenReturn(Optional.of(settings2));
+            when(userService.getUserSettingsByUserIds(List.of(user1.getId(), user2.getId())))
+                    .thenReturn(Map.of(user1.getId(), settings1, user2.getId(), settings2));
             when(slackService.hasManualStatusChange(any())).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(null);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user1, user2);
 
             verify(spotifyService, times(2)).getCurrentlyPlayingTrack(any());
         }
 
+        @Test
+        @DisplayName("should load settings one batch of users at a time")
+        void shouldLoadSettingsPerBatch() {
+            ReflectionTestUtils.setField(musicSyncService, "candidateBatchSize", 1);
+            User user1 = TestDataFactory.createUserWithSpotify();
+            User user2 = TestDataFactory.createUserWithSpotify();
+            UserSettings settings1 = TestDataFactory.createUserSettingsWithSyncActive(user1.getId());
+            UserSettings settings2 = TestDataFactory.createUserSettingsWithSyncActive(user2.getId());
+
+            when(userService.getUserSettingsByUserIds(List.of(user1.getId())))
+                    .thenReturn(Map.of(user1.getId(), settings1));
+            when(userService.getUserSettingsByUserIds(List.of(user2.getId())))
+                    .thenReturn(Map.of(user2.getId(), settings2));
+            when(slackService.hasManualStatusChange(any())).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(any())).thenReturn(null);
+
+            syncNow(user1, user2);
+
+            verify(spotifyService).getCurrentlyPlayingTrack(user1);
+            verify(spotifyService).getCurrentlyPlayingTrack(user2);
+        }
+
+        @Test
+        @DisplayName("should load settings once per cycle and hand them to the Slack write")
+        void shouldLoadSettingsOncePerCycle() {
+            User user = TestDataFactory.createUserWithSpotify();
+            user.setCurrentlyPlayingSongId(null);
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
+
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
+
+            syncNow(user);
+
+            verify(userService).getUserSettingsByUserIds(List.of(user.getId()));
+            verify(userService, never()).getUserSettings(any());
+            verify(slackService).updateUserStatus(eq(user), eq(settings), any(), any(), any(), any());
+        }
+
         @Test
         @DisplayName("should continue syncing other users when one fails")
         void shouldContinueOnUserError() {
@@ -76,26 +163,24 @@ class MusicSyncServiceTest extends TestBase {
             UserSettings settings1 = TestDataFactory.createUserSettingsWithSyncActive(user1.getId());
             UserSettings settings2 = TestDataFactory.createUserSettingsWithSyncActive(user2.getId());
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user1, user2));
-            when(userService.getUserSettings(user1.getId())).thenReturn(Optional.of(settings1));
-            when(userService.getUserSettings(user2.getId())).thenReturn(Optional.of(settings2));
+            when(userService.getUserSettingsByUserIds(List.of(user1.getId(), user2.getId())))
+                    .thenReturn(Map.of(user1.getId(), settings1, user2.getId(), settings2));
             when(slackService.hasManualStatusChange(any())).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user1)).thenThrow(new RuntimeException("Error"));
             when(spotifyService.getCurrentlyPlayingTrack(user2)).thenReturn(null);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user1, user2);
 
             // Should still try to sync user2
             verify(spotifyService).getCurrentlyPlayingTrack(user2);
         }
 
         @Test
-        @DisplayName("should handle empty active users list")
-        void shouldHandleEmptyUsersList() {
-            when(userService.findAllActiveUsers()).thenReturn(List.of());
-
-            musicSyncService.syncMusicStatus();
+        @DisplayName("should do nothing when no user is due")
+        void shouldHandleNoDueUsers() {
+            musicSyncService.pollDueUsers();
 
+            verify(userService, never()).findSyncCandidates(any());
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
     }
@@ -109,9 +194,8 @@ class MusicSyncServiceTest extends TestBase {
         void shouldSkipUserWithoutSpotifyToken() {
             User user = TestDataFactory.createUser();
             user.setEncryptedSpotifyAccessToken(null);
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -120,9 +204,8 @@ class MusicSyncServiceTest extends TestBase {
         @DisplayName("should skip user with invalidated token")
         void shouldSkipUserWithInvalidatedToken() {
             User user = TestDataFactory.createInvalidatedUser();
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -131,10 +214,10 @@ class MusicSyncServiceTest extends TestBase {
         @DisplayName("should skip user without settings")
         void shouldSkipUserWithoutSettings() {
             User user = TestDataFactory.createUserWithSpotify();
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.empty());
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of());
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -145,10 +228,10 @@ class MusicSyncServiceTest extends TestBase {
             User user = TestDataFactory.createUserWithSpotify();
             UserSettings settings = TestDataFactory.createUserSettings(user.getId());
             settings.setSyncEnabled(false);
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -160,10 +243,10 @@ class MusicSyncServiceTest extends TestBase {
             UserSettings settings = TestDataFactory.createUserSettings(user.getId());
             settings.setSyncEnabled(true);
             settings.setSyncActive(false);
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -174,10 +257,10 @@ class MusicSyncServiceTest extends TestBase {
             User user = TestDataFactory.createUserWithManualStatus();
             user.setEncryptedSpotifyAccessToken("encrypted-token");
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -188,12 +271,12 @@ class MusicSyncServiceTest extends TestBase {
             User user = TestDataFactory.createUserWithSpotify();
             UserSettings settings = TestDataFactory.createUserSettingsWithWorkingHours(user.getId());
             settings.setSyncActive(true);
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(timezoneService.isWithinWorkingHours(settings.getSyncStartHour(), settings.getSyncEndHour()))
                     .thenReturn(false);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
@@ -208,16 +291,32 @@ class MusicSyncServiceTest extends TestBase {
         void shouldStopSyncOnManualStatusChange() {
             User user = TestDataFactory.createUserWithSpotify();
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(true);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(userService).setManualStatusFlag(user.getId(), true);
             verify(userService).stopSync(user.getId());
             verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
         }
+
+        @Test
+        @DisplayName("should skip the status fetch between reconciliation checks")
+        void shouldSkipStatusFetchWhenNotDue() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(manualStatusMonitor.isPollCheckDue(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(null);
+
+            syncNow(user);
+
+            verify(slackService, never()).hasManualStatusChange(any());
+            verify(spotifyService).getCurrentlyPlayingTrack(user);
+        }
     }
 
     @Nested
@@ -232,15 +331,39 @@ class MusicSyncServiceTest extends TestBase {
             CurrentlyPlayingTrackInfo newTrack = TestDataFactory.createTrackInfo(
                     "new-track-id", "New Song", "New Artist");
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(newTrack);
+
+            syncNow(user);
+
+            verify(syncStateWriter).updateCurrentlyPlaying(user.getId(), user.getCurrentlyPlayingSongId(),
+                    "new-track-id", "New Song", "New Artist");
+            verify(slackService).updateUserStatus(eq(user), any(), eq("New Song"), eq("New Artist"), any(), any());
+        }
+
+        @Test
+        @DisplayName("should hand a failed status write to the retry queue without persisting it")
+        void shouldQueueFailedWriteForRetry() {
+            User user = TestDataFactory.createUserWithCurrentlyPlaying();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            CurrentlyPlayingTrackInfo newTrack = TestDataFactory.createTrackInfo(
+                    "new-track-id", "New Song", "New Artist");
+
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(newTrack);
+            when(slackStatusRetryQueue.nextGeneration(user.getId())).thenReturn(7L);
+            doThrow(new RuntimeException("Slack API error: internal_error"))
+                    .when(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(userService).updateCurrentlyPlaying(user.getId(), "new-track-id", "New Song", "New Artist");
-            verify(slackService).updateUserStatus(eq(user), eq("New Song"), eq("New Artist"), any(), any());
+            verify(slackStatusRetryQueue).retry(eq(user), eq(7L), eq("UPDATE_STATUS"), any(), any());
+            verify(syncStateWriter, never()).updateCurrentlyPlaying(any(), any(), any(), any(), any());
+            assertThat(pollScheduler.nextPollAt(user.getId())).isPositive();
         }
 
         @Test
@@ -254,15 +377,15 @@ class MusicSyncServiceTest extends TestBase {
             sameTrack.setProgressMs(10000);  // 10 seconds in
             sameTrack.setDurationMs(300000); // 5 minute song - lots of time remaining
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(sameTrack);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             // Should not update currently playing (same track)
-            verify(userService, never()).updateCurrentlyPlaying(any(), any(), any(), any());
+            verify(syncStateWriter, never()).updateCurrentlyPlaying(any(), any(), any(), any(), any());
         }
 
         @Test
@@ -273,14 +396,14 @@ class MusicSyncServiceTest extends TestBase {
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
             CurrentlyPlayingTrackInfo newTrack = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(newTrack);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(userService).updateCurrentlyPlaying(eq(user.getId()), any(), any(), any());
+            verify(syncStateWriter).updateCurrentlyPlaying(eq(user.getId()), any(), any(), any(), any());
         }
     }
 
@@ -294,16 +417,16 @@ class MusicSyncServiceTest extends TestBase {
             User user = TestDataFactory.createUserWithCurrentlyPlaying();
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(null);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(slackService).clearUserStatus(user);
-            verify(userService).clearCurrentlyPlaying(user.getId());
-            verify(userService).setStatusCleared(user.getId(), true);
+            verify(syncStateWriter).clearCurrentlyPlaying(user.getId());
+            verify(syncStateWriter).setStatusCleared(user.getId(), true);
         }
 
         @Test
@@ -313,12 +436,12 @@ class MusicSyncServiceTest extends TestBase {
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
             CurrentlyPlayingTrackInfo pausedTrack = TestDataFactory.createPausedTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(pausedTrack);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
             verify(slackService).clearUserStatus(user);
         }
@@ -330,14 +453,74 @@ class MusicSyncServiceTest extends TestBase {
             user.setCurrentlyPlayingSongId(null);
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(null);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
+
+            verify(slackService, never()).clearUserStatus(any());
+        }
+
+        @Test
+        @DisplayName("should keep status and retry later when Spotify is rate limited")
+        void shouldKeepStatusWhenRateLimited() {
+            User user = TestDataFactory.createUserWithCurrentlyPlaying();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenThrow(new SpotifyRateLimitException());
+
+            syncNow(user);
+
+            verify(slackService, never()).clearUserStatus(any());
+            verify(syncStateWriter, never()).clearCurrentlyPlaying(any());
+            assertThat(pollScheduler.nextPollAt(user.getId())).isPositive();
+        }
+
+        @Test
+        @DisplayName("should postpone the user until an open circuit lets calls through")
+        void shouldPostponeWhenCircuitOpen() {
+            User user = TestDataFactory.createUserWithCurrentlyPlaying();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user))
+                    .thenThrow(new CircuitOpenException("slack:users.profile.get", 25_000));
+
+            long before = System.currentTimeMillis();
+            syncNow(user);
 
+            verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
             verify(slackService, never()).clearUserStatus(any());
+            assertThat(pollScheduler.nextPollAt(user.getId())).isGreaterThan(before + 20_000);
+        }
+
+        @Test
+        @DisplayName("should postpone a status write held back by Slack's rate limit instead of retrying it")
+        void shouldPostponeWhenSlackRateLimited() {
+            User user = TestDataFactory.createUserWithCurrentlyPlaying();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            CurrentlyPlayingTrackInfo newTrack = TestDataFactory.createTrackInfo(
+                    "new-track-id", "New Song", "New Artist");
+
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(newTrack);
+            doThrow(new SlackRateLimitException("users.profile.set", 25_000))
+                    .when(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
+
+            long before = System.currentTimeMillis();
+            syncNow(user);
+
+            verify(slackStatusRetryQueue, never()).retry(any(), anyLong(), any(), any(), any());
+            verify(syncStateWriter, never()).updateCurrentlyPlaying(any(), any(), any(), any(), any());
+            assertThat(pollScheduler.nextPollAt(user.getId())).isGreaterThan(before + 20_000);
         }
     }
 
@@ -354,14 +537,14 @@ class MusicSyncServiceTest extends TestBase {
             settings.setSyncActive(true);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfoOnDevice("other-device");
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any(), any());
             // Should clear status instead
             verify(slackService).clearUserStatus(user);
         }
@@ -376,14 +559,14 @@ class MusicSyncServiceTest extends TestBase {
             settings.setSyncActive(true);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfoOnDevice("allowed-device");
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -396,14 +579,223 @@ class MusicSyncServiceTest extends TestBase {
             settings.setAllowedDeviceIds(null);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfoOnDevice("any-device");
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("poll scheduling")
+    class PollSchedulingTests {
+
+        @Test
+        @DisplayName("should poll only users whose deadline has fired")
+        void shouldPollOnlyDueUsers() {
+            User dueUser = TestDataFactory.createUserWithSpotify();
+            User laterUser = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(dueUser.getId());
+            pollScheduler.schedule(dueUser.getId(), 0);
+            pollScheduler.schedule(laterUser.getId(), 60_000);
+
+            when(userService.findSyncCandidates(List.of(dueUser.getId()))).thenReturn(List.of(dueUser));
+            when(userService.getUserSettingsByUserIds(List.of(dueUser.getId())))
+                    .thenReturn(Map.of(dueUser.getId(), settings));
+            when(slackService.hasManualStatusChange(dueUser)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(dueUser)).thenReturn(null);
+
+            musicSyncService.pollDueUsers();
+
+            verify(spotifyService).getCurrentlyPlayingTrack(dueUser);
+            verify(spotifyService, never()).getCurrentlyPlayingTrack(laterUser);
+        }
+
+        @Test
+        @DisplayName("should reschedule users that keep syncing")
+        void shouldRescheduleSyncingUsers() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(null);
+
+            musicSyncService.pollDueUsers();
+
+            assertThat(pollScheduler.isScheduled(user.getId())).isTrue();
+        }
+
+        @Test
+        @DisplayName("should stop polling users whose sync is stopped")
+        void shouldStopPollingStoppedUsers() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettings(user.getId());
+            settings.setSyncActive(false);
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+
+            musicSyncService.pollDueUsers();
+
+            assertThat(pollScheduler.isScheduled(user.getId())).isFalse();
+            verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
+        }
+
+        @Test
+        @DisplayName("should keep polling users outside working hours")
+        void shouldKeepPollingOutsideWorkingHours() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithWorkingHours(user.getId());
+            settings.setSyncActive(true);
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(timezoneService.isWithinWorkingHours(any(), any())).thenReturn(false);
+
+            musicSyncService.pollDueUsers();
+
+            assertThat(pollScheduler.isScheduled(user.getId())).isTrue();
+        }
+
+        @Test
+        @DisplayName("should poll again just after the current track ends")
+        void shouldPollAfterTrackEnd() {
+            User user = TestDataFactory.createUserWithSpotify();
+            user.setCurrentlyPlayingSongId("track-1");
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo("track-1", "Song", "Artist");
+            track.setDurationMs(200_000);
+            track.setProgressMs(170_000);
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
+
+            long before = System.currentTimeMillis();
+            musicSyncService.pollDueUsers();
+
+            // The status refresh is published after the cycle returns; the user is rescheduled once it lands
+            await().atMost(Duration.ofSeconds(5)).until(() -> pollScheduler.isScheduled(user.getId()));
+            assertThat(nextPollInMs(user, before)).isBetween(30_000L, 32_000L);
+        }
+
+        @Test
+        @DisplayName("should end the cycle without waiting for Slack writes")
+        void shouldNotWaitForPublish() throws Exception {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+            CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
+            CountDownLatch release = new CountDownLatch(1);
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
+            doAnswer(invocation -> release.await(5, TimeUnit.SECONDS))
+                    .when(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
+
+            musicSyncService.pollDueUsers();
+
+            assertThat(pollScheduler.isScheduled(user.getId())).isFalse();
+            release.countDown();
+            await().atMost(Duration.ofSeconds(5)).until(() -> pollScheduler.isScheduled(user.getId()));
+            verify(syncStateWriter).setStatusCleared(user.getId(), false);
+        }
+
+        @Test
+        @DisplayName("should back off users with nothing playing")
+        void shouldBackOffIdleUsers() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of(user));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
+            when(slackService.hasManualStatusChange(user)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(null);
+
+            long before = System.currentTimeMillis();
+            pollScheduler.schedule(user.getId(), 0);
+            musicSyncService.pollDueUsers();
+            long firstDelay = nextPollInMs(user, before);
+
+            pollScheduler.schedule(user.getId(), 0);
+            musicSyncService.pollDueUsers();
+            long secondDelay = nextPollInMs(user, before);
+
+            assertThat(firstDelay).isBetween(9_000L, 11_000L);
+            assertThat(secondDelay).isBetween(19_000L, 21_000L);
+        }
+
+        private long nextPollInMs(User user, long sinceEpochMs) {
+            return pollScheduler.nextPollAt(user.getId()) - sinceEpochMs;
+        }
+
+        @Test
+        @DisplayName("should skip users in partitions owned by another node")
+        void shouldSkipUsersOwnedByAnotherNode() {
+            User ownedUser = TestDataFactory.createUserWithSpotify();
+            User foreignUser = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(ownedUser.getId());
+            pollScheduler.schedule(ownedUser.getId(), 0);
+            pollScheduler.schedule(foreignUser.getId(), 0);
+
+            when(syncPartitionService.owns(foreignUser.getId())).thenReturn(false);
+            when(userService.findSyncCandidates(any())).thenReturn(List.of(ownedUser, foreignUser));
+            when(userService.getUserSettingsByUserIds(List.of(ownedUser.getId())))
+                    .thenReturn(Map.of(ownedUser.getId(), settings));
+            when(slackService.hasManualStatusChange(ownedUser)).thenReturn(false);
+            when(spotifyService.getCurrentlyPlayingTrack(ownedUser)).thenReturn(null);
+
+            musicSyncService.pollDueUsers();
+
+            verify(spotifyService, never()).getCurrentlyPlayingTrack(foreignUser);
+            assertThat(pollScheduler.isScheduled(foreignUser.getId())).isFalse();
+            assertThat(pollScheduler.isScheduled(ownedUser.getId())).isTrue();
+        }
+
+        @Test
+        @DisplayName("should drop due users who are no longer sync candidates")
+        void shouldDropDueUsersNoLongerCandidates() {
+            User user = TestDataFactory.createUserWithSpotify();
+            pollScheduler.schedule(user.getId(), 0);
+
+            when(userService.findSyncCandidates(List.of(user.getId()))).thenReturn(List.of());
+
+            musicSyncService.pollDueUsers();
+
+            assertThat(pollScheduler.isScheduled(user.getId())).isFalse();
+            verify(spotifyService, never()).getCurrentlyPlayingTrack(any());
+        }
+
+        @Test
+        @DisplayName("should schedule every sync candidate without a deadline")
+        void shouldScheduleActiveUsers() {
+            User user1 = TestDataFactory.createUserWithSpotify();
+            User user2 = TestDataFactory.createUserWithSpotify();
+            when(syncCandidateSource.streamIds(any())).thenReturn(Stream.of(user1.getId(), user2.getId()));
+
+            musicSyncService.scheduleActiveUsers();
+
+            assertThat(pollScheduler.isScheduled(user1.getId())).isTrue();
+            assertThat(pollScheduler.isScheduled(user2.getId())).isTrue();
         }
     }
 
@@ -451,14 +843,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.BOTH);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -470,14 +862,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.BOTH);
             CurrentlyPlayingTrackInfo episode = TestDataFactory.createEpisodeInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(episode);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -488,14 +880,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.MUSIC);
             CurrentlyPlayingTrackInfo episode = TestDataFactory.createEpisodeInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(episode);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any(), any());
             verify(slackService).clearUserStatus(user);
         }
 
@@ -508,14 +900,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.MUSIC);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -526,14 +918,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.PODCASTS);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any());
+            verify(slackService, never()).updateUserStatus(any(), any(), any(), any(), any(), any());
             verify(slackService).clearUserStatus(user);
         }
 
@@ -546,14 +938,14 @@ class MusicSyncServiceTest extends TestBase {
                     user.getId(), SyncContentType.PODCASTS);
             CurrentlyPlayingTrackInfo episode = TestDataFactory.createEpisodeInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(episode);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
     }
 
@@ -570,16 +962,16 @@ class MusicSyncServiceTest extends TestBase {
             settings.setSyncActive(true);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(timezoneService.isWithinWorkingHours(settings.getSyncStartHour(), settings.getSyncEndHour()))
                     .thenReturn(true);
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
         }
 
         @Test
@@ -591,15 +983,37 @@ class MusicSyncServiceTest extends TestBase {
             settings.setWorkingHoursEnabled(false);
             CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
 
-            when(userService.findAllActiveUsers()).thenReturn(List.of(user));
-            when(userService.getUserSettings(user.getId())).thenReturn(Optional.of(settings));
+            when(userService.getUserSettingsByUserIds(List.of(user.getId())))
+                    .thenReturn(Map.of(user.getId(), settings));
             when(slackService.hasManualStatusChange(user)).thenReturn(false);
             when(spotifyService.getCurrentlyPlayingTrack(user)).thenReturn(track);
 
-            musicSyncService.syncMusicStatus();
+            syncNow(user);
 
-            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any());
+            verify(slackService).updateUserStatus(eq(user), any(), any(), any(), any(), any());
             verify(timezoneService, never()).isWithinWorkingHours(any(), any());
         }
     }
+
+    /**
+     * Polls the users right away and waits until the pipeline has rescheduled or dropped each of them,
+     * including those still publishing when the cycle returns.
+     */
+    private void syncNow(User... users) {
+        List<String> userIds = Arrays.stream(users).map(User::getId).toList();
+        when(userService.findSyncCandidates(argThat(ids -> ids.size() == userIds.size() && ids.containsAll(userIds))))
+                .thenReturn(List.of(users));
+        userIds.forEach(userId -> pollScheduler.schedule(userId, 0));
+        clearInvocations(pollScheduler);
+
+        musicSyncService.pollDueUsers();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> userIds.stream().allMatch(this::isRescheduled));
+    }
+
+    private boolean isRescheduled(String userId) {
+        return mockingDetails(pollScheduler).getInvocations().stream()
+                .filter(invocation -> Set.of("schedule", "cancel").contains(invocation.getMethod().getName()))
+                .anyMatch(invocation -> userId.equals(invocation.getArgument(0)));
+    }
 }
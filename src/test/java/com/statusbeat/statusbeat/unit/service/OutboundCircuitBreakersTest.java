@@ -0,0 +1,103 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.exception.CircuitOpenException;
+import com.statusbeat.statusbeat.service.OutboundCircuitBreakers;
+import com.statusbeat.statusbeat.util.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.Status;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("OutboundCircuitBreakers")
+class OutboundCircuitBreakersTest {
+
+    private static final String ENDPOINT = "slack:users.profile.set";
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundCircuitBreakers breakers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        breakers = new OutboundCircuitBreakers(meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("acquire")
+    class AcquireTests {
+
+        @Test
+        @DisplayName("should reject calls without touching the endpoint once it keeps failing")
+        void shouldRejectWhileOpen() {
+            failCalls(ENDPOINT, 10);
+
+            assertThatThrownBy(() -> breakers.acquire(ENDPOINT))
+                    .isInstanceOfSatisfying(CircuitOpenException.class, e -> {
+                        assertThat(e.getEndpoint()).isEqualTo(ENDPOINT);
+                        assertThat(e.getRetryAfterMs()).isPositive();
+                    });
+            assertThat(meterRegistry.get("statusbeat.circuit.calls").tag("endpoint", ENDPOINT)
+                    .tag("outcome", "rejected").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should track each endpoint separately")
+        void shouldIsolateEndpoints() {
+            failCalls(ENDPOINT, 10);
+
+            breakers.acquire("slack:chat.postMessage");
+            assertThat(breakers.getState("slack:chat.postMessage")).isEqualTo(CircuitBreaker.State.CLOSED);
+        }
+
+        @Test
+        @DisplayName("should not count ignored calls against the endpoint")
+        void shouldIgnoreRateLimits() {
+            for (int i = 0; i < 10; i++) {
+                breakers.acquire(ENDPOINT);
+                breakers.recordIgnored(ENDPOINT);
+            }
+
+            assertThat(breakers.isOpen(ENDPOINT)).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("health")
+    class HealthTests {
+
+        @Test
+        @DisplayName("should list breaker states and stay UP while a breaker is open")
+        @SuppressWarnings("unchecked")
+        void shouldReportStates() {
+            failCalls(ENDPOINT, 10);
+            breakers.acquire("spotify:playback");
+            breakers.recordSuccess("spotify:playback", System.nanoTime());
+
+            Health health = breakers.health();
+
+            assertThat(health.getStatus()).isEqualTo(Status.UP);
+            assertThat((Map<String, Object>) health.getDetails().get(ENDPOINT))
+                    .containsEntry("state", CircuitBreaker.State.OPEN)
+                    .containsKey("retryInMs");
+            assertThat((Map<String, Object>) health.getDetails().get("spotify:playback"))
+                    .containsEntry("state", CircuitBreaker.State.CLOSED);
+            assertThat(meterRegistry.get("statusbeat.circuit.state").tag("endpoint", ENDPOINT).gauge().value())
+                    .isEqualTo(CircuitBreaker.State.OPEN.ordinal());
+        }
+    }
+
+    private void failCalls(String endpoint, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breakers.acquire(endpoint);
+            breakers.recordFailure(endpoint);
+        }
+    }
+}
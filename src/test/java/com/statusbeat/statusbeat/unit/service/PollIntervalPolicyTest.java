@@ -0,0 +1,152 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.CurrentlyPlayingTrackInfo;
+import com.statusbeat.statusbeat.service.PollIntervalPolicy;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PollIntervalPolicy")
+class PollIntervalPolicyTest {
+
+    private static final String USER_ID = "user-1";
+
+    private SimpleMeterRegistry meterRegistry;
+    private PollIntervalPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        policy = new PollIntervalPolicy(meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("afterPlayback")
+    class AfterPlaybackTests {
+
+        @Test
+        @DisplayName("should poll just after the predicted track end")
+        void shouldPollAfterTrackEnd() {
+            CurrentlyPlayingTrackInfo track = track(200_000, 150_000);
+
+            assertThat(policy.afterPlayback(USER_ID, track)).isEqualTo(51_500);
+        }
+
+        @Test
+        @DisplayName("should cap long remaining tracks so skips are still noticed")
+        void shouldCapLongTracks() {
+            CurrentlyPlayingTrackInfo track = track(3_600_000, 0);
+
+            assertThat(policy.afterPlayback(USER_ID, track)).isEqualTo(120_000);
+        }
+
+        @Test
+        @DisplayName("should use the cap when the track length is unknown")
+        void shouldUseCapWhenLengthUnknown() {
+            CurrentlyPlayingTrackInfo track = track(null, null);
+
+            assertThat(policy.afterPlayback(USER_ID, track)).isEqualTo(120_000);
+        }
+
+        @Test
+        @DisplayName("should never poll faster than the minimum interval")
+        void shouldRespectMinimumInterval() {
+            CurrentlyPlayingTrackInfo track = track(200_000, 205_000);
+
+            assertThat(policy.afterPlayback(USER_ID, track)).isEqualTo(1_000);
+        }
+    }
+
+    @Nested
+    @DisplayName("afterIdle")
+    class AfterIdleTests {
+
+        @Test
+        @DisplayName("should double the interval for each idle poll up to the cap")
+        void shouldBackOffExponentially() {
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(10_000);
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(20_000);
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(40_000);
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(80_000);
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(160_000);
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(300_000);
+
+            for (int i = 0; i < 100; i++) {
+                policy.afterIdle(USER_ID);
+            }
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(300_000);
+        }
+
+        @Test
+        @DisplayName("should snap back to the fast interval after playback")
+        void shouldSnapBackAfterPlayback() {
+            policy.afterIdle(USER_ID);
+            policy.afterIdle(USER_ID);
+            policy.afterIdle(USER_ID);
+
+            policy.afterPlayback(USER_ID, track(200_000, 10_000));
+
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(10_000);
+        }
+
+        @Test
+        @DisplayName("should track backoff per user")
+        void shouldTrackBackoffPerUser() {
+            policy.afterIdle(USER_ID);
+            policy.afterIdle(USER_ID);
+
+            assertThat(policy.afterIdle("user-2")).isEqualTo(10_000);
+        }
+
+        @Test
+        @DisplayName("should start over after a reset")
+        void shouldStartOverAfterReset() {
+            policy.afterIdle(USER_ID);
+            policy.afterIdle(USER_ID);
+
+            policy.reset(USER_ID);
+
+            assertThat(policy.afterIdle(USER_ID)).isEqualTo(10_000);
+        }
+    }
+
+    @Nested
+    @DisplayName("call volume")
+    class CallVolumeTests {
+
+        @Test
+        @DisplayName("should poll a listener an order of magnitude less than fixed polling")
+        void shouldCutPollsForListener() {
+            // Ten 3.5 minute tracks back to back, followed by an hour of silence
+            long trackMs = 210_000;
+            long listeningMs = 10 * trackMs;
+            long totalMs = listeningMs + 3_600_000;
+
+            int adaptivePolls = 0;
+            for (long now = 0; now < totalMs; adaptivePolls++) {
+                if (now < listeningMs) {
+                    now += policy.afterPlayback(USER_ID, track((int) trackMs, (int) (now % trackMs)));
+                } else {
+                    now += policy.afterIdle(USER_ID);
+                }
+            }
+            long fixedPolls = totalMs / 10_000;
+
+            assertThat(adaptivePolls * 10L).isLessThanOrEqualTo(fixedPolls);
+            assertThat(meterRegistry.get("statusbeat.sync.poll.decisions").tag("reason", "track_end")
+                    .counter().count()).isPositive();
+        }
+    }
+
+    private static CurrentlyPlayingTrackInfo track(Integer durationMs, Integer progressMs) {
+        CurrentlyPlayingTrackInfo track = TestDataFactory.createTrackInfo();
+        track.setDurationMs(durationMs);
+        track.setProgressMs(progressMs);
+        return track;
+    }
+}
@@ -0,0 +1,136 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.slack.api.methods.SlackApiException;
+import com.statusbeat.statusbeat.exception.SlackRateLimitException;
+import com.statusbeat.statusbeat.service.SlackRateDispatcher;
+import com.statusbeat.statusbeat.service.SlackRateDispatcher.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SlackRateDispatcher")
+class SlackRateDispatcherTest {
+
+    private static final String METHOD = "users.profile.set";
+    private static final String TEAM = "T123";
+
+    private SimpleMeterRegistry meterRegistry;
+    private SlackRateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new SlackRateDispatcher(meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "interactiveMaxWaitMs", 50L);
+    }
+
+    @Nested
+    @DisplayName("tier buckets")
+    class TierBucketTests {
+
+        @Test
+        @DisplayName("should run calls within the tier's burst without waiting")
+        void shouldServeBurstImmediately() throws Exception {
+            long start = System.nanoTime();
+            for (int i = 0; i < 5; i++) {
+                assertThat(call(TEAM, Priority.INTERACTIVE)).isEqualTo("ok");
+            }
+
+            assertThat(System.nanoTime() - start).isLessThan(50_000_000L);
+        }
+
+        @Test
+        @DisplayName("should keep the last permit for interactive calls")
+        void shouldReservePermitForInteractive() throws Exception {
+            // Tier 3 bursts to five calls; background callers may take four of them
+            for (int i = 0; i < 4; i++) {
+                call(TEAM, Priority.BACKGROUND);
+            }
+
+            assertThatThrownBy(() -> call(TEAM, Priority.BACKGROUND)).isInstanceOf(SlackRateLimitException.class);
+            assertThat(call(TEAM, Priority.INTERACTIVE)).isEqualTo("ok");
+            assertThat(meterRegistry.get("statusbeat.slack.rate.rejected").tag("priority", "background")
+                    .counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should fail background calls right away with the time until the next permit")
+        void shouldNotParkBackgroundCalls() throws Exception {
+            for (int i = 0; i < 4; i++) {
+                call(TEAM, Priority.BACKGROUND);
+            }
+
+            long start = System.nanoTime();
+            // Tier 3 refills a permit every 1.2 s; the fifth background call needs two
+            assertThatThrownBy(() -> call(TEAM, Priority.BACKGROUND))
+                    .isInstanceOfSatisfying(SlackRateLimitException.class,
+                            e -> assertThat(e.getRetryAfterMs()).isBetween(1_000L, 1_200L));
+            assertThat(System.nanoTime() - start).isLessThan(50_000_000L);
+            assertThat(dispatcher.waitingCallers(Priority.BACKGROUND)).isZero();
+        }
+
+        @Test
+        @DisplayName("should give each workspace its own bucket")
+        void shouldSeparateWorkspaces() throws Exception {
+            for (int i = 0; i < 5; i++) {
+                call(TEAM, Priority.INTERACTIVE);
+            }
+
+            assertThatThrownBy(() -> call(TEAM, Priority.INTERACTIVE)).isInstanceOf(SlackRateLimitException.class);
+            assertThat(call("T456", Priority.INTERACTIVE)).isEqualTo("ok");
+        }
+    }
+
+    @Nested
+    @DisplayName("ratelimited responses")
+    class RateLimitedTests {
+
+        @Test
+        @DisplayName("should hold the method back for Retry-After")
+        void shouldHonorRetryAfter() {
+            assertThatThrownBy(() -> dispatcher.execute(METHOD, TEAM, Priority.BACKGROUND, () -> {
+                throw rateLimited(30);
+            })).isInstanceOf(SlackApiException.class);
+
+            assertThat(dispatcher.penaltyRemainingMs(METHOD, TEAM)).isGreaterThan(29_000);
+            assertThatThrownBy(() -> call(TEAM, Priority.INTERACTIVE))
+                    .isInstanceOfSatisfying(SlackRateLimitException.class,
+                            e -> assertThat(e.getRetryAfterMs()).isGreaterThan(29_000));
+            assertThat(meterRegistry.get("statusbeat.slack.rate.limited").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should not hold back other methods")
+        void shouldOnlyPauseLimitedMethod() throws Exception {
+            assertThatThrownBy(() -> dispatcher.execute(METHOD, TEAM, Priority.BACKGROUND, () -> {
+                throw rateLimited(30);
+            })).isInstanceOf(SlackApiException.class);
+
+            assertThat(dispatcher.execute("users.profile.get", TEAM, Priority.BACKGROUND, () -> "ok")).isEqualTo("ok");
+        }
+    }
+
+    private String call(String teamId, Priority priority) throws Exception {
+        return dispatcher.execute(METHOD, teamId, priority, () -> "ok");
+    }
+
+    private static SlackApiException rateLimited(int retryAfterSeconds) {
+        Response response = new Response.Builder()
+                .request(new Request.Builder().url("https://slack.com/api/" + METHOD).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(429)
+                .message("Too Many Requests")
+                .header("Retry-After", String.valueOf(retryAfterSeconds))
+                .build();
+        return new SlackApiException(response, "{\"ok\":false,\"error\":\"ratelimited\"}");
+    }
+}
@@ -3,12 +3,16 @@ package com.statusbeat.statusbeat.unit.service;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
 import com.statusbeat.statusbeat.repository.BotInstallationRepository;
+import com.statusbeat.statusbeat.service.InstallationCache;
+import com.statusbeat.statusbeat.service.OutboundCircuitBreakers;
+import com.statusbeat.statusbeat.service.SlackRateDispatcher;
 import com.statusbeat.statusbeat.service.SlackService;
 import com.statusbeat.statusbeat.service.TokenValidationService;
 import com.statusbeat.statusbeat.service.UserService;
 import com.statusbeat.statusbeat.testutil.TestBase;
 import com.statusbeat.statusbeat.testutil.TestDataFactory;
 import com.statusbeat.statusbeat.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -41,7 +45,9 @@ class SlackServiceTest extends TestBase {
 
     @BeforeEach
     void setUp() {
-        slackService = new SlackService(userService, tokenValidationService, botInstallationRepository, encryptionUtil);
+        slackService = new SlackService(userService, tokenValidationService, botInstallationRepository, encryptionUtil,
+                new InstallationCache(new SimpleMeterRegistry()), new OutboundCircuitBreakers(new SimpleMeterRegistry()), new SlackRateDispatcher(new SimpleMeterRegistry()),
+                new SimpleMeterRegistry());
         ReflectionTestUtils.setField(slackService, "expirationOverheadMs", 120000L);
     }
 
@@ -63,6 +69,19 @@ class SlackServiceTest extends TestBase {
             // Verify we never try to update the last set status (which happens after successful Slack update)
             verify(userService, never()).updateLastSetStatus(any(), any());
         }
+
+        @Test
+        @DisplayName("should use settings the caller already loaded")
+        void shouldUseLoadedSettings() {
+            User user = TestDataFactory.createUserWithSpotify();
+            UserSettings settings = TestDataFactory.createUserSettings(user.getId());
+            settings.setSyncEnabled(false);
+
+            slackService.updateUserStatus(user, settings, "Song", "Artist", 180000, 60000);
+
+            verify(userService, never()).getUserSettings(any());
+            verify(userService, never()).updateLastSetStatus(any(), any());
+        }
     }
 
     @Nested
@@ -267,6 +286,19 @@ class SlackServiceTest extends TestBase {
         }
     }
 
+    @Nested
+    @DisplayName("getTeamStatusTexts")
+    class GetTeamStatusTextsTests {
+
+        @Test
+        @DisplayName("should return null when the team has no bot installation")
+        void shouldReturnNullWithoutBotInstallation() {
+            when(botInstallationRepository.findByTeamId("T123")).thenReturn(Optional.empty());
+
+            assertThat(slackService.getTeamStatusTexts("T123")).isNull();
+        }
+    }
+
     @Nested
     @DisplayName("rotating emoji selection")
     class RotatingEmojiTests {
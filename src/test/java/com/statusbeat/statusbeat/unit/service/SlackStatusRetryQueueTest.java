@@ -0,0 +1,157 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.StatusDeadLetter;
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.repository.StatusDeadLetterRepository;
+import com.statusbeat.statusbeat.service.SlackStatusRetryQueue;
+import com.statusbeat.statusbeat.testutil.TestBase;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SlackStatusRetryQueue")
+class SlackStatusRetryQueueTest extends TestBase {
+
+    @Mock
+    private StatusDeadLetterRepository deadLetterRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SlackStatusRetryQueue queue;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new SlackStatusRetryQueue(deadLetterRepository, meterRegistry);
+        ReflectionTestUtils.setField(queue, "backoffDelayMs", 10L);
+        user = TestDataFactory.createUserWithSpotify();
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Nested
+    @DisplayName("retry")
+    class RetryTests {
+
+        @Test
+        @DisplayName("should run the write again in the background")
+        void shouldRetryWrite() throws Exception {
+            ReflectionTestUtils.setField(queue, "backoffDelayMs", 400L);
+            AtomicInteger runs = new AtomicInteger();
+            long generation = queue.nextGeneration(user.getId());
+
+            long start = System.nanoTime();
+            queue.retry(user, generation, "UPDATE_STATUS", runs::incrementAndGet, new RuntimeException("boom"));
+
+            // The caller is not held up by the backoff
+            assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+            assertThat(runs).hasValue(0);
+            waitFor(() -> runs.get() == 1);
+            waitFor(() -> outcome("succeeded") == 1);
+            assertThat(queue.pendingCount()).isZero();
+        }
+
+        @Test
+        @DisplayName("should drop the retry when a newer status was queued since")
+        void shouldDropSupersededRetry() throws Exception {
+            ReflectionTestUtils.setField(queue, "backoffDelayMs", 50L);
+            AtomicInteger runs = new AtomicInteger();
+            long generation = queue.nextGeneration(user.getId());
+
+            queue.retry(user, generation, "UPDATE_STATUS", runs::incrementAndGet, new RuntimeException("boom"));
+            queue.nextGeneration(user.getId());
+
+            waitFor(() -> outcome("superseded") == 1);
+            assertThat(runs).hasValue(0);
+        }
+
+        @Test
+        @DisplayName("should dead-letter the write after its last attempt fails")
+        void shouldDeadLetterAfterLastAttempt() throws Exception {
+            AtomicInteger runs = new AtomicInteger();
+            long generation = queue.nextGeneration(user.getId());
+
+            queue.retry(user, generation, "CLEAR_STATUS", () -> {
+                runs.incrementAndGet();
+                throw new RuntimeException("Slack API error: internal_error");
+            }, new RuntimeException("first failure"));
+
+            waitFor(() -> mockingDetails(deadLetterRepository).getInvocations().size() == 1);
+            // max-attempts=3 counts the original write, so two retries
+            assertThat(runs).hasValue(2);
+            ArgumentCaptor<StatusDeadLetter> captor = ArgumentCaptor.forClass(StatusDeadLetter.class);
+            verify(deadLetterRepository).save(captor.capture());
+            assertThat(captor.getValue().getReason()).isEqualTo("attempts_exhausted");
+            assertThat(captor.getValue().getAttempts()).isEqualTo(3);
+            assertThat(captor.getValue().getOperation()).isEqualTo("CLEAR_STATUS");
+            assertThat(captor.getValue().getExpiresAt()).isAfter(captor.getValue().getFailedAt());
+        }
+    }
+
+    @Nested
+    @DisplayName("budgets")
+    class BudgetTests {
+
+        @Test
+        @DisplayName("should dead-letter retries beyond the user's budget")
+        void shouldEnforceUserBudget() {
+            ReflectionTestUtils.setField(queue, "userBudget", 1);
+            ReflectionTestUtils.setField(queue, "backoffDelayMs", 60_000L);
+
+            queue.retry(user, queue.nextGeneration(user.getId()), "UPDATE_STATUS", () -> { },
+                    new RuntimeException("boom"));
+            queue.retry(user, queue.nextGeneration(user.getId()), "UPDATE_STATUS", () -> { },
+                    new RuntimeException("boom"));
+
+            assertThat(queue.pendingCount()).isEqualTo(1);
+            verify(deadLetterRepository).save(argThat(letter -> letter.getReason().equals("user_budget_exhausted")));
+        }
+
+        @Test
+        @DisplayName("should dead-letter retries beyond the global budget")
+        void shouldEnforceGlobalBudget() {
+            ReflectionTestUtils.setField(queue, "globalBudget", 1);
+            ReflectionTestUtils.setField(queue, "backoffDelayMs", 60_000L);
+            User other = TestDataFactory.createUserWithSpotify();
+
+            queue.retry(user, queue.nextGeneration(user.getId()), "UPDATE_STATUS", () -> { },
+                    new RuntimeException("boom"));
+            queue.retry(other, queue.nextGeneration(other.getId()), "UPDATE_STATUS", () -> { },
+                    new RuntimeException("boom"));
+
+            assertThat(queue.pendingCount()).isEqualTo(1);
+            verify(deadLetterRepository).save(argThat(letter -> letter.getReason().equals("global_budget_exhausted")));
+            assertThat(meterRegistry.get("statusbeat.slack.retry.dead_letters").tag("reason", "global_budget_exhausted")
+                    .counter().count()).isEqualTo(1);
+        }
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("statusbeat.slack.retry").tag("outcome", outcome).counter().count();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
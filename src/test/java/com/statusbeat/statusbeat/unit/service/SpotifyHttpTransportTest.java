@@ -0,0 +1,178 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.service.SpotifyHttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.core5.http.Header;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SpotifyHttpTransport")
+class SpotifyHttpTransportTest {
+
+    private HttpServer server;
+    private SimpleMeterRegistry meterRegistry;
+    private SpotifyHttpTransport transport;
+    private final Set<InetSocketAddress> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress());
+            respond(exchange, 200, "{\"is_playing\":true}");
+        });
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("{\"compressed\":true}".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(compressed.toByteArray());
+            }
+        });
+        server.createContext("/unauthorized", exchange ->
+                respond(exchange, 401, "{\"error\":{\"status\":401,\"message\":\"The access token expired\"}}"));
+        server.createContext("/limited", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "7");
+            respond(exchange, 429, "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+        });
+        server.createContext("/limited-date", exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "Wed, 21 Oct 2026 07:28:00 GMT");
+            respond(exchange, 429, "{\"error\":{\"status\":429,\"message\":\"API rate limit exceeded\"}}");
+        });
+        server.createContext("/missing", exchange -> respond(exchange, 404, ""));
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        transport = new SpotifyHttpTransport(meterRegistry);
+        transport.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transport.shutdown();
+        server.stop(0);
+    }
+
+    @Nested
+    @DisplayName("responses")
+    class ResponseTests {
+
+        @Test
+        @DisplayName("should return the body of a successful response")
+        void shouldReturnBody() throws Exception {
+            assertThat(transport.get(uri("/ok"), new Header[0])).isEqualTo("{\"is_playing\":true}");
+        }
+
+        @Test
+        @DisplayName("should decode gzip responses")
+        void shouldDecodeGzip() throws Exception {
+            assertThat(transport.get(uri("/gzip"), new Header[0])).isEqualTo("{\"compressed\":true}");
+        }
+
+        @Test
+        @DisplayName("should map 401 to UnauthorizedException with Spotify's message")
+        void shouldMapUnauthorized() {
+            assertThatThrownBy(() -> transport.get(uri("/unauthorized"), new Header[0]))
+                    .isInstanceOf(UnauthorizedException.class)
+                    .hasMessage("The access token expired");
+        }
+
+        @Test
+        @DisplayName("should map 429 to TooManyRequestsException with Retry-After")
+        void shouldMapRateLimit() {
+            assertThatThrownBy(() -> transport.get(uri("/limited"), new Header[0]))
+                    .isInstanceOfSatisfying(TooManyRequestsException.class,
+                            e -> assertThat(e.getRetryAfter()).isEqualTo(7));
+        }
+
+        @Test
+        @DisplayName("should fall back to the default pause when Retry-After is not a number of seconds")
+        void shouldIgnoreUnparseableRetryAfter() {
+            assertThatThrownBy(() -> transport.get(uri("/limited-date"), new Header[0]))
+                    .isInstanceOfSatisfying(TooManyRequestsException.class,
+                            e -> assertThat(e.getRetryAfter()).isZero())
+                    .hasMessage("API rate limit exceeded");
+        }
+
+        @Test
+        @DisplayName("should map 404 to NotFoundException")
+        void shouldMapNotFound() {
+            assertThatThrownBy(() -> transport.get(uri("/missing"), new Header[0]))
+                    .isInstanceOf(NotFoundException.class);
+        }
+    }
+
+    @Nested
+    @DisplayName("connection pool")
+    class ConnectionPoolTests {
+
+        @Test
+        @DisplayName("should reuse a kept-alive connection for sequential requests")
+        void shouldReuseConnection() throws Exception {
+            for (int i = 0; i < 5; i++) {
+                transport.get(uri("/ok"), new Header[0]);
+            }
+
+            assertThat(clientPorts).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should expose pool and request metrics")
+        void shouldExposeMetrics() throws Exception {
+            transport.get(uri("/ok"), new Header[0]);
+
+            assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.max").gauge().value())
+                    .isEqualTo(128);
+            assertThat(meterRegistry.get("statusbeat.spotify.http.request")
+                    .tag("method", "GET").tag("status", "200").timer().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should record repeated requests on the same timer")
+        void shouldReuseRequestTimer() throws Exception {
+            for (int i = 0; i < 3; i++) {
+                transport.get(uri("/ok"), new Header[0]);
+            }
+
+            assertThat(meterRegistry.get("statusbeat.spotify.http.request").timers()).hasSize(1);
+            assertThat(meterRegistry.get("statusbeat.spotify.http.request")
+                    .tag("method", "GET").tag("status", "200").timer().count()).isEqualTo(3);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.exception.SpotifyRateLimitException;
+import com.statusbeat.statusbeat.service.SpotifyRateGovernor;
+import com.statusbeat.statusbeat.service.SpotifyRateGovernor.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SpotifyRateGovernor")
+class SpotifyRateGovernorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SpotifyRateGovernor governor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        governor = new SpotifyRateGovernor(meterRegistry);
+        ReflectionTestUtils.setField(governor, "permitsPerSecond", 20.0);
+        ReflectionTestUtils.setField(governor, "burst", 4);
+        ReflectionTestUtils.setField(governor, "permits", 4.0);
+        ReflectionTestUtils.setField(governor, "interactiveReserve", 1);
+        ReflectionTestUtils.setField(governor, "interactiveMaxWaitMs", 500L);
+        ReflectionTestUtils.setField(governor, "backgroundMaxWaitMs", 2000L);
+    }
+
+    @Nested
+    @DisplayName("acquire")
+    class AcquireTests {
+
+        @Test
+        @DisplayName("should hand out the burst without waiting")
+        void shouldServeBurstImmediately() {
+            long start = System.nanoTime();
+            for (int i = 0; i < 4; i++) {
+                governor.acquire(Priority.INTERACTIVE);
+            }
+
+            assertThat(System.nanoTime() - start).isLessThan(50_000_000L);
+            assertThat(governor.availablePermits()).isLessThan(1);
+        }
+
+        @Test
+        @DisplayName("should make pollers wait for the bucket to refill")
+        void shouldWaitForRefill() {
+            for (int i = 0; i < 4; i++) {
+                governor.acquire(Priority.INTERACTIVE);
+            }
+
+            long start = System.nanoTime();
+            governor.acquire(Priority.BACKGROUND);
+
+            // Background needs two permits in the bucket (one plus the interactive reserve) at 20/s
+            assertThat(System.nanoTime() - start).isGreaterThan(50_000_000L);
+        }
+
+        @Test
+        @DisplayName("should not park pollers longer than their wait limit")
+        void shouldRejectLongBackgroundWait() {
+            ReflectionTestUtils.setField(governor, "permitsPerSecond", 0.5);
+            ReflectionTestUtils.setField(governor, "permits", 0.0);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> governor.acquire(Priority.BACKGROUND))
+                    .isInstanceOfSatisfying(SpotifyRateLimitException.class,
+                            e -> assertThat(e.getRetryAfterMs()).isGreaterThan(2000L));
+            assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+        }
+
+        @Test
+        @DisplayName("should keep the interactive reserve away from background callers")
+        void shouldReservePermitsForInteractive() {
+            ReflectionTestUtils.setField(governor, "permitsPerSecond", 0.001);
+            ReflectionTestUtils.setField(governor, "backgroundMaxWaitMs", 50L);
+
+            for (int i = 0; i < 3; i++) {
+                governor.acquire(Priority.BACKGROUND);
+            }
+
+            assertThatThrownBy(() -> governor.acquire(Priority.BACKGROUND))
+                    .isInstanceOf(SpotifyRateLimitException.class);
+            governor.acquire(Priority.INTERACTIVE);
+            assertThat(meterRegistry.get("statusbeat.spotify.rate.rejected").tag("priority", "background")
+                    .counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should serve queued interactive callers before background callers")
+        void shouldPrioritizeInteractive() throws Exception {
+            ReflectionTestUtils.setField(governor, "permitsPerSecond", 10.0);
+            ReflectionTestUtils.setField(governor, "interactiveReserve", 0);
+            ReflectionTestUtils.setField(governor, "permits", 0.0);
+            List<Priority> served = new CopyOnWriteArrayList<>();
+
+            Thread background = Thread.ofVirtual().start(() -> {
+                governor.acquire(Priority.BACKGROUND);
+                served.add(Priority.BACKGROUND);
+            });
+            waitForQueued(Priority.BACKGROUND);
+            Thread interactive = Thread.ofVirtual().start(() -> {
+                governor.acquire(Priority.INTERACTIVE);
+                served.add(Priority.INTERACTIVE);
+            });
+            background.join();
+            interactive.join();
+
+            assertThat(served).containsExactly(Priority.INTERACTIVE, Priority.BACKGROUND);
+        }
+    }
+
+    @Nested
+    @DisplayName("penalize")
+    class PenalizeTests {
+
+        @Test
+        @DisplayName("should hold interactive callers until Retry-After has passed")
+        void shouldHonorRetryAfter() {
+            ReflectionTestUtils.setField(governor, "interactiveMaxWaitMs", 2000L);
+            governor.penalize(1);
+
+            assertThat(governor.penaltyRemainingMs()).isBetween(1L, 1000L);
+            long start = System.nanoTime();
+            governor.acquire(Priority.INTERACTIVE);
+
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(900_000_000L);
+            assertThat(meterRegistry.get("statusbeat.spotify.rate.limited").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should turn background callers away at once with the remaining Retry-After")
+        void shouldPostponeBackgroundDuringPenalty() {
+            governor.penalize(1);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> governor.acquire(Priority.BACKGROUND))
+                    .isInstanceOfSatisfying(SpotifyRateLimitException.class,
+                            e -> assertThat(e.getRetryAfterMs()).isBetween(1L, 1000L));
+            assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+        }
+
+        @Test
+        @DisplayName("should halve the rate once per Retry-After window")
+        void shouldHalveRateOnce() {
+            ReflectionTestUtils.setField(governor, "defaultRetryAfterMs", 10_000L);
+
+            governor.penalize(0);
+            governor.penalize(0);
+
+            assertThat(governor.currentRate()).isEqualTo(10.0);
+        }
+
+        @Test
+        @DisplayName("should climb back to the ceiling once 429s stop")
+        void shouldRecoverRate() throws Exception {
+            ReflectionTestUtils.setField(governor, "defaultRetryAfterMs", 10L);
+            ReflectionTestUtils.setField(governor, "recoveryMs", 100L);
+
+            governor.penalize(0);
+            Thread.sleep(200);
+
+            assertThat(governor.currentRate()).isEqualTo(20.0);
+        }
+
+        @Test
+        @DisplayName("should fail fast when the penalty outlasts the caller's wait limit")
+        void shouldFailFastDuringLongPenalty() {
+            governor.penalize(30);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> governor.acquire(Priority.INTERACTIVE))
+                    .isInstanceOf(SpotifyRateLimitException.class);
+            assertThat(System.nanoTime() - start).isLessThan(100_000_000L);
+        }
+
+        @Test
+        @DisplayName("should expose permits and the penalty window as gauges")
+        void shouldExposeGauges() {
+            governor.penalize(10);
+
+            assertThat(meterRegistry.get("statusbeat.spotify.rate.permits").gauge().value()).isZero();
+            assertThat(meterRegistry.get("statusbeat.spotify.rate.penalty.remaining").gauge().value())
+                    .isGreaterThan(9000);
+        }
+    }
+
+    private void waitForQueued(Priority priority) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (governor.waitingCallers(priority) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(governor.waitingCallers(priority)).isEqualTo(1);
+    }
+}
@@ -2,10 +2,15 @@ package com.statusbeat.statusbeat.unit.service;
 
 import com.statusbeat.statusbeat.config.SpotifyConfig;
 import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.OutboundCircuitBreakers;
+import com.statusbeat.statusbeat.service.SpotifyHttpTransport;
+import com.statusbeat.statusbeat.service.SpotifyRateGovernor;
 import com.statusbeat.statusbeat.service.SpotifyService;
+import com.statusbeat.statusbeat.service.TokenRefreshCoordinator;
 import com.statusbeat.statusbeat.service.TokenValidationService;
 import com.statusbeat.statusbeat.service.UserService;
 import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -34,7 +39,10 @@ class SpotifyServiceTest {
 
     @BeforeEach
     void setUp() {
-        spotifyService = new SpotifyService(spotifyConfig, userService, tokenValidationService);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        spotifyService = new SpotifyService(spotifyConfig, userService, tokenValidationService,
+                new SpotifyHttpTransport(meterRegistry), new TokenRefreshCoordinator(meterRegistry),
+                new SpotifyRateGovernor(meterRegistry), new OutboundCircuitBreakers(meterRegistry));
     }
 
     @Nested
@@ -0,0 +1,199 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.SpotifyService;
+import com.statusbeat.statusbeat.service.SpotifyTokenRefresher;
+import com.statusbeat.statusbeat.service.SyncPartitionService;
+import com.statusbeat.statusbeat.service.UserService;
+import com.statusbeat.statusbeat.testutil.TestBase;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SpotifyTokenRefresher")
+class SpotifyTokenRefresherTest extends TestBase {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SpotifyService spotifyService;
+
+    @Mock
+    private SyncPartitionService syncPartitionService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SpotifyTokenRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        refresher = new SpotifyTokenRefresher(userService, spotifyService, syncPartitionService, meterRegistry);
+        ReflectionTestUtils.setField(refresher, "jitterMs", 0L);
+        lenient().when(syncPartitionService.owns(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        refresher.shutdown();
+    }
+
+    @Nested
+    @DisplayName("refreshExpiringTokens")
+    class RefreshExpiringTokensTests {
+
+        @Test
+        @DisplayName("should refresh every token in the window")
+        void shouldRefreshExpiringTokens() {
+            List<User> expiring = expiringUsers(3, LocalDateTime.now().plusMinutes(5));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), any(), any(), anyInt())).thenReturn(expiring);
+            when(spotifyService.refreshTokenProactively(any())).thenReturn(true);
+
+            int refreshed = refresher.refreshExpiringTokens();
+
+            assertThat(refreshed).isEqualTo(3);
+            expiring.forEach(user -> verify(spotifyService).refreshTokenProactively(user));
+            assertThat(meterRegistry.get("statusbeat.spotify.token.refresh.proactive")
+                    .tag("result", "success").counter().count()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should page through batches by expiry and id")
+        void shouldPageByExpiryAndId() {
+            ReflectionTestUtils.setField(refresher, "batchSize", 2);
+            LocalDateTime firstExpiry = LocalDateTime.now().plusMinutes(1);
+            List<User> firstBatch = expiringUsers(2, firstExpiry);
+            List<User> secondBatch = expiringUsers(1, firstExpiry.plusMinutes(1));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), isNull(), any(), eq(2)))
+                    .thenReturn(firstBatch);
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(eq(firstExpiry), eq(firstBatch.get(1).getId()),
+                    any(), eq(2)))
+                    .thenReturn(secondBatch);
+            when(spotifyService.refreshTokenProactively(any())).thenReturn(true);
+
+            int refreshed = refresher.refreshExpiringTokens();
+
+            assertThat(refreshed).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should not skip users sharing an expiry across a batch boundary")
+        void shouldKeepTiesAcrossBatches() {
+            ReflectionTestUtils.setField(refresher, "batchSize", 2);
+            LocalDateTime expiry = LocalDateTime.now().plusMinutes(1);
+            List<User> sameExpiry = expiringUsers(3, expiry);
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), isNull(), any(), eq(2)))
+                    .thenReturn(sameExpiry.subList(0, 2));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(eq(expiry), eq(sameExpiry.get(1).getId()),
+                    any(), eq(2)))
+                    .thenReturn(sameExpiry.subList(2, 3));
+            when(spotifyService.refreshTokenProactively(any())).thenReturn(true);
+
+            int refreshed = refresher.refreshExpiringTokens();
+
+            assertThat(refreshed).isEqualTo(3);
+            verify(spotifyService).refreshTokenProactively(sameExpiry.get(2));
+        }
+
+        @Test
+        @DisplayName("should count failed refreshes and carry on")
+        void shouldCountFailures() {
+            List<User> expiring = expiringUsers(2, LocalDateTime.now().plusMinutes(5));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), any(), any(), anyInt())).thenReturn(expiring);
+            when(spotifyService.refreshTokenProactively(expiring.get(0))).thenReturn(false);
+            when(spotifyService.refreshTokenProactively(expiring.get(1))).thenReturn(true);
+
+            int refreshed = refresher.refreshExpiringTokens();
+
+            assertThat(refreshed).isEqualTo(1);
+            assertThat(meterRegistry.get("statusbeat.spotify.token.refresh.proactive")
+                    .tag("result", "failure").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should leave users in other partitions to their owner")
+        void shouldSkipUsersOwnedElsewhere() {
+            List<User> expiring = expiringUsers(2, LocalDateTime.now().plusMinutes(5));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), any(), any(), anyInt())).thenReturn(expiring);
+            when(syncPartitionService.owns(expiring.get(1).getId())).thenReturn(false);
+            when(spotifyService.refreshTokenProactively(expiring.get(0))).thenReturn(true);
+
+            refresher.refreshExpiringTokens();
+
+            verify(spotifyService, never()).refreshTokenProactively(expiring.get(1));
+        }
+
+        @Test
+        @DisplayName("should never exceed the configured concurrency")
+        void shouldBoundConcurrency() {
+            ReflectionTestUtils.setField(refresher, "maxConcurrency", 2);
+            List<User> expiring = expiringUsers(20, LocalDateTime.now().plusMinutes(5));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), any(), any(), anyInt())).thenReturn(expiring);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxObserved = new AtomicInteger();
+            when(spotifyService.refreshTokenProactively(any())).thenAnswer(inv -> {
+                maxObserved.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return true;
+            });
+
+            refresher.refreshExpiringTokens();
+
+            assertThat(maxObserved.get()).isBetween(1, 2);
+        }
+    }
+
+    @Nested
+    @DisplayName("startRefresh")
+    class StartRefreshTests {
+
+        @Test
+        @DisplayName("should return before the run finishes and skip ticks while it is going")
+        void shouldRunInBackground() throws Exception {
+            List<User> expiring = expiringUsers(1, LocalDateTime.now().plusMinutes(5));
+            when(userService.findUsersWithSpotifyTokenExpiringAfter(any(), any(), any(), anyInt())).thenReturn(expiring);
+            CountDownLatch release = new CountDownLatch(1);
+            when(spotifyService.refreshTokenProactively(any())).thenAnswer(inv -> release.await(5, TimeUnit.SECONDS));
+
+            assertThat(refresher.startRefresh()).isTrue();
+            assertThat(refresher.startRefresh()).isFalse();
+
+            release.countDown();
+            // The next tick can start a run once this one has finished
+            await().atMost(Duration.ofSeconds(5)).until(refresher::startRefresh);
+            assertThat(meterRegistry.get("statusbeat.spotify.token.refresh.proactive")
+                    .tag("result", "success").counter().count()).isGreaterThanOrEqualTo(1);
+        }
+    }
+
+    private static List<User> expiringUsers(int count, LocalDateTime expiresAt) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            User user = TestDataFactory.createUserWithSpotify();
+            user.setSpotifyTokenExpiresAt(expiresAt);
+            return user;
+        }).toList();
+    }
+}
@@ -0,0 +1,142 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.model.UserSettings;
+import com.statusbeat.statusbeat.repository.UserRepository;
+import com.statusbeat.statusbeat.service.SyncCandidateSource;
+import com.statusbeat.statusbeat.testutil.TestBase;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SyncCandidateSource")
+class SyncCandidateSourceTest extends TestBase {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SyncCandidateSource source;
+    private AtomicBoolean cursorClosed;
+
+    @BeforeEach
+    void setUp() {
+        source = new SyncCandidateSource(mongoTemplate, userRepository);
+        ReflectionTestUtils.setField(source, "batchSize", 2);
+        cursorClosed = new AtomicBoolean();
+    }
+
+    @Nested
+    @DisplayName("stream")
+    class StreamTests {
+
+        @Test
+        @DisplayName("should resolve syncing user ids to candidates one batch at a time")
+        void shouldLoadCandidatesInBatches() {
+            User first = User.builder().id("user-1").build();
+            User third = User.builder().id("user-3").build();
+            cursorOver("user-1", "user-2", "user-3");
+            when(userRepository.findSyncCandidatesByIdIn(List.of("user-1", "user-2"))).thenReturn(List.of(first));
+            when(userRepository.findSyncCandidatesByIdIn(List.of("user-3"))).thenReturn(List.of(third));
+
+            List<User> candidates;
+            try (Stream<User> stream = source.stream(userId -> true)) {
+                candidates = stream.toList();
+            }
+
+            assertThat(candidates).containsExactly(first, third);
+            assertThat(cursorClosed).isTrue();
+        }
+
+        @Test
+        @DisplayName("should only load a batch once the previous one is used up")
+        void shouldLoadLazily() {
+            cursorOver("user-1", "user-2", "user-3");
+            when(userRepository.findSyncCandidatesByIdIn(List.of("user-1", "user-2")))
+                    .thenReturn(List.of(User.builder().id("user-1").build()));
+
+            try (Stream<User> stream = source.stream(userId -> true)) {
+                assertThat(stream.findFirst()).isPresent();
+            }
+
+            verify(userRepository, times(1)).findSyncCandidatesByIdIn(anyList());
+        }
+
+        @Test
+        @DisplayName("should drop filtered ids before loading users")
+        void shouldFilterIdsBeforeLoading() {
+            cursorOver("user-1", "user-2", "user-3");
+            when(userRepository.findSyncCandidatesByIdIn(List.of("user-1", "user-3"))).thenReturn(List.of());
+
+            try (Stream<User> stream = source.stream(userId -> !userId.equals("user-2"))) {
+                assertThat(stream).isEmpty();
+            }
+
+            verify(userRepository).findSyncCandidatesByIdIn(List.of("user-1", "user-3"));
+        }
+
+        @Test
+        @DisplayName("should read only the user ids of syncing settings, in cursor batches")
+        void shouldQuerySyncingSettingsIds() {
+            cursorOver();
+
+            try (Stream<User> stream = source.stream(userId -> true)) {
+                assertThat(stream).isEmpty();
+            }
+
+            ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+            verify(mongoTemplate).stream(query.capture(), eq(UserSettings.class));
+            assertThat(query.getValue().getQueryObject())
+                    .containsEntry("syncEnabled", true)
+                    .containsEntry("syncActive", true);
+            assertThat(query.getValue().getFieldsObject()).containsEntry("userId", 1).containsEntry("_id", 0);
+            assertThat(query.getValue().getMeta().getCursorBatchSize()).isEqualTo(2);
+            verifyNoInteractions(userRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("streamIds")
+    class StreamIdsTests {
+
+        @Test
+        @DisplayName("should return only candidate ids")
+        void shouldReturnCandidateIds() {
+            cursorOver("user-1", "user-2");
+            when(userRepository.findSyncCandidateIdsByIdIn(List.of("user-1", "user-2")))
+                    .thenReturn(List.of(User.builder().id("user-2").build()));
+
+            try (Stream<String> ids = source.streamIds(userId -> true)) {
+                assertThat(ids).containsExactly("user-2");
+            }
+
+            verify(userRepository, never()).findSyncCandidatesByIdIn(any());
+        }
+    }
+
+    private void cursorOver(String... userIds) {
+        Stream<UserSettings> cursor = Stream.of(userIds)
+                .map(TestDataFactory::createUserSettings)
+                .onClose(() -> cursorClosed.set(true));
+        when(mongoTemplate.stream(any(Query.class), eq(UserSettings.class))).thenReturn(cursor);
+    }
+}
@@ -0,0 +1,146 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.SyncExecutor;
+import com.statusbeat.statusbeat.service.SyncExecutor.SyncCycleStats;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("SyncExecutor")
+class SyncExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SyncExecutor syncExecutor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        syncExecutor = new SyncExecutor(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        syncExecutor.shutdown();
+    }
+
+    @Nested
+    @DisplayName("runCycle")
+    class RunCycleTests {
+
+        @Test
+        @DisplayName("should sync every user before returning")
+        void shouldSyncEveryUserBeforeReturning() {
+            List<User> users = users(200);
+            Set<String> synced = ConcurrentHashMap.newKeySet();
+
+            Optional<SyncCycleStats> stats = syncExecutor.runCycle(users, user -> synced.add(user.getId()));
+
+            assertThat(synced).hasSize(200);
+            assertThat(stats).isPresent();
+            assertThat(stats.get().users()).isEqualTo(200);
+            assertThat(stats.get().failed()).isZero();
+        }
+
+        @Test
+        @DisplayName("should isolate failures to the failing user")
+        void shouldIsolateFailures() {
+            List<User> users = users(10);
+            AtomicInteger completed = new AtomicInteger();
+
+            Optional<SyncCycleStats> stats = syncExecutor.runCycle(users, user -> {
+                if (user == users.get(3)) {
+                    throw new RuntimeException("Spotify unavailable");
+                }
+                completed.incrementAndGet();
+            });
+
+            assertThat(completed).hasValue(9);
+            assertThat(stats.get().failed()).isEqualTo(1);
+            assertThat(meterRegistry.get("statusbeat.sync.user.failures").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should never exceed the configured concurrency")
+        void shouldNeverExceedConfiguredConcurrency() {
+            ReflectionTestUtils.setField(syncExecutor, "maxConcurrency", 4);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxObserved = new AtomicInteger();
+
+            syncExecutor.runCycle(users(50), user -> {
+                int now = running.incrementAndGet();
+                maxObserved.accumulateAndGet(now, Math::max);
+                sleep(5);
+                running.decrementAndGet();
+            });
+
+            assertThat(maxObserved.get()).isBetween(1, 4);
+        }
+
+        @Test
+        @DisplayName("should skip a cycle while the previous one is still running")
+        void shouldSkipOverlappingCycle() throws Exception {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+
+            Thread firstCycle = Thread.ofVirtual().start(() -> syncExecutor.runCycle(users(1), user -> {
+                started.countDown();
+                await(release);
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Optional<SyncCycleStats> overlapping = syncExecutor.runCycle(users(1), user -> { });
+
+            release.countDown();
+            firstCycle.join();
+            assertThat(overlapping).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should report cycle timing and throughput")
+        void shouldReportCycleTimingAndThroughput() {
+            Optional<SyncCycleStats> stats = syncExecutor.runCycle(users(20), user -> sleep(2));
+
+            assertThat(stats.get().usersPerSecond()).isPositive();
+            assertThat(stats.get().p99Ms()).isGreaterThanOrEqualTo(stats.get().p50Ms());
+            assertThat(meterRegistry.get("statusbeat.sync.cycle.duration").timer().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("statusbeat.sync.user.duration").timer().count()).isEqualTo(20);
+        }
+    }
+
+    private static List<User> users(int count) {
+        return IntStream.range(0, count).mapToObj(i -> TestDataFactory.createUserWithSpotify()).toList();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
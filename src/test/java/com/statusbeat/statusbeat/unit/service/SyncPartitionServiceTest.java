@@ -0,0 +1,290 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.PartitionLease;
+import com.statusbeat.statusbeat.model.SyncNode;
+import com.statusbeat.statusbeat.repository.PartitionLeaseRepository;
+import com.statusbeat.statusbeat.repository.SyncNodeRepository;
+import com.statusbeat.statusbeat.service.SyncPartitionService;
+import com.statusbeat.statusbeat.service.SyncPartitionService.PartitionsChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SyncPartitionService")
+class SyncPartitionServiceTest {
+
+    private static final int BUCKETS = 64;
+
+    private final Map<Integer, PartitionLease> leases = new ConcurrentHashMap<>();
+    private final Map<String, SyncNode> nodes = new ConcurrentHashMap<>();
+    private PartitionLeaseRepository partitionLeaseRepository;
+    private SyncNodeRepository syncNodeRepository;
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        partitionLeaseRepository = mock(PartitionLeaseRepository.class);
+        syncNodeRepository = mock(SyncNodeRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        // In-memory stand-ins for the two collections, shared by every node in a test
+        when(partitionLeaseRepository.findAll()).thenAnswer(inv -> leases.values().stream().map(this::copy).toList());
+        when(partitionLeaseRepository.save(any())).thenAnswer(inv -> {
+            PartitionLease lease = inv.getArgument(0);
+            leases.put(lease.getBucket(), copy(lease));
+            return lease;
+        });
+        doAnswer(inv -> {
+            PartitionLease lease = inv.getArgument(0);
+            leases.computeIfPresent(lease.getBucket(),
+                    (bucket, stored) -> stored.getOwnerId().equals(lease.getOwnerId()) ? null : stored);
+            return null;
+        }).when(partitionLeaseRepository).delete(any());
+        when(partitionLeaseRepository.findByOwnerId(anyString())).thenAnswer(inv -> leases.values().stream()
+                .filter(lease -> lease.getOwnerId().equals(inv.getArgument(0)))
+                .map(this::copy)
+                .toList());
+
+        when(syncNodeRepository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(nodes.get(inv.getArgument(0))));
+        when(syncNodeRepository.save(any())).thenAnswer(inv -> {
+            SyncNode node = inv.getArgument(0);
+            nodes.put(node.getId(), node);
+            return node;
+        });
+        when(syncNodeRepository.findByExpiresAtAfter(any())).thenAnswer(inv -> nodes.values().stream()
+                .filter(node -> node.getExpiresAt().isAfter(inv.getArgument(0)))
+                .toList());
+        doAnswer(inv -> nodes.remove(inv.getArgument(0))).when(syncNodeRepository).deleteById(anyString());
+    }
+
+    @Nested
+    @DisplayName("disabled")
+    class DisabledTests {
+
+        @Test
+        @DisplayName("should own every user without touching Mongo")
+        void shouldOwnEveryUser() {
+            SyncPartitionService service = node(false);
+
+            service.heartbeat();
+
+            assertThat(service.owns("any-user")).isTrue();
+            verifyNoInteractions(partitionLeaseRepository, syncNodeRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("bucketOf")
+    class BucketOfTests {
+
+        @Test
+        @DisplayName("should map users to a stable bucket in range")
+        void shouldMapToStableBucket() {
+            SyncPartitionService service = node(true);
+
+            for (int i = 0; i < 1000; i++) {
+                int bucket = service.bucketOf("user-" + i);
+                assertThat(bucket).isBetween(0, BUCKETS - 1);
+                assertThat(service.bucketOf("user-" + i)).isEqualTo(bucket);
+            }
+        }
+
+        @Test
+        @DisplayName("should spread users across buckets")
+        void shouldSpreadUsers() {
+            SyncPartitionService service = node(true);
+            int[] counts = new int[BUCKETS];
+
+            for (int i = 0; i < 64_000; i++) {
+                counts[service.bucketOf("user-" + i)]++;
+            }
+
+            assertThat(IntStream.of(counts).min().orElseThrow()).isGreaterThan(800);
+            assertThat(IntStream.of(counts).max().orElseThrow()).isLessThan(1200);
+        }
+    }
+
+    @Nested
+    @DisplayName("heartbeat")
+    class HeartbeatTests {
+
+        @Test
+        @DisplayName("should take every partition when alone")
+        void shouldTakeEveryPartitionWhenAlone() {
+            SyncPartitionService service = node(true);
+
+            service.heartbeat();
+
+            assertThat(service.getOwnedBuckets()).hasSize(BUCKETS);
+            assertThat(service.owns("user-1")).isTrue();
+            verify(eventPublisher).publishEvent(any(PartitionsChangedEvent.class));
+        }
+
+        @Test
+        @DisplayName("should hand partitions over when a node joins")
+        void shouldRebalanceWhenNodeJoins() {
+            SyncPartitionService first = node(true);
+            SyncPartitionService second = node(true);
+
+            first.heartbeat();
+            second.heartbeat();
+            // The second node waits until the first has released its share
+            assertThat(second.getOwnedBuckets()).isEmpty();
+
+            first.heartbeat();
+            second.heartbeat();
+
+            assertDisjointAndComplete(first, second);
+            assertThat(first.getOwnedBuckets().size()).isBetween(16, 48);
+        }
+
+        @Test
+        @DisplayName("should take over partitions of a node that died")
+        void shouldTakeOverFromDeadNode() {
+            SyncPartitionService first = node(true);
+            SyncPartitionService second = node(true);
+            first.heartbeat();
+            second.heartbeat();
+            first.heartbeat();
+            second.heartbeat();
+
+            // The second node stops heartbeating and everything it held expires
+            LocalDateTime past = LocalDateTime.now().minusMinutes(1);
+            nodes.get(second.getNodeId()).setExpiresAt(past);
+            leases.values().stream()
+                    .filter(lease -> lease.getOwnerId().equals(second.getNodeId()))
+                    .forEach(lease -> lease.setExpiresAt(past));
+
+            first.heartbeat();
+
+            assertThat(first.getOwnedBuckets()).hasSize(BUCKETS);
+        }
+
+        @Test
+        @DisplayName("should release partitions on shutdown")
+        void shouldReleaseOnShutdown() {
+            SyncPartitionService first = node(true);
+            SyncPartitionService second = node(true);
+            first.heartbeat();
+            second.heartbeat();
+            first.heartbeat();
+            second.heartbeat();
+
+            second.shutdown();
+            first.heartbeat();
+
+            assertThat(second.owns("user-1")).isFalse();
+            assertThat(first.getOwnedBuckets()).hasSize(BUCKETS);
+        }
+
+        @Test
+        @DisplayName("should move only a share of partitions when a third node joins")
+        void shouldMoveOnlyAShare() {
+            SyncPartitionService first = node(true);
+            SyncPartitionService second = node(true);
+            settle(first, second);
+            Set<Integer> firstBefore = new HashSet<>(first.getOwnedBuckets());
+
+            SyncPartitionService third = node(true);
+            settle(first, second, third);
+
+            assertDisjointAndComplete(first, second, third);
+            // Rendezvous hashing: the first node only loses buckets, it never swaps them for others
+            assertThat(firstBefore).containsAll(first.getOwnedBuckets());
+        }
+
+        @Test
+        @DisplayName("should stop syncing while a heartbeat is overdue and win its leases back once it runs")
+        void shouldRecoverFromLateHeartbeat() {
+            SyncPartitionService service = node(true);
+            service.heartbeat();
+            Set<Integer> owned = Set.copyOf(service.getOwnedBuckets());
+
+            // The next heartbeat comes later than the lease TTL: our validity and the stored leases both lapse
+            ReflectionTestUtils.setField(service, "leasesValidUntilMs", System.currentTimeMillis() - 1);
+            LocalDateTime past = LocalDateTime.now().minusMinutes(1);
+            nodes.get(service.getNodeId()).setExpiresAt(past);
+            leases.values().forEach(lease -> lease.setExpiresAt(past));
+
+            assertThat(service.owns("user-1")).isFalse();
+
+            service.heartbeat();
+
+            assertThat(service.owns("user-1")).isTrue();
+            assertThat(service.getOwnedBuckets()).isEqualTo(owned);
+            // Same buckets as before, so nothing was handed around
+            verify(eventPublisher, times(1)).publishEvent(any(PartitionsChangedEvent.class));
+        }
+
+        @Test
+        @DisplayName("should heartbeat on its own thread once started")
+        void shouldHeartbeatOnItsOwnThread() {
+            SyncPartitionService service = node(true);
+            ReflectionTestUtils.setField(service, "heartbeatIntervalMs", 10L);
+
+            service.start();
+            try {
+                await().atMost(Duration.ofSeconds(5)).until(() -> service.owns("user-1"));
+                assertThat(service.getOwnedBuckets()).hasSize(BUCKETS);
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    private SyncPartitionService node(boolean enabled) {
+        SyncPartitionService service = new SyncPartitionService(partitionLeaseRepository, syncNodeRepository,
+                eventPublisher, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", enabled);
+        ReflectionTestUtils.setField(service, "bucketCount", BUCKETS);
+        return service;
+    }
+
+    private static void settle(SyncPartitionService... services) {
+        for (int round = 0; round < 3; round++) {
+            for (SyncPartitionService service : services) {
+                service.heartbeat();
+            }
+        }
+    }
+
+    private static void assertDisjointAndComplete(SyncPartitionService... services) {
+        List<Integer> all = new ArrayList<>();
+        for (SyncPartitionService service : services) {
+            all.addAll(service.getOwnedBuckets());
+        }
+        assertThat(all).doesNotHaveDuplicates();
+        assertThat(all).hasSize(BUCKETS);
+    }
+
+    private PartitionLease copy(PartitionLease lease) {
+        return PartitionLease.builder()
+                .bucket(lease.getBucket())
+                .ownerId(lease.getOwnerId())
+                .heartbeatAt(lease.getHeartbeatAt())
+                .expiresAt(lease.getExpiresAt())
+                .version(lease.getVersion())
+                .build();
+    }
+}
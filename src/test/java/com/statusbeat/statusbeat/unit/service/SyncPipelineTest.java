@@ -0,0 +1,180 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.service.SyncPipeline;
+import com.statusbeat.statusbeat.service.SyncPipeline.Stage;
+import com.statusbeat.statusbeat.service.SyncStage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SyncPipeline")
+class SyncPipelineTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SyncPipeline syncPipeline;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        syncPipeline = new SyncPipeline(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        syncPipeline.shutdown();
+    }
+
+    @Nested
+    @DisplayName("createStage")
+    class CreateStageTests {
+
+        @Test
+        @DisplayName("should hand items from one stage to the next")
+        void shouldChainStages() throws Exception {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            SyncStage<StringBuilder> persist = syncPipeline.createStage(Stage.PERSIST,
+                    item -> result.complete(item.append("-persisted").toString()), (item, e) -> { });
+            SyncStage<StringBuilder> fetch = syncPipeline.createStage(Stage.FETCH,
+                    item -> persist.submit(item.append("fetched")), (item, e) -> { });
+
+            fetch.submit(new StringBuilder());
+
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("fetched-persisted");
+        }
+
+        @Test
+        @DisplayName("should pass handler failures to the error callback")
+        void shouldReportFailures() throws Exception {
+            CompletableFuture<Throwable> failure = new CompletableFuture<>();
+            SyncStage<String> stage = syncPipeline.createStage(Stage.PUBLISH,
+                    item -> {
+                        throw new IllegalStateException("Slack unavailable");
+                    },
+                    (item, e) -> failure.complete(e));
+
+            stage.submit("user-1");
+
+            assertThat(failure.get(5, TimeUnit.SECONDS)).hasMessage("Slack unavailable");
+        }
+
+        @Test
+        @DisplayName("should never run more handlers than the stage concurrency")
+        void shouldBoundConcurrency() throws Exception {
+            ReflectionTestUtils.setField(syncPipeline, "publishConcurrency", 3);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxObserved = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(30);
+            SyncStage<Integer> stage = syncPipeline.createStage(Stage.PUBLISH, item -> {
+                maxObserved.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                done.countDown();
+            }, (item, e) -> { });
+
+            for (int i = 0; i < 30; i++) {
+                stage.submit(i);
+            }
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(maxObserved.get()).isBetween(1, 3);
+        }
+
+        @Test
+        @DisplayName("should block producers while a slow stage is full")
+        void shouldApplyBackpressure() throws Exception {
+            ReflectionTestUtils.setField(syncPipeline, "publishConcurrency", 1);
+            ReflectionTestUtils.setField(syncPipeline, "queueCapacity", 2);
+            CountDownLatch release = new CountDownLatch(1);
+            SyncStage<Integer> slow = syncPipeline.createStage(Stage.PUBLISH, item -> release.await(),
+                    (item, e) -> { });
+
+            // One item in the worker, two queued: the fourth has to wait
+            slow.submit(1);
+            Thread.sleep(50);
+            slow.submit(2);
+            slow.submit(3);
+            Thread producer = Thread.ofVirtual().start(() -> {
+                try {
+                    slow.submit(4);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            producer.join(200);
+            assertThat(producer.isAlive()).isTrue();
+            assertThat(slow.queueDepth()).isEqualTo(2);
+
+            release.countDown();
+            producer.join(5000);
+            assertThat(producer.isAlive()).isFalse();
+        }
+
+        @Test
+        @DisplayName("should expose queue depth and service time per stage")
+        void shouldExposeStageMetrics() throws Exception {
+            CountDownLatch done = new CountDownLatch(1);
+            SyncStage<String> stage = syncPipeline.createStage(Stage.DIFF, item -> done.countDown(), (item, e) -> { });
+
+            stage.submit("user-1");
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(meterRegistry.get("statusbeat.sync.stage.queue.depth").tag("stage", "diff").gauge())
+                    .isNotNull();
+            assertThat(meterRegistry.get("statusbeat.sync.stage.wait.time").tag("stage", "diff").timer().count())
+                    .isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("shutdown")
+    class ShutdownTests {
+
+        @Test
+        @DisplayName("should fail items still waiting in the queue")
+        void shouldFailQueuedItems() throws Exception {
+            ReflectionTestUtils.setField(syncPipeline, "publishConcurrency", 1);
+            CountDownLatch started = new CountDownLatch(1);
+            List<String> failed = new CopyOnWriteArrayList<>();
+            SyncStage<String> stage = syncPipeline.createStage(Stage.PUBLISH, item -> {
+                started.countDown();
+                new CountDownLatch(1).await();
+            }, (item, e) -> failed.add(item));
+
+            stage.submit("in-flight");
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            stage.submit("queued-1");
+            stage.submit("queued-2");
+
+            syncPipeline.shutdown();
+
+            assertThat(failed).contains("queued-1", "queued-2");
+            assertThat(stage.queueDepth()).isZero();
+        }
+
+        @Test
+        @DisplayName("should reject items submitted after shutdown")
+        void shouldRejectLateItems() {
+            SyncStage<String> stage = syncPipeline.createStage(Stage.FETCH, item -> { }, (item, e) -> { });
+
+            syncPipeline.shutdown();
+
+            assertThatThrownBy(() -> stage.submit("user-1")).isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+}
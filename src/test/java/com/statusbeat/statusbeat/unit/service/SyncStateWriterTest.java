@@ -0,0 +1,165 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.SyncStateWriter;
+import com.statusbeat.statusbeat.testutil.TestBase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SyncStateWriter")
+class SyncStateWriterTest extends TestBase {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SyncStateWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        writer = new SyncStateWriter(mongoTemplate, meterRegistry);
+        lenient().when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class))
+                .thenReturn(bulkOperations);
+        lenient().when(bulkOperations.updateOne(any(Query.class), any(Update.class))).thenReturn(bulkOperations);
+    }
+
+    @Nested
+    @DisplayName("flush")
+    class FlushTests {
+
+        @Test
+        @DisplayName("should write every user in one unordered bulk, one update per user")
+        void shouldMergeWritesPerUser() {
+            writer.clearCurrentlyPlaying("user-1");
+            writer.setStatusCleared("user-1", true);
+            writer.setStatusCleared("user-2", false);
+
+            writer.flush();
+
+            verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+            verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+            verify(bulkOperations).execute();
+            assertThat(updates.getAllValues()).extracting(update -> (Document) update.getUpdateObject().get("$set"))
+                    .anySatisfy(set -> assertThat(set).containsEntry("statusCleared", true)
+                            .containsEntry("currentlyPlayingSongId", null));
+            assertThat(writer.pendingUsers()).isZero();
+            assertThat(meterRegistry.get("statusbeat.sync.state.flush.size").summary().totalAmount()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("should only apply a track change while the stored track is the expected one")
+        void shouldKeepTrackChangeConditional() {
+            writer.updateCurrentlyPlaying("user-1", "track-1", "track-2", "Song", "Artist");
+            writer.setStatusCleared("user-1", false);
+
+            writer.flush();
+
+            ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+            verify(bulkOperations, times(2)).updateOne(queries.capture(), any(Update.class));
+            assertThat(queries.getAllValues()).extracting(Query::getQueryObject)
+                    .anySatisfy(query -> assertThat(query).containsEntry("currentlyPlayingSongId", "track-1"));
+        }
+
+        @Test
+        @DisplayName("should settle a track change against a clear buffered before it")
+        void shouldSettleConditionAgainstBufferedClear() {
+            writer.clearCurrentlyPlaying("user-1");
+            writer.updateCurrentlyPlaying("user-1", null, "track-2", "Song", "Artist");
+
+            writer.flush();
+
+            ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+            verify(bulkOperations).updateOne(any(Query.class), updates.capture());
+            Document set = (Document) updates.getValue().getUpdateObject().get("$set");
+            assertThat(set).containsEntry("currentlyPlayingSongId", "track-2");
+        }
+
+        @Test
+        @DisplayName("should do nothing when nothing is buffered")
+        void shouldSkipEmptyFlush() {
+            writer.flush();
+
+            verifyNoInteractions(mongoTemplate);
+        }
+    }
+
+    @Nested
+    @DisplayName("failures")
+    class FailureTests {
+
+        @Test
+        @DisplayName("should retry only the users whose updates failed")
+        void shouldRequeueFailedUsers() {
+            writer.setStatusCleared("user-1", true);
+            writer.setStatusCleared("user-2", true);
+            BulkOperationException failure = mock(BulkOperationException.class);
+            when(failure.getErrors()).thenReturn(List.of(new BulkWriteError(11000, "boom", new BsonDocument(), 1)));
+            when(bulkOperations.execute()).thenThrow(failure);
+
+            writer.flush();
+
+            assertThat(writer.pendingUsers()).isEqualTo(1);
+            assertThat(meterRegistry.get("statusbeat.sync.state.flush.failures").tag("result", "retried")
+                    .counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should let newer buffered values win over a retried write")
+        void shouldKeepNewerValuesOverRetry() {
+            writer.setStatusCleared("user-1", true);
+            BulkOperationException failure = mock(BulkOperationException.class);
+            when(failure.getErrors()).thenReturn(List.of(new BulkWriteError(1, "boom", new BsonDocument(), 0)));
+            when(bulkOperations.execute()).thenThrow(failure).thenReturn(null);
+            writer.flush();
+
+            writer.setStatusCleared("user-1", false);
+            writer.flush();
+
+            ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+            verify(bulkOperations, times(2)).updateOne(any(Query.class), updates.capture());
+            Document set = (Document) updates.getAllValues().get(1).getUpdateObject().get("$set");
+            assertThat(set).containsEntry("statusCleared", false);
+        }
+
+        @Test
+        @DisplayName("should give up on a write after the maximum attempts")
+        void shouldDropAfterMaxAttempts() {
+            writer.setStatusCleared("user-1", true);
+            BulkOperationException failure = mock(BulkOperationException.class);
+            when(failure.getErrors()).thenReturn(List.of(new BulkWriteError(1, "boom", new BsonDocument(), 0)));
+            when(bulkOperations.execute()).thenThrow(failure);
+
+            for (int i = 0; i < 3; i++) {
+                writer.flush();
+            }
+
+            assertThat(writer.pendingUsers()).isZero();
+            assertThat(meterRegistry.get("statusbeat.sync.state.flush.failures").tag("result", "dropped")
+                    .counter().count()).isEqualTo(1);
+        }
+    }
+}
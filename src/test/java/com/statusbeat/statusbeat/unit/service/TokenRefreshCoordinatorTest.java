@@ -0,0 +1,195 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.model.User;
+import com.statusbeat.statusbeat.service.TokenRefreshCoordinator;
+import com.statusbeat.statusbeat.testutil.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TokenRefreshCoordinator")
+class TokenRefreshCoordinatorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRefreshCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coordinator = new TokenRefreshCoordinator(meterRegistry);
+    }
+
+    @Nested
+    @DisplayName("refresh")
+    class RefreshTests {
+
+        @Test
+        @DisplayName("should run one refresh for concurrent callers and share its result")
+        void shouldShareInFlightRefresh() throws Exception {
+            User refreshedUser = TestDataFactory.createUserWithSpotify();
+            AtomicInteger calls = new AtomicInteger();
+            CountDownLatch leaderStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<User> results = Collections.synchronizedList(new ArrayList<>());
+
+            Thread leader = Thread.ofVirtual().start(() -> results.add(refresh("user-1", () -> {
+                calls.incrementAndGet();
+                leaderStarted.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return refreshedUser;
+            })));
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Thread> followers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                followers.add(Thread.ofVirtual().start(() -> {
+                    results.add(refresh("user-1", () -> {
+                        calls.incrementAndGet();
+                        return TestDataFactory.createUserWithSpotify();
+                    }));
+                }));
+            }
+            waitForDeduplicated(4);
+            release.countDown();
+            leader.join();
+            for (Thread follower : followers) {
+                follower.join();
+            }
+
+            assertThat(calls).hasValue(1);
+            assertThat(results).hasSize(5).allMatch(user -> user == refreshedUser);
+        }
+
+        @Test
+        @DisplayName("should hand the leader's failure to every waiting caller")
+        void shouldShareFailure() throws Exception {
+            CountDownLatch leaderStarted = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+
+            Thread leader = Thread.ofVirtual().start(() -> {
+                try {
+                    coordinator.refresh("user-1", () -> {
+                        leaderStarted.countDown();
+                        awaitQuietly(release);
+                        throw new BadRequestException("invalid_grant");
+                    });
+                } catch (Exception ignored) {
+                    // Expected
+                }
+            });
+            assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            Thread follower = Thread.ofVirtual().start(() -> {
+                try {
+                    coordinator.refresh("user-1", TestDataFactory::createUserWithSpotify);
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            });
+            waitForDeduplicated(1);
+            release.countDown();
+            leader.join();
+            follower.join();
+
+            assertThat(failures).singleElement().isInstanceOf(BadRequestException.class);
+        }
+
+        @Test
+        @DisplayName("should refresh again once the previous refresh has finished")
+        void shouldRunSequentialRefreshes() throws Exception {
+            AtomicInteger calls = new AtomicInteger();
+
+            coordinator.refresh("user-1", () -> {
+                calls.incrementAndGet();
+                return TestDataFactory.createUserWithSpotify();
+            });
+            coordinator.refresh("user-1", () -> {
+                calls.incrementAndGet();
+                return TestDataFactory.createUserWithSpotify();
+            });
+
+            assertThat(calls).hasValue(2);
+        }
+
+        @Test
+        @DisplayName("should not serialize refreshes of different users")
+        void shouldKeepUsersIndependent() throws Exception {
+            CountDownLatch bothRunning = new CountDownLatch(2);
+
+            Thread first = Thread.ofVirtual().start(() -> refresh("user-1", () -> {
+                bothRunning.countDown();
+                bothRunning.await(5, TimeUnit.SECONDS);
+                return TestDataFactory.createUserWithSpotify();
+            }));
+            Thread second = Thread.ofVirtual().start(() -> refresh("user-2", () -> {
+                bothRunning.countDown();
+                bothRunning.await(5, TimeUnit.SECONDS);
+                return TestDataFactory.createUserWithSpotify();
+            }));
+            first.join();
+            second.join();
+
+            assertThat(bothRunning.getCount()).isZero();
+            assertThat(executedCount()).isEqualTo(2);
+        }
+    }
+
+    private User refresh(String userId, InterruptibleCall call) {
+        try {
+            return coordinator.refresh(userId, () -> {
+                try {
+                    return call.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitForDeduplicated(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (deduplicatedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(deduplicatedCount()).isEqualTo(expected);
+    }
+
+    private double deduplicatedCount() {
+        return meterRegistry.get("statusbeat.spotify.token.refresh.calls").tag("outcome", "deduplicated")
+                .counter().count();
+    }
+
+    private double executedCount() {
+        return meterRegistry.get("statusbeat.spotify.token.refresh.calls").tag("outcome", "executed")
+                .counter().count();
+    }
+
+    @FunctionalInterface
+    private interface InterruptibleCall {
+        User run() throws InterruptedException;
+    }
+}
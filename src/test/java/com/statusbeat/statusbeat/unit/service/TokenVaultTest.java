@@ -0,0 +1,135 @@
+package com.statusbeat.statusbeat.unit.service;
+
+import com.statusbeat.statusbeat.service.TokenVault;
+import com.statusbeat.statusbeat.service.TokenVault.TokenKind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TokenVault")
+class TokenVaultTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenVault tokenVault;
+    private AtomicInteger decryptCalls;
+    private UnaryOperator<String> decryptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenVault = new TokenVault(meterRegistry);
+        decryptCalls = new AtomicInteger();
+        decryptor = ciphertext -> {
+            decryptCalls.incrementAndGet();
+            return "plain-" + ciphertext;
+        };
+    }
+
+    @Nested
+    @DisplayName("get")
+    class GetTests {
+
+        @Test
+        @DisplayName("should decrypt once and serve repeated lookups from the vault")
+        void shouldServeRepeatedLookupsFromVault() {
+            String first = tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+            String second = tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+
+            assertThat(first).isEqualTo("plain-cipher-a");
+            assertThat(second).isEqualTo("plain-cipher-a");
+            assertThat(decryptCalls).hasValue(1);
+            assertThat(requests("hit")).isEqualTo(1);
+            assertThat(requests("miss")).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should decrypt again when the ciphertext changes")
+        void shouldMissWhenCiphertextChanges() {
+            tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+
+            String result = tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-b", decryptor);
+
+            assertThat(result).isEqualTo("plain-cipher-b");
+            assertThat(decryptCalls).hasValue(2);
+            assertThat(tokenVault.size()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should keep token kinds of the same user separate")
+        void shouldKeepTokenKindsSeparate() {
+            tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+            tokenVault.get("user-1", TokenKind.SLACK_ACCESS, "cipher-s", decryptor);
+
+            assertThat(tokenVault.size()).isEqualTo(2);
+            assertThat(tokenVault.get("user-1", TokenKind.SLACK_ACCESS, "cipher-s", decryptor))
+                    .isEqualTo("plain-cipher-s");
+        }
+
+        @Test
+        @DisplayName("should bypass the vault for users without an id")
+        void shouldBypassVaultWithoutUserId() {
+            tokenVault.get(null, TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+            tokenVault.get(null, TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+
+            assertThat(decryptCalls).hasValue(2);
+            assertThat(tokenVault.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("eviction")
+    class EvictionTests {
+
+        @Test
+        @DisplayName("should drop all tokens of a user on invalidate")
+        void shouldDropTokensOnInvalidate() {
+            tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+            tokenVault.get("user-1", TokenKind.SPOTIFY_REFRESH, "cipher-r", decryptor);
+            tokenVault.get("user-2", TokenKind.SPOTIFY_ACCESS, "cipher-b", decryptor);
+
+            tokenVault.invalidate("user-1");
+
+            assertThat(tokenVault.size()).isEqualTo(1);
+            tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+            assertThat(decryptCalls).hasValue(4);
+        }
+
+        @Test
+        @DisplayName("should expire entries after the TTL")
+        void shouldExpireEntriesAfterTtl() {
+            ReflectionTestUtils.setField(tokenVault, "ttlMs", 0L);
+            tokenVault.get("user-1", TokenKind.SPOTIFY_ACCESS, "cipher-a", decryptor);
+
+            tokenVault.evictExpired();
+
+            assertThat(tokenVault.size()).isZero();
+            assertThat(meterRegistry.get("statusbeat.token.vault.evictions").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should stay within the configured max size")
+        void shouldStayWithinMaxSize() {
+            ReflectionTestUtils.setField(tokenVault, "maxSize", 10);
+
+            for (int i = 0; i < 50; i++) {
+                tokenVault.get("user-" + i, TokenKind.SPOTIFY_ACCESS, "cipher-" + i, decryptor);
+            }
+
+            assertThat(tokenVault.size()).isLessThanOrEqualTo(10);
+            assertThat(meterRegistry.get("statusbeat.token.vault.size").gauge().value())
+                    .isEqualTo(tokenVault.size());
+        }
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("statusbeat.token.vault.requests").tag("result", result).counter().count();
+    }
+}
@@ -1,22 +1,35 @@
 package com.statusbeat.statusbeat.unit.service;
 
+import com.mongodb.client.result.UpdateResult;
 import com.statusbeat.statusbeat.model.User;
 import com.statusbeat.statusbeat.model.UserSettings;
 import com.statusbeat.statusbeat.repository.UserRepository;
 import com.statusbeat.statusbeat.repository.UserSettingsRepository;
+import com.statusbeat.statusbeat.service.InstallationCache;
+import com.statusbeat.statusbeat.service.PollScheduler;
+import com.statusbeat.statusbeat.service.SyncStateWriter;
+import com.statusbeat.statusbeat.service.TokenVault;
 import com.statusbeat.statusbeat.service.UserService;
 import com.statusbeat.statusbeat.testutil.TestBase;
 import com.statusbeat.statusbeat.testutil.TestDataFactory;
 import com.statusbeat.statusbeat.util.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -35,11 +48,26 @@ class UserServiceTest extends TestBase {
     @Mock
     private EncryptionUtil encryptionUtil;
 
+    @Mock
+    private SyncStateWriter syncStateWriter;
+
+    @Mock
+    private InstallationCache installationCache;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private PollScheduler pollScheduler;
+
     private UserService userService;
 
     @BeforeEach
     void setUp() {
-        userService = new UserService(userRepository, userSettingsRepository, encryptionUtil);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pollScheduler = new PollScheduler(meterRegistry);
+        userService = new UserService(userRepository, userSettingsRepository, encryptionUtil,
+                new TokenVault(meterRegistry), pollScheduler, syncStateWriter, installationCache,
+                mongoTemplate);
     }
 
     @Nested
@@ -70,31 +98,53 @@ class UserServiceTest extends TestBase {
     }
 
     @Nested
-    @DisplayName("findAllActiveUsers")
-    class FindAllActiveUsersTests {
+    @DisplayName("findSyncCandidates")
+    class FindSyncCandidatesTests {
 
         @Test
-        @DisplayName("should return list of active users")
-        void shouldReturnActiveUsers() {
-            List<User> activeUsers = List.of(
-                    TestDataFactory.createUser("U1"),
-                    TestDataFactory.createUser("U2")
-            );
-            when(userRepository.findByActiveTrue()).thenReturn(activeUsers);
+        @DisplayName("should look up candidates among the given users")
+        void shouldLookUpCandidatesByIds() {
+            User user = TestDataFactory.createUserWithSpotify();
+            when(userRepository.findSyncCandidatesByIdIn(List.of(user.getId(), "gone"))).thenReturn(List.of(user));
 
-            List<User> result = userService.findAllActiveUsers();
+            List<User> result = userService.findSyncCandidates(List.of(user.getId(), "gone"));
 
-            assertThat(result).hasSize(2);
+            assertThat(result).containsExactly(user);
         }
 
         @Test
-        @DisplayName("should return empty list when no active users")
-        void shouldReturnEmptyListWhenNoActiveUsers() {
-            when(userRepository.findByActiveTrue()).thenReturn(List.of());
+        @DisplayName("should not query for no users")
+        void shouldSkipQueryForNoUsers() {
+            assertThat(userService.findSyncCandidates(List.of())).isEmpty();
 
-            List<User> result = userService.findAllActiveUsers();
+            verifyNoInteractions(userRepository);
+        }
+    }
 
-            assertThat(result).isEmpty();
+    @Nested
+    @DisplayName("getUserSettingsByUserIds")
+    class GetUserSettingsByUserIdsTests {
+
+        @Test
+        @DisplayName("should load every user's settings in one query, keyed by user id")
+        void shouldLoadSettingsInOneQuery() {
+            UserSettings settings1 = TestDataFactory.createUserSettings("user-1");
+            UserSettings settings2 = TestDataFactory.createUserSettings("user-2");
+            when(userSettingsRepository.findByUserIdIn(List.of("user-1", "user-2", "user-3")))
+                    .thenReturn(List.of(settings1, settings2));
+
+            Map<String, UserSettings> result = userService.getUserSettingsByUserIds(
+                    List.of("user-1", "user-2", "user-3"));
+
+            assertThat(result).containsOnly(entry("user-1", settings1), entry("user-2", settings2));
+        }
+
+        @Test
+        @DisplayName("should not query for no users")
+        void shouldSkipQueryForNoUsers() {
+            assertThat(userService.getUserSettingsByUserIds(List.of())).isEmpty();
+
+            verifyNoInteractions(userSettingsRepository);
         }
     }
 
@@ -141,27 +191,37 @@ class UserServiceTest extends TestBase {
     class UpdateSpotifyTokensTests {
 
         @Test
-        @DisplayName("should encrypt and save Spotify tokens")
-        void shouldEncryptAndSaveTokens() {
-            User user = TestDataFactory.createUser();
-            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        @DisplayName("should set only the encrypted token fields")
+        void shouldSetOnlyTokenFields() {
+            User updated = TestDataFactory.createUserWithSpotify();
             when(encryptionUtil.encrypt("access-token")).thenReturn("encrypted-access");
             when(encryptionUtil.encrypt("refresh-token")).thenReturn("encrypted-refresh");
-            when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+            when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                    eq(User.class))).thenReturn(updated);
 
             User result = userService.updateSpotifyTokens(
-                    user.getId(), "spotify-123", "access-token", "refresh-token", 3600);
-
-            assertThat(result.getSpotifyUserId()).isEqualTo("spotify-123");
-            assertThat(result.getEncryptedSpotifyAccessToken()).isEqualTo("encrypted-access");
-            assertThat(result.getEncryptedSpotifyRefreshToken()).isEqualTo("encrypted-refresh");
-            assertThat(result.getSpotifyTokenExpiresAt()).isAfter(LocalDateTime.now());
+                    updated.getId(), "spotify-123", "access-token", "refresh-token", 3600);
+
+            assertThat(result).isSameAs(updated);
+            ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+            ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+            verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), options.capture(),
+                    eq(User.class));
+            Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+            assertThat(set).containsOnlyKeys("spotifyUserId", "encryptedSpotifyAccessToken",
+                    "encryptedSpotifyRefreshToken", "spotifyTokenExpiresAt", "updatedAt");
+            assertThat(set).containsEntry("encryptedSpotifyAccessToken", "encrypted-access")
+                    .containsEntry("encryptedSpotifyRefreshToken", "encrypted-refresh");
+            assertThat(set.get("spotifyTokenExpiresAt", LocalDateTime.class)).isAfter(LocalDateTime.now());
+            assertThat(options.getValue().isReturnNew()).isTrue();
+            verify(userRepository, never()).save(any());
         }
 
         @Test
         @DisplayName("should throw when user not found")
         void shouldThrowWhenUserNotFound() {
-            when(userRepository.findById("nonexistent")).thenReturn(Optional.empty());
+            when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                    eq(User.class))).thenReturn(null);
 
             assertThatThrownBy(() -> userService.updateSpotifyTokens(
                     "nonexistent", "spotify-123", "access", "refresh", 3600))
@@ -235,53 +295,6 @@ class UserServiceTest extends TestBase {
         }
     }
 
-    @Nested
-    @DisplayName("updateCurrentlyPlaying")
-    class UpdateCurrentlyPlayingTests {
-
-        @Test
-        @DisplayName("should update currently playing info")
-        void shouldUpdateCurrentlyPlayingInfo() {
-            User user = TestDataFactory.createUser();
-            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
-
-            userService.updateCurrentlyPlaying(user.getId(), "track-1", "Song Title", "Artist");
-
-            ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-            verify(userRepository).save(captor.capture());
-
-            User saved = captor.getValue();
-            assertThat(saved.getCurrentlyPlayingSongId()).isEqualTo("track-1");
-            assertThat(saved.getCurrentlyPlayingSongTitle()).isEqualTo("Song Title");
-            assertThat(saved.getCurrentlyPlayingArtist()).isEqualTo("Artist");
-            assertThat(saved.getLastSyncedAt()).isNotNull();
-        }
-    }
-
-    @Nested
-    @DisplayName("clearCurrentlyPlaying")
-    class ClearCurrentlyPlayingTests {
-
-        @Test
-        @DisplayName("should clear currently playing info")
-        void shouldClearCurrentlyPlayingInfo() {
-            User user = TestDataFactory.createUserWithCurrentlyPlaying();
-            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
-
-            userService.clearCurrentlyPlaying(user.getId());
-
-            ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-            verify(userRepository).save(captor.capture());
-
-            User saved = captor.getValue();
-            assertThat(saved.getCurrentlyPlayingSongId()).isNull();
-            assertThat(saved.getCurrentlyPlayingSongTitle()).isNull();
-            assertThat(saved.getCurrentlyPlayingArtist()).isNull();
-        }
-    }
-
     @Nested
     @DisplayName("startSync/stopSync")
     class SyncControlTests {
@@ -298,6 +311,11 @@ class UserServiceTest extends TestBase {
 
             userService.startSync(user.getId());
 
+            // Buffered sync state lands before the whole document is saved
+            InOrder inOrder = inOrder(syncStateWriter, userRepository);
+            inOrder.verify(syncStateWriter).flush(user.getId());
+            inOrder.verify(userRepository).save(any(User.class));
+
             ArgumentCaptor<UserSettings> settingsCaptor = ArgumentCaptor.forClass(UserSettings.class);
             verify(userSettingsRepository).save(settingsCaptor.capture());
             assertThat(settingsCaptor.getValue().isSyncActive()).isTrue();
@@ -306,6 +324,7 @@ class UserServiceTest extends TestBase {
             verify(userRepository).save(userCaptor.capture());
             assertThat(userCaptor.getValue().isManualStatusSet()).isFalse();
             assertThat(userCaptor.getValue().isStatusCleared()).isFalse();
+            assertThat(pollScheduler.isScheduled(user.getId())).isTrue();
         }
 
         @Test
@@ -315,12 +334,14 @@ class UserServiceTest extends TestBase {
             UserSettings settings = TestDataFactory.createUserSettingsWithSyncActive(user.getId());
             when(userSettingsRepository.findByUserId(user.getId())).thenReturn(Optional.of(settings));
             when(userSettingsRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+            pollScheduler.schedule(user.getId(), 10_000);
 
             userService.stopSync(user.getId());
 
             ArgumentCaptor<UserSettings> captor = ArgumentCaptor.forClass(UserSettings.class);
             verify(userSettingsRepository).save(captor.capture());
             assertThat(captor.getValue().isSyncActive()).isFalse();
+            assertThat(pollScheduler.isScheduled(user.getId())).isFalse();
         }
     }
 
@@ -332,36 +353,54 @@ class UserServiceTest extends TestBase {
         @DisplayName("should mark token as invalidated")
         void shouldMarkTokenInvalidated() {
             User user = TestDataFactory.createUser();
-            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(userRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+            stubUpdate(1, 1);
+            pollScheduler.schedule(user.getId(), 10_000);
 
             userService.setTokenInvalidated(user.getId(), true);
 
-            ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-            verify(userRepository).save(captor.capture());
-
-            User saved = captor.getValue();
-            assertThat(saved.isTokenInvalidated()).isTrue();
-            assertThat(saved.getTokenInvalidatedAt()).isNotNull();
-            assertThat(saved.isActive()).isFalse();
+            assertThat(pollScheduler.isScheduled(user.getId())).isFalse();
+            assertThat(capturedUpdate().getUpdateObject().get("$set", Document.class))
+                    .containsEntry("tokenInvalidated", true)
+                    .containsEntry("active", false);
+            verify(userRepository, never()).save(any());
         }
 
         @Test
         @DisplayName("should reactivate user when invalidation cleared")
         void shouldReactivateUser() {
             User user = TestDataFactory.createInvalidatedUser();
-            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-            when(userRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+            stubUpdate(1, 1);
 
             userService.setTokenInvalidated(user.getId(), false);
 
-            ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-            verify(userRepository).save(captor.capture());
+            assertThat(capturedUpdate().getUpdateObject().get("$set", Document.class))
+                    .containsEntry("tokenInvalidated", false)
+                    .containsEntry("tokenInvalidatedAt", null)
+                    .containsEntry("active", true);
+        }
+    }
+
+    @Nested
+    @DisplayName("targeted updates")
+    class TargetedUpdateTests {
+
+        @Test
+        @DisplayName("should accept a write that matches the user but changes nothing")
+        void shouldAcceptUnmodifiedMatch() {
+            stubUpdate(1, 0);
 
-            User saved = captor.getValue();
-            assertThat(saved.isTokenInvalidated()).isFalse();
-            assertThat(saved.getTokenInvalidatedAt()).isNull();
-            assertThat(saved.isActive()).isTrue();
+            assertThatCode(() -> userService.updateLastSetStatus("user-1", ":musical_note: Song - Artist"))
+                    .doesNotThrowAnyException();
+        }
+
+        @Test
+        @DisplayName("should throw when no user matches")
+        void shouldThrowWhenUserNotFound() {
+            stubUpdate(0, 0);
+
+            assertThatThrownBy(() -> userService.setManualStatusFlag("missing", true))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessage("User not found");
         }
     }
 
@@ -475,5 +514,38 @@ class UserServiceTest extends TestBase {
             inOrder.verify(userSettingsRepository).deleteByUserId(user.getId());
             inOrder.verify(userRepository).deleteById(user.getId());
         }
+
+        @Test
+        @DisplayName("should drop the user's cached Slack installations")
+        void shouldInvalidateInstallationCache() {
+            User user = TestDataFactory.createUser();
+            when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+            userService.deleteUserCompletely(user.getId());
+
+            verify(installationCache).invalidate(user.getSlackTeamId(), user.getSlackUserId());
+        }
+
+        @Test
+        @DisplayName("should leave the installation cache alone when the user is already gone")
+        void shouldSkipInvalidationForMissingUser() {
+            when(userRepository.findById("missing")).thenReturn(Optional.empty());
+
+            userService.deleteUserCompletely("missing");
+
+            verify(userRepository).deleteById("missing");
+            verifyNoInteractions(installationCache);
+        }
+    }
+
+    private void stubUpdate(long matched, long modified) {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(User.class)))
+                .thenReturn(UpdateResult.acknowledged(matched, modified, null));
+    }
+
+    private Update capturedUpdate() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(User.class));
+        return update.getValue();
     }
 }
@@ -0,0 +1,57 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.Batches;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Batches")
+class BatchesTest {
+
+    @Test
+    @DisplayName("should hand the loader full batches and a final partial one")
+    void shouldSplitIntoBatches() {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        Iterator<Integer> result = Batches.flatMap(List.of(1, 2, 3, 4, 5).iterator(), 2, batch -> {
+            batches.add(batch);
+            return batch;
+        });
+
+        assertThat(result).toIterable().containsExactly(1, 2, 3, 4, 5);
+        assertThat(batches).containsExactly(List.of(1, 2), List.of(3, 4), List.of(5));
+    }
+
+    @Test
+    @DisplayName("should load the next batch only when the current one is used up")
+    void shouldLoadLazily() {
+        List<List<Integer>> batches = new ArrayList<>();
+        Iterator<Integer> result = Batches.flatMap(List.of(1, 2, 3).iterator(), 2, batch -> {
+            batches.add(batch);
+            return batch;
+        });
+
+        result.next();
+        result.next();
+
+        assertThat(batches).containsExactly(List.of(1, 2));
+    }
+
+    @Test
+    @DisplayName("should skip batches that load to nothing")
+    void shouldSkipEmptyBatches() {
+        Iterator<Integer> result = Batches.flatMap(List.of(1, 2, 3, 4, 5).iterator(), 2,
+                batch -> batch.contains(5) ? batch : List.of());
+
+        assertThat(result.next()).isEqualTo(5);
+        assertThat(result.hasNext()).isFalse();
+        assertThatThrownBy(result::next).isInstanceOf(NoSuchElementException.class);
+    }
+}
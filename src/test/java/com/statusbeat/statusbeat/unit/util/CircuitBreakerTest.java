@@ -0,0 +1,139 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.CircuitBreaker;
+import com.statusbeat.statusbeat.util.CircuitBreaker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CircuitBreaker")
+class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 30_000;
+    private static final long SLOW_MS = 1_000;
+
+    private CircuitBreaker breaker;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        // Window of 10, opens at 50% failures or 80% slow calls once 4 calls are in, 2 probes
+        breaker = new CircuitBreaker(10, 4, 50, SLOW_MS, 80, OPEN_MS, 2);
+        now = 1_000_000;
+    }
+
+    @Nested
+    @DisplayName("closed")
+    class ClosedTests {
+
+        @Test
+        @DisplayName("should stay closed below the minimum number of calls")
+        void shouldWaitForMinimumCalls() {
+            fail(3);
+
+            assertThat(breaker.getState(now)).isEqualTo(State.CLOSED);
+            assertThat(breaker.tryAcquire(now)).isTrue();
+        }
+
+        @Test
+        @DisplayName("should open once the failure rate reaches the threshold")
+        void shouldOpenOnFailureRate() {
+            succeed(2);
+            fail(2);
+
+            assertThat(breaker.getState(now)).isEqualTo(State.OPEN);
+            assertThat(breaker.tryAcquire(now)).isFalse();
+            assertThat(breaker.remainingOpenMs(now)).isEqualTo(OPEN_MS);
+        }
+
+        @Test
+        @DisplayName("should open once most calls are slow")
+        void shouldOpenOnSlowCalls() {
+            for (int i = 0; i < 4; i++) {
+                breaker.tryAcquire(now);
+                breaker.onSuccess(SLOW_MS + 1, now);
+            }
+
+            assertThat(breaker.getState(now)).isEqualTo(State.OPEN);
+        }
+
+        @Test
+        @DisplayName("should forget failures that slid out of the window")
+        void shouldSlideWindow() {
+            succeed(2);
+            fail(1);
+            succeed(10);
+            fail(4);
+
+            // Last ten calls: six successes, four failures
+            assertThat(breaker.getFailureRate()).isEqualTo(40.0);
+            assertThat(breaker.getState(now)).isEqualTo(State.CLOSED);
+        }
+    }
+
+    @Nested
+    @DisplayName("half-open")
+    class HalfOpenTests {
+
+        @BeforeEach
+        void open() {
+            fail(4);
+            now += OPEN_MS;
+        }
+
+        @Test
+        @DisplayName("should let only the probe calls through")
+        void shouldLimitProbes() {
+            assertThat(breaker.tryAcquire(now)).isTrue();
+            assertThat(breaker.tryAcquire(now)).isTrue();
+            assertThat(breaker.tryAcquire(now)).isFalse();
+            assertThat(breaker.getState(now)).isEqualTo(State.HALF_OPEN);
+        }
+
+        @Test
+        @DisplayName("should close with a fresh window when every probe succeeds")
+        void shouldCloseAfterProbes() {
+            succeed(2);
+
+            assertThat(breaker.getState(now)).isEqualTo(State.CLOSED);
+            assertThat(breaker.getFailureRate()).isZero();
+        }
+
+        @Test
+        @DisplayName("should reopen when a probe fails")
+        void shouldReopenOnFailedProbe() {
+            succeed(1);
+            fail(1);
+
+            assertThat(breaker.getState(now)).isEqualTo(State.OPEN);
+            assertThat(breaker.remainingOpenMs(now)).isEqualTo(OPEN_MS);
+        }
+
+        @Test
+        @DisplayName("should give back the probe slot of an ignored call")
+        void shouldReleaseIgnoredProbe() {
+            breaker.tryAcquire(now);
+            breaker.tryAcquire(now);
+            breaker.onIgnored();
+
+            assertThat(breaker.tryAcquire(now)).isTrue();
+        }
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.tryAcquire(now);
+            breaker.onSuccess(10, now);
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.tryAcquire(now);
+            breaker.onFailure(now);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
 import java.util.Set;
@@ -274,4 +275,59 @@ class EncryptionUtilTest {
                     .hasMessageContaining("Decryption failed");
         }
     }
+
+    @Nested
+    @DisplayName("versioned keyring")
+    class KeyringTests {
+
+        @Test
+        @DisplayName("should tag ciphertext with the active key version")
+        void shouldTagCiphertextWithActiveKeyVersion() {
+            String encrypted = encryptionUtil.encrypt("token");
+
+            assertThat(encryptionUtil.getKeyVersion(encrypted)).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should decrypt legacy ciphertext without version header")
+        void shouldDecryptLegacyCiphertext() {
+            byte[] versioned = Base64.getDecoder().decode(encryptionUtil.encrypt("legacy-token"));
+            // Legacy layout is the versioned layout without the 2-byte header
+            String legacy = Base64.getEncoder().encodeToString(Arrays.copyOfRange(versioned, 2, versioned.length));
+
+            assertThat(encryptionUtil.decrypt(legacy)).isEqualTo("legacy-token");
+            assertThat(encryptionUtil.getKeyVersion(legacy)).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("should decrypt data written with a retired key after rotation")
+        void shouldDecryptDataFromRetiredKey() {
+            String encryptedWithV1 = encryptionUtil.encrypt("pre-rotation-token");
+
+            EncryptionUtil rotatedUtil = new EncryptionUtil();
+            ReflectionTestUtils.setField(rotatedUtil, "secretKeyString", "rotated-secret-key");
+            ReflectionTestUtils.setField(rotatedUtil, "activeKeyVersion", 2);
+            ReflectionTestUtils.setField(rotatedUtil, "retiredKeys", "1:" + TEST_SECRET_KEY);
+
+            String encryptedWithV2 = rotatedUtil.encrypt("post-rotation-token");
+
+            assertThat(rotatedUtil.decrypt(encryptedWithV1)).isEqualTo("pre-rotation-token");
+            assertThat(rotatedUtil.decrypt(encryptedWithV2)).isEqualTo("post-rotation-token");
+            assertThat(rotatedUtil.getKeyVersion(encryptedWithV2)).isEqualTo(2);
+            assertThatThrownBy(() -> encryptionUtil.decrypt(encryptedWithV2))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasMessageContaining("Decryption failed");
+        }
+
+        @Test
+        @DisplayName("should reject malformed retired key configuration")
+        void shouldRejectMalformedRetiredKeys() {
+            EncryptionUtil misconfiguredUtil = new EncryptionUtil();
+            ReflectionTestUtils.setField(misconfiguredUtil, "secretKeyString", TEST_SECRET_KEY);
+            ReflectionTestUtils.setField(misconfiguredUtil, "retiredKeys", "no-version-separator");
+
+            assertThatThrownBy(misconfiguredUtil::init)
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
 }
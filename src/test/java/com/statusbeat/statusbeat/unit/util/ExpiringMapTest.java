@@ -0,0 +1,97 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.ExpiringMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ExpiringMap")
+class ExpiringMapTest {
+
+    private final List<String> evicted = new ArrayList<>();
+    private long ttlMs;
+    private int maxSize;
+    private ExpiringMap<String, String> map;
+
+    @BeforeEach
+    void setUp() {
+        ttlMs = 60_000;
+        maxSize = 100;
+        map = new ExpiringMap<>(() -> ttlMs, () -> maxSize, evicted::add);
+    }
+
+    @Test
+    @DisplayName("should return stored values until they expire")
+    void shouldReturnValuesUntilExpired() {
+        map.put("a", "value-a");
+        ttlMs = 0;
+        map.put("b", "value-b");
+
+        assertThat(map.get("a")).isEqualTo("value-a");
+        assertThat(map.get("b")).isNull();
+        assertThat(map.get("missing")).isNull();
+    }
+
+    @Test
+    @DisplayName("should drop expired entries on a sweep")
+    void shouldEvictExpired() {
+        map.put("a", "value-a");
+        ttlMs = 0;
+        map.put("b", "value-b");
+
+        assertThat(map.evictExpired()).isEqualTo(1);
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(evicted).containsExactly("value-b");
+    }
+
+    @Test
+    @DisplayName("should hand replaced and removed values to the listener")
+    void shouldNotifyOnReplaceAndRemove() {
+        map.put("a", "first");
+        map.put("a", "second");
+        map.put("b", "value-b");
+        map.put("c", "value-c");
+
+        map.remove("a");
+        map.removeIf(key -> key.equals("b"));
+
+        assertThat(evicted).containsExactly("first", "second", "value-b");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should evict the oldest tenth when full")
+    void shouldEvictOldestWhenFull() {
+        maxSize = 20;
+        for (int i = 0; i < 20; i++) {
+            ttlMs = 60_000 + i;
+            assertThat(map.put("key-" + i, "value-" + i)).isZero();
+        }
+
+        assertThat(map.put("key-20", "value-20")).isEqualTo(2);
+
+        assertThat(map.size()).isEqualTo(19);
+        assertThat(evicted).containsExactlyInAnyOrder("value-0", "value-1");
+    }
+
+    @Test
+    @DisplayName("should only drop expired entries when they make room")
+    void shouldPreferExpiredWhenFull() {
+        maxSize = 3;
+        ttlMs = 0;
+        map.put("expired", "value-expired");
+        ttlMs = 60_000;
+        map.put("a", "value-a");
+        map.put("b", "value-b");
+
+        assertThat(map.put("c", "value-c")).isZero();
+
+        assertThat(evicted).containsExactly("value-expired");
+        assertThat(map.size()).isEqualTo(3);
+    }
+}
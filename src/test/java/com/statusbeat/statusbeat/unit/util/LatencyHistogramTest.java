@@ -0,0 +1,61 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.LatencyHistogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("LatencyHistogram")
+class LatencyHistogramTest {
+
+    private LatencyHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    @DisplayName("should report zero when nothing was recorded")
+    void shouldReportZeroWhenEmpty() {
+        assertThat(histogram.count()).isZero();
+        assertThat(histogram.percentileMs(0.5)).isZero();
+        assertThat(histogram.percentileMs(0.99)).isZero();
+    }
+
+    @Test
+    @DisplayName("should report percentiles within the bucket error")
+    void shouldReportApproximatePercentiles() {
+        for (int millis = 1; millis <= 1_000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertThat(histogram.count()).isEqualTo(1_000);
+        assertThat(histogram.percentileMs(0.50)).isCloseTo(500L, within(500L / 16));
+        assertThat(histogram.percentileMs(0.99)).isCloseTo(990L, within(990L / 16));
+    }
+
+    @Test
+    @DisplayName("should never report a percentile below the recorded value")
+    void shouldRoundUpToBucketBound() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(37));
+
+        assertThat(histogram.percentileMs(0.5)).isBetween(37L, 37L + 37L / 16);
+    }
+
+    @Test
+    @DisplayName("should clamp values beyond the largest bucket")
+    void shouldClampHugeValues() {
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1);
+
+        assertThat(histogram.count()).isEqualTo(2);
+        assertThat(histogram.percentileMs(0.5)).isZero();
+        assertThat(histogram.percentileMs(1.0)).isGreaterThan(TimeUnit.DAYS.toMillis(12));
+    }
+}
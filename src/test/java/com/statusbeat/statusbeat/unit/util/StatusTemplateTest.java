@@ -0,0 +1,106 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.StatusTemplate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("StatusTemplate")
+class StatusTemplateTest {
+
+    @Nested
+    @DisplayName("render")
+    class RenderTests {
+
+        @Test
+        @DisplayName("should fill title and artist")
+        void shouldFillPlaceholders() {
+            StatusTemplate template = StatusTemplate.compile("{emoji} {title} - {artist}");
+
+            assertThat(template.render("Song", "Artist", true, true)).isEqualTo("Song - Artist");
+        }
+
+        @Test
+        @DisplayName("should drop the separator left by a hidden field")
+        void shouldDropDanglingSeparator() {
+            StatusTemplate template = StatusTemplate.compile("{title} - {artist}");
+
+            assertThat(template.render("Song", "Artist", true, false)).isEqualTo("Song");
+            assertThat(template.render("Song", "Artist", false, true)).isEqualTo("Artist");
+        }
+
+        @Test
+        @DisplayName("should collapse whitespace runs")
+        void shouldCollapseWhitespace() {
+            StatusTemplate template = StatusTemplate.compile("Listening to   {title}  by {artist}");
+
+            assertThat(template.render("Song", "Artist", true, true)).isEqualTo("Listening to Song by Artist");
+        }
+
+        @Test
+        @DisplayName("should reject a missing value for a shown field like the replace chain did")
+        void shouldRejectMissingValue() {
+            StatusTemplate template = StatusTemplate.compile("{title}");
+
+            assertThatThrownBy(() -> template.render(null, "Artist", true, true))
+                    .isInstanceOf(NullPointerException.class);
+            assertThat(template.render(null, "Artist", false, true)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("equivalence")
+    class EquivalenceTests {
+
+        private static final String[] PIECES = {
+                " ", "  ", "\t", "\n", "\r", "\u000B", "\f", "\u001F", "\u0085", "\u2028", "-", " - ",
+                "{", "}", "a", "\u00e9", "{title}", "{artist}", "{emoji}", "{ti", "tle}", "{ar", "artist}"
+        };
+
+        @Test
+        @DisplayName("should render exactly what the replace-and-regex chain rendered")
+        void shouldMatchReplaceChain() {
+            Random random = new Random(20261016L);
+            for (int i = 0; i < 200_000; i++) {
+                String template = randomText(random);
+                String title = randomText(random);
+                String artist = randomText(random);
+                boolean showTitle = random.nextBoolean();
+                boolean showArtist = random.nextBoolean();
+
+                assertThat(StatusTemplate.compile(template).render(title, artist, showTitle, showArtist))
+                        .as("template=%s title=%s artist=%s", template, title, artist)
+                        .isEqualTo(replaceChain(template, title, artist, showTitle, showArtist));
+            }
+        }
+
+        private String randomText(Random random) {
+            StringBuilder text = new StringBuilder();
+            int pieces = random.nextInt(8);
+            for (int i = 0; i < pieces; i++) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            return text.toString();
+        }
+
+        /**
+         * The rendering SlackService used before templates were compiled.
+         */
+        private String replaceChain(String template, String title, String artist, boolean showTitle,
+                                    boolean showArtist) {
+            String text = template
+                    .replace("{emoji}", "")
+                    .replace("{title}", showTitle ? title : "")
+                    .replace("{artist}", showArtist ? artist : "");
+            return text.replaceAll("\\s+-\\s+$", "")
+                    .replaceAll("^\\s+-\\s+", "")
+                    .replaceAll("\\s{2,}", " ")
+                    .trim();
+        }
+    }
+}
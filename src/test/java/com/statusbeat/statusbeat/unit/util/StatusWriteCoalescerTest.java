@@ -0,0 +1,180 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.StatusWriteCoalescer;
+import com.statusbeat.statusbeat.util.StatusWriteCoalescer.Outcome;
+import com.statusbeat.statusbeat.util.StatusWriteCoalescer.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("StatusWriteCoalescer")
+class StatusWriteCoalescerTest {
+
+    private static final String USER = "U123";
+    private static final long THRESHOLD = 150;
+
+    private StatusWriteCoalescer coalescer;
+    private List<Status> sent;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new StatusWriteCoalescer();
+        sent = new ArrayList<>();
+    }
+
+    @Nested
+    @DisplayName("suppression")
+    class SuppressionTests {
+
+        @Test
+        @DisplayName("should suppress a write identical to the acknowledged status")
+        void shouldSuppressNoOp() {
+            submit(new Status("Artist", ":notes:", 1_000L));
+
+            assertThat(submit(new Status("Artist", ":notes:", 1_000L))).isEqualTo(Outcome.SUPPRESSED);
+            assertThat(sent).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should send when the text or emoji changed")
+        void shouldSendChanges() {
+            submit(new Status("Artist", ":notes:", 1_000L));
+
+            assertThat(submit(new Status("Other Artist", ":notes:", 1_000L))).isEqualTo(Outcome.SENT);
+            assertThat(submit(new Status("Other Artist", ":headphones:", 1_000L))).isEqualTo(Outcome.SENT);
+        }
+
+        @Test
+        @DisplayName("should suppress the same status with a later expiration while the current one is far off")
+        void shouldSuppressLaterExpirationWhileFarOff() {
+            long now = System.currentTimeMillis() / 1000;
+            submit(new Status("Artist", ":notes:", now + 3_600));
+
+            assertThat(submit(new Status("Artist", ":notes:", now + 3_900))).isEqualTo(Outcome.SUPPRESSED);
+            assertThat(coalescer.acknowledged(USER).expiration()).isEqualTo(now + 3_600);
+            assertThat(sent).hasSize(1);
+        }
+
+        @Test
+        @DisplayName("should extend the expiration once the current one is within the refresh threshold")
+        void shouldExtendExpirationNearExpiry() {
+            long now = System.currentTimeMillis() / 1000;
+            submit(new Status("Artist", ":notes:", now + THRESHOLD - 30));
+
+            assertThat(submit(new Status("Artist", ":notes:", now + THRESHOLD - 30))).isEqualTo(Outcome.SUPPRESSED);
+            assertThat(submit(new Status("Artist", ":notes:", now + 600))).isEqualTo(Outcome.SENT);
+            assertThat(coalescer.acknowledged(USER).expiration()).isEqualTo(now + 600);
+        }
+
+        @Test
+        @DisplayName("should always send forced writes")
+        void shouldSendForcedWrites() {
+            submit(new Status("", "", null));
+
+            Outcome outcome = coalescer.submit(USER, new Status("", "", null), THRESHOLD, true, sent::add);
+
+            assertThat(outcome).isEqualTo(Outcome.SENT);
+            assertThat(sent).hasSize(2);
+        }
+
+        @Test
+        @DisplayName("should send again after the acknowledged status is forgotten")
+        void shouldSendAfterForget() {
+            submit(new Status("Artist", ":notes:", 1_000L));
+
+            coalescer.forgetIf(USER, written -> !written.text().equals("In a meeting"));
+
+            assertThat(coalescer.acknowledged(USER)).isNull();
+            assertThat(submit(new Status("Artist", ":notes:", 1_000L))).isEqualTo(Outcome.SENT);
+        }
+
+        @Test
+        @DisplayName("should not trust a status whose write failed")
+        void shouldForgetFailedWrite() {
+            submit(new Status("Artist", ":notes:", 1_000L));
+
+            assertThatThrownBy(() -> coalescer.submit(USER, new Status("Artist", ":notes:", 2_000L), THRESHOLD,
+                    false, status -> {
+                        throw new IllegalStateException("boom");
+                    })).isInstanceOf(IllegalStateException.class);
+
+            assertThat(coalescer.acknowledged(USER)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("coalescing")
+    class CoalescingTests {
+
+        @Test
+        @DisplayName("should drop a queued write overtaken by a newer one")
+        void shouldDropSupersededWrite() throws Exception {
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Map<String, Outcome> outcomes = new ConcurrentHashMap<>();
+
+            Thread first = start(outcomes, new Status("First", ":notes:", null), status -> {
+                writing.countDown();
+                awaitQuietly(release);
+            });
+            assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+            // Both queue up behind the first write; the third overtakes the second
+            Thread second = start(outcomes, new Status("Second", ":notes:", null), this::record);
+            waitUntilBlocked(second);
+            Thread third = start(outcomes, new Status("Third", ":notes:", null), this::record);
+            waitUntilBlocked(third);
+            release.countDown();
+
+            for (Thread thread : List.of(first, second, third)) {
+                thread.join(5000);
+            }
+            assertThat(outcomes).containsEntry("First", Outcome.SENT)
+                    .containsEntry("Second", Outcome.SUPERSEDED)
+                    .containsEntry("Third", Outcome.SENT);
+            assertThat(sent).extracting(Status::text).containsExactly("Third");
+        }
+
+        private Thread start(Map<String, Outcome> outcomes, Status status,
+                             StatusWriteCoalescer.Write<RuntimeException> write) {
+            return Thread.ofPlatform().start(() ->
+                    outcomes.put(status.text(), coalescer.submit(USER, status, THRESHOLD, false, write)));
+        }
+
+        private void record(Status status) {
+            synchronized (sent) {
+                sent.add(status);
+            }
+        }
+
+        private void waitUntilBlocked(Thread thread) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+        }
+    }
+
+    private Outcome submit(Status status) {
+        return coalescer.submit(USER, status, THRESHOLD, false, sent::add);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.statusbeat.statusbeat.unit.util;
+
+import com.statusbeat.statusbeat.util.TimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("TimingWheel")
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel<>(1_000);
+    }
+
+    @Nested
+    @DisplayName("schedule")
+    class ScheduleTests {
+
+        @Test
+        @DisplayName("should fire a timer exactly at its deadline tick")
+        void shouldFireAtDeadline() {
+            wheel.schedule("user-1", 1_005);
+            List<String> fired = new ArrayList<>();
+
+            wheel.advance(1_004, fired::add);
+            assertThat(fired).isEmpty();
+
+            wheel.advance(1_005, fired::add);
+            assertThat(fired).containsExactly("user-1");
+            assertThat(wheel.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should keep one deadline per key")
+        void shouldKeepOneDeadlinePerKey() {
+            wheel.schedule("user-1", 1_010);
+            wheel.schedule("user-1", 1_500);
+            List<String> fired = new ArrayList<>();
+
+            wheel.advance(1_100, fired::add);
+
+            assertThat(fired).isEmpty();
+            assertThat(wheel.size()).isEqualTo(1);
+            assertThat(wheel.deadlineOf("user-1")).isEqualTo(1_500);
+        }
+
+        @Test
+        @DisplayName("should fire past deadlines on the next advance")
+        void shouldFirePastDeadlines() {
+            wheel.schedule("user-1", 10);
+            List<String> fired = new ArrayList<>();
+
+            wheel.advance(1_000, fired::add);
+
+            assertThat(fired).containsExactly("user-1");
+        }
+
+        @Test
+        @DisplayName("should cascade far deadlines down to the exact tick")
+        void shouldCascadeFarDeadlines() {
+            Random random = new Random(7);
+            Map<String, Long> deadlines = new HashMap<>();
+            for (int i = 0; i < 5_000; i++) {
+                long deadline = 1_000 + random.nextInt(200_000);
+                wheel.schedule("user-" + i, deadline);
+                deadlines.put("user-" + i, deadline);
+            }
+
+            List<String> misfired = new ArrayList<>();
+            for (long tick = 1_000; tick <= 201_000; tick++) {
+                long now = tick;
+                wheel.advance(now, key -> {
+                    if (deadlines.get(key) != now) {
+                        misfired.add(key);
+                    }
+                });
+            }
+
+            assertThat(misfired).isEmpty();
+            assertThat(wheel.size()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("cancel")
+    class CancelTests {
+
+        @Test
+        @DisplayName("should never fire a cancelled timer")
+        void shouldNotFireCancelledTimer() {
+            wheel.schedule("user-1", 1_003);
+            wheel.schedule("user-2", 1_003);
+
+            assertThat(wheel.cancel("user-1")).isTrue();
+            List<String> fired = new ArrayList<>();
+            wheel.advance(1_010, fired::add);
+
+            assertThat(fired).containsExactly("user-2");
+        }
+
+        @Test
+        @DisplayName("should report unknown keys")
+        void shouldReportUnknownKeys() {
+            assertThat(wheel.cancel("missing")).isFalse();
+            assertThat(wheel.contains("missing")).isFalse();
+            assertThat(wheel.deadlineOf("missing")).isEqualTo(-1);
+        }
+    }
+
+    @Nested
+    @DisplayName("scale")
+    class ScaleTests {
+
+        @Test
+        @DisplayName("should hold a million timers")
+        void shouldHoldAMillionTimers() {
+            for (int i = 0; i < 1_000_000; i++) {
+                wheel.schedule("user-" + i, 1_000 + (i % 600));
+            }
+            for (int i = 0; i < 1_000_000; i += 2) {
+                wheel.cancel("user-" + i);
+            }
+
+            int[] fired = {0};
+            wheel.advance(1_600, key -> fired[0]++);
+
+            assertThat(fired[0]).isEqualTo(500_000);
+        }
+    }
+}